@@ -0,0 +1,96 @@
+package gr.forth.ics.virtuoso.bench;
+
+import gr.forth.ics.virtuoso.TripleString;
+import gr.forth.ics.virtuoso.Triple_Type;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the deterministic data set used by the benchmarks: subjects with
+ * ten predicates each, alternating between URI and literal objects.
+ *
+ * @author rousakis
+ */
+public class BenchData {
+
+    static final String NS = "http://bench.example.org/";
+
+    private BenchData() {
+    }
+
+    /**
+     * Returns the name of the graph used by a workload.
+     *
+     * @param adapter The name of the adapter.
+     * @param workload The name of the workload.
+     * @return
+     */
+    public static String graph(String adapter, String workload) {
+        return NS + "graph/" + adapter + "/" + workload;
+    }
+
+    public static String subject(int i) {
+        return NS + "s" + (i / 10);
+    }
+
+    public static String predicate(int i) {
+        return NS + "p" + (i % 10);
+    }
+
+    public static boolean isLiteral(int i) {
+        return i % 2 == 1;
+    }
+
+    public static String object(int i) {
+        return isLiteral(i) ? "value " + i : NS + "o" + i;
+    }
+
+    /**
+     * Returns the first triples of the data set.
+     *
+     * @param count The number of triples.
+     * @return
+     */
+    public static List<TripleString> triples(int count) {
+        List<TripleString> triples = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            triples.add(new TripleString(subject(i), predicate(i), object(i), isLiteral(i) ? Triple_Type.LITERAL : Triple_Type.URI));
+        }
+        return triples;
+    }
+
+    /**
+     * Writes the first triples of the data set as N-Triples into one or more
+     * files of a directory.
+     *
+     * @param dir The directory.
+     * @param count The number of triples.
+     * @param files The number of files.
+     * @return The written files.
+     * @throws IOException
+     */
+    public static List<File> writeNTriples(File dir, int count, int files) throws IOException {
+        dir.mkdirs();
+        List<File> written = new ArrayList<>();
+        int perFile = (count + files - 1) / files;
+        for (int f = 0; f < files; f++) {
+            File file = new File(dir, "data-" + f + ".nt");
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                for (int i = f * perFile; i < Math.min(count, (f + 1) * perFile); i++) {
+                    out.write("<" + subject(i) + "> <" + predicate(i) + "> ");
+                    out.write(isLiteral(i) ? "\"" + object(i) + "\"" : "<" + object(i) + ">");
+                    out.write(" .\n");
+                }
+            }
+            written.add(file);
+        }
+        return written;
+    }
+}
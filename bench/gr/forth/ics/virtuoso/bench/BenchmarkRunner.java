@@ -0,0 +1,273 @@
+package gr.forth.ics.virtuoso.bench;
+
+import gr.forth.ics.virtuoso.JDBCVirtuosoRep;
+import gr.forth.ics.virtuoso.SesameVirtRep;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.sail.SailRepository;
+import org.openrdf.sail.memory.MemoryStore;
+import org.openrdf.sail.nativerdf.NativeStore;
+
+/**
+ * Runs the adapter benchmarks and reports the throughput of every workload.
+ * The benchmarks are configured with system properties, which the Ant target
+ * {@code bench} passes through:
+ * <ul>
+ * <li>bench.backend: memory (default) or native to benchmark the Sesame
+ * adapter offline on a local Sesame store, virtuoso to benchmark all three
+ * adapters on the instance described by bench.config.</li>
+ * <li>bench.config: a properties file with the Repository_IP, Repository_Port,
+ * Repository_Username and Repository_Password of the Virtuoso instance and
+ * optionally Repository_PoolSize.</li>
+ * <li>bench.serverDir: a directory shared with Virtuoso, which enables the
+ * bulk import workload of the JDBC adapter.</li>
+ * <li>bench.triples (20000), bench.warmup (3), bench.iterations (5).</li>
+ * <li>bench.filter: runs only the workloads whose adapter/name contains this
+ * text.</li>
+ * <li>bench.output: a CSV file which receives the results.</li>
+ * <li>bench.baseline: a CSV file of an earlier run. Workloads slower than the
+ * baseline by more than bench.tolerance (0.10) are reported as regressions and
+ * fail the run.</li>
+ * </ul>
+ *
+ * @author rousakis
+ */
+public class BenchmarkRunner {
+
+    private final int warmup;
+    private final int iterations;
+
+    /**
+     * Creates a new runner.
+     *
+     * @param warmup The number of untimed iterations of every workload.
+     * @param iterations The number of timed iterations of every workload.
+     */
+    public BenchmarkRunner(int warmup, int iterations) {
+        this.warmup = warmup;
+        this.iterations = Math.max(1, iterations);
+    }
+
+    /**
+     * Runs a workload.
+     *
+     * @param workload The workload.
+     * @return The result of the timed iterations.
+     * @throws Exception
+     */
+    public Result run(Workload workload) throws Exception {
+        workload.setUp();
+        try {
+            for (int i = 0; i < warmup; i++) {
+                workload.beforeIteration();
+                workload.run();
+            }
+            double[] rates = new double[iterations];
+            long nanos = 0;
+            for (int i = 0; i < iterations; i++) {
+                workload.beforeIteration();
+                long start = System.nanoTime();
+                long items = workload.run();
+                long elapsed = Math.max(1, System.nanoTime() - start);
+                nanos += elapsed;
+                rates[i] = items * 1e9 / elapsed;
+            }
+            return new Result(workload, nanos / 1e6 / iterations, rates);
+        } finally {
+            workload.tearDown();
+        }
+    }
+
+    /**
+     * The throughput of a workload.
+     */
+    public static class Result {
+
+        private final Workload workload;
+        private final double millisPerIteration;
+        private final double itemsPerSecond;
+        private final double deviation;
+
+        Result(Workload workload, double millisPerIteration, double[] rates) {
+            this.workload = workload;
+            this.millisPerIteration = millisPerIteration;
+            double sum = 0;
+            for (double rate : rates) {
+                sum += rate;
+            }
+            this.itemsPerSecond = sum / rates.length;
+            double squares = 0;
+            for (double rate : rates) {
+                squares += (rate - itemsPerSecond) * (rate - itemsPerSecond);
+            }
+            this.deviation = Math.sqrt(squares / rates.length);
+        }
+
+        public String getKey() {
+            return workload.toString();
+        }
+
+        public double getMillisPerIteration() {
+            return millisPerIteration;
+        }
+
+        public double getItemsPerSecond() {
+            return itemsPerSecond;
+        }
+
+        public double getDeviation() {
+            return deviation;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%-28s %12.2f ms %14.1f items/s  +-%5.1f%%", getKey(), millisPerIteration,
+                    itemsPerSecond, itemsPerSecond == 0 ? 0 : 100 * deviation / itemsPerSecond);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String backend = System.getProperty("bench.backend", "memory");
+        int triples = Integer.getInteger("bench.triples", 20000);
+        String filter = System.getProperty("bench.filter", "");
+        File tmp = new File(System.getProperty("java.io.tmpdir"), "virtuoso-bench-" + System.currentTimeMillis());
+        tmp.mkdirs();
+
+        List<Workload> workloads = new ArrayList<>();
+        List<AutoCloseable> resources = new ArrayList<>();
+        if (backend.equals("virtuoso")) {
+            Properties prop = new Properties();
+            try (InputStream in = new FileInputStream(System.getProperty("bench.config", "config.properties"))) {
+                prop.load(in);
+            }
+            final JDBCVirtuosoRep jdbc = new JDBCVirtuosoRep(prop);
+            final SesameVirtRep sesame = new SesameVirtRep(prop);
+            resources.add(new AutoCloseable() {
+                @Override
+                public void close() {
+                    jdbc.terminate();
+                    sesame.terminate();
+                }
+            });
+            String serverDir = System.getProperty("bench.serverDir");
+            workloads.addAll(JdbcWorkloads.create(jdbc, triples, serverDir == null ? null : new File(serverDir)));
+            workloads.addAll(SesameWorkloads.create(sesame, triples, tmp));
+            workloads.addAll(JenaWorkloads.create(prop.getProperty("Repository_IP"), prop.getProperty("Repository_Username"),
+                    prop.getProperty("Repository_Password"), triples));
+        } else {
+            Repository repository;
+            if (backend.equals("native")) {
+                repository = new SailRepository(new NativeStore(new File(tmp, "store"), "spoc,posc,cspo"));
+            } else if (backend.equals("memory")) {
+                repository = new SailRepository(new MemoryStore());
+            } else {
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+            }
+            repository.initialize();
+            final SesameVirtRep sesame = new SesameVirtRep(repository);
+            resources.add(new AutoCloseable() {
+                @Override
+                public void close() {
+                    sesame.terminate();
+                }
+            });
+            workloads.addAll(SesameWorkloads.create(sesame, triples, tmp));
+        }
+
+        BenchmarkRunner runner = new BenchmarkRunner(Integer.getInteger("bench.warmup", 3), Integer.getInteger("bench.iterations", 5));
+        List<Result> results = new ArrayList<>();
+        try {
+            for (Workload workload : workloads) {
+                if (!workload.toString().contains(filter)) {
+                    continue;
+                }
+                Result result = runner.run(workload);
+                results.add(result);
+                System.out.println(result);
+            }
+        } finally {
+            for (AutoCloseable resource : resources) {
+                resource.close();
+            }
+            delete(tmp);
+        }
+
+        String output = System.getProperty("bench.output");
+        if (output != null && !output.isEmpty()) {
+            write(results, new File(output));
+        }
+        String baseline = System.getProperty("bench.baseline");
+        if (baseline != null && !baseline.isEmpty()) {
+            double tolerance = Double.parseDouble(System.getProperty("bench.tolerance", "0.10"));
+            if (compare(results, read(new File(baseline)), tolerance) > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static int compare(List<Result> results, Map<String, Double> baseline, double tolerance) {
+        int regressions = 0;
+        for (Result result : results) {
+            Double before = baseline.get(result.getKey());
+            if (before == null || before == 0) {
+                continue;
+            }
+            double change = result.getItemsPerSecond() / before - 1;
+            if (change < -tolerance) {
+                regressions++;
+                System.out.println(String.format(Locale.ROOT, "REGRESSION %s: %.1f items/s vs %.1f items/s (%.1f%%)",
+                        result.getKey(), result.getItemsPerSecond(), before, 100 * change));
+            }
+        }
+        return regressions;
+    }
+
+    private static void write(List<Result> results, File file) throws IOException {
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+            out.println("workload,ms_per_iteration,items_per_second,stddev");
+            for (Result result : results) {
+                out.println(String.format(Locale.ROOT, "%s,%.3f,%.3f,%.3f", result.getKey(), result.getMillisPerIteration(),
+                        result.getItemsPerSecond(), result.getDeviation()));
+            }
+        }
+    }
+
+    private static Map<String, Double> read(File file) throws IOException {
+        Map<String, Double> rates = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (fields.length >= 3) {
+                    rates.put(fields[0], Double.parseDouble(fields[2]));
+                }
+            }
+        }
+        return rates;
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
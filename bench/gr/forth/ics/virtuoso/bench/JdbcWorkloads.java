@@ -0,0 +1,150 @@
+package gr.forth.ics.virtuoso.bench;
+
+import gr.forth.ics.virtuoso.JDBCVirtuosoRep;
+import gr.forth.ics.virtuoso.SparqlCursor;
+import gr.forth.ics.virtuoso.SparqlRow;
+import gr.forth.ics.virtuoso.TripleString;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The workloads of {@link JDBCVirtuosoRep}. They need a real Virtuoso
+ * instance. The import workload additionally needs a directory which is
+ * visible to both the benchmark and the server (listed in its DirsAllowed).
+ *
+ * @author rousakis
+ */
+public class JdbcWorkloads {
+
+    private static final String ADAPTER = "jdbc";
+
+    private JdbcWorkloads() {
+    }
+
+    /**
+     * Creates the workloads.
+     *
+     * @param rep The benchmarked repository.
+     * @param triples The number of triples of the data set.
+     * @param serverDir A directory shared with the server, or null to skip the
+     * import workload.
+     * @return
+     */
+    public static List<Workload> create(final JDBCVirtuosoRep rep, final int triples, final File serverDir) {
+        final List<TripleString> data = BenchData.triples(triples);
+        List<Workload> workloads = new ArrayList<>();
+        workloads.add(new JdbcWorkload(rep, "insert.single") {
+            @Override
+            public long run() {
+                int count = Math.max(1, triples / 10);
+                for (int i = 0; i < count; i++) {
+                    if (BenchData.isLiteral(i)) {
+                        rep.addLitTriple(BenchData.subject(i), BenchData.predicate(i), BenchData.object(i), graph);
+                    } else {
+                        rep.addTriple(BenchData.subject(i), BenchData.predicate(i), BenchData.object(i), graph);
+                    }
+                }
+                return count;
+            }
+        });
+        workloads.add(new JdbcWorkload(rep, "insert.batch") {
+            @Override
+            public long run() {
+                rep.addMultipleTriples(data, graph);
+                return triples;
+            }
+        });
+        workloads.add(new JdbcWorkload(rep, "select.stream") {
+            @Override
+            public void setUp() {
+                super.setUp();
+                rep.addMultipleTriples(data, graph);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() throws Exception {
+                try (SparqlCursor cursor = rep.openSparqlCursor("select ?s ?p ?o from <" + graph + "> where { ?s ?p ?o }", 10000)) {
+                    for (SparqlRow row : cursor) {
+                        row.getString(1);
+                    }
+                    return cursor.getRowCount();
+                }
+            }
+        });
+        workloads.add(new JdbcWorkload(rep, "count") {
+            @Override
+            public void setUp() {
+                super.setUp();
+                rep.addMultipleTriples(data, graph);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() {
+                for (int i = 0; i < 100; i++) {
+                    rep.triplesNum(graph);
+                }
+                return 100;
+            }
+        });
+        if (serverDir != null) {
+            workloads.add(new JdbcWorkload(rep, "import") {
+                @Override
+                public void setUp() {
+                    super.setUp();
+                    try {
+                        BenchData.writeNTriples(serverDir, triples, 4);
+                    } catch (Exception ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+
+                @Override
+                public long run() throws Exception {
+                    rep.importRDFDataToVirtuoso(serverDir.getPath(), "*.nt", graph, true, 2, false);
+                    return triples;
+                }
+            });
+        }
+        return workloads;
+    }
+
+    /**
+     * A workload on a graph of its own which is cleared before every
+     * iteration.
+     */
+    private abstract static class JdbcWorkload extends Workload {
+
+        final JDBCVirtuosoRep rep;
+        final String graph;
+
+        JdbcWorkload(JDBCVirtuosoRep rep, String name) {
+            super(ADAPTER, name);
+            this.rep = rep;
+            this.graph = BenchData.graph(ADAPTER, name);
+        }
+
+        @Override
+        public void setUp() {
+            rep.clearGraph(graph, false);
+        }
+
+        @Override
+        public void beforeIteration() {
+            rep.clearGraph(graph, false);
+        }
+
+        @Override
+        public void tearDown() {
+            rep.clearGraph(graph, false);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package gr.forth.ics.virtuoso.bench;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.graph.Triple;
+import com.hp.hpl.jena.query.ResultSet;
+import gr.forth.ics.virtuoso.JenaVirtuosoRep;
+import java.util.ArrayList;
+import java.util.List;
+import virtuoso.jena.driver.VirtuosoQueryExecution;
+import virtuoso.jena.driver.VirtuosoQueryExecutionFactory;
+
+/**
+ * The workloads of {@link JenaVirtuosoRep}. They need a real Virtuoso
+ * instance. Each workload opens a repository of its own on a graph of its own.
+ *
+ * @author rousakis
+ */
+public class JenaWorkloads {
+
+    private static final String ADAPTER = "jena";
+
+    private JenaWorkloads() {
+    }
+
+    /**
+     * Creates the workloads.
+     *
+     * @param host The IP of the machine which hosts Virtuoso.
+     * @param usr The username of the certified user.
+     * @param pwd The password of the certified user.
+     * @param triples The number of triples of the data set.
+     * @return
+     */
+    public static List<Workload> create(String host, String usr, String pwd, final int triples) {
+        List<Workload> workloads = new ArrayList<>();
+        workloads.add(new JenaWorkload(host, usr, pwd, "insert.single") {
+            @Override
+            public long run() {
+                int count = Math.max(1, triples / 10);
+                for (int i = 0; i < count; i++) {
+                    Node s = Node.createURI(BenchData.subject(i));
+                    Node p = Node.createURI(BenchData.predicate(i));
+                    if (BenchData.isLiteral(i)) {
+                        rep.addTriple(s, p, BenchData.object(i));
+                    } else {
+                        rep.addTriple(s, p, Node.createURI(BenchData.object(i)));
+                    }
+                }
+                return count;
+            }
+        });
+        workloads.add(new JenaWorkload(host, usr, pwd, "insert.bulkMode") {
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                rep.setBulkMode(1000);
+            }
+
+            @Override
+            public long run() {
+                for (int i = 0; i < triples; i++) {
+                    Node s = Node.createURI(BenchData.subject(i));
+                    Node p = Node.createURI(BenchData.predicate(i));
+                    if (BenchData.isLiteral(i)) {
+                        rep.addTriple(s, p, BenchData.object(i));
+                    } else {
+                        rep.addTriple(s, p, Node.createURI(BenchData.object(i)));
+                    }
+                }
+                rep.flush();
+                return triples;
+            }
+        });
+        workloads.add(new JenaWorkload(host, usr, pwd, "insert.batch") {
+            @Override
+            public long run() {
+                insert(rep, triples);
+                return triples;
+            }
+        });
+        workloads.add(new JenaWorkload(host, usr, pwd, "select.stream") {
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                insert(rep, triples);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() {
+                long rows = 0;
+                VirtuosoQueryExecution vqe = VirtuosoQueryExecutionFactory.create("select ?s ?p ?o where { ?s ?p ?o }", rep.getGraph());
+                try {
+                    ResultSet results = vqe.execSelect();
+                    while (results.hasNext()) {
+                        results.nextSolution();
+                        rows++;
+                    }
+                } finally {
+                    vqe.close();
+                }
+                return rows;
+            }
+        });
+        workloads.add(new JenaWorkload(host, usr, pwd, "count") {
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                insert(rep, triples);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() {
+                for (int i = 0; i < 100; i++) {
+                    rep.getGraph().size();
+                }
+                return 100;
+            }
+        });
+        return workloads;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void insert(JenaVirtuosoRep rep, int triples) {
+        Triple[] batch = new Triple[triples];
+        for (int i = 0; i < triples; i++) {
+            Node o = BenchData.isLiteral(i) ? Node.createLiteral(BenchData.object(i)) : Node.createURI(BenchData.object(i));
+            batch[i] = new Triple(Node.createURI(BenchData.subject(i)), Node.createURI(BenchData.predicate(i)), o);
+        }
+        rep.getGraph().getBulkUpdateHandler().add(batch);
+    }
+
+    /**
+     * A workload on a graph of its own which is cleared before every
+     * iteration.
+     */
+    private abstract static class JenaWorkload extends Workload {
+
+        final String host;
+        final String usr;
+        final String pwd;
+        final String graph;
+        JenaVirtuosoRep rep;
+
+        JenaWorkload(String host, String usr, String pwd, String name) {
+            super(ADAPTER, name);
+            this.host = host;
+            this.usr = usr;
+            this.pwd = pwd;
+            this.graph = BenchData.graph(ADAPTER, name);
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            rep = new JenaVirtuosoRep(graph, host, usr, pwd);
+            clear();
+        }
+
+        @Override
+        public void beforeIteration() {
+            clear();
+        }
+
+        @Override
+        public void tearDown() {
+            clear();
+            rep.terminate();
+        }
+
+        private void clear() {
+            rep.getGraph().clear();
+        }
+    }
+}
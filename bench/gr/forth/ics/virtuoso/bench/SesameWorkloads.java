@@ -0,0 +1,198 @@
+package gr.forth.ics.virtuoso.bench;
+
+import gr.forth.ics.virtuoso.SesameVirtRep;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+
+/**
+ * The workloads of {@link SesameVirtRep}.
+ *
+ * @author rousakis
+ */
+public class SesameWorkloads {
+
+    private static final String ADAPTER = "sesame";
+
+    private SesameWorkloads() {
+    }
+
+    /**
+     * Creates the workloads.
+     *
+     * @param rep The benchmarked repository.
+     * @param triples The number of triples of the data set.
+     * @param tmp A directory for the files which are imported and exported.
+     * @return
+     */
+    public static List<Workload> create(final SesameVirtRep rep, final int triples, final File tmp) {
+        List<Workload> workloads = new ArrayList<>();
+        workloads.add(new SesameWorkload(rep, "insert.single") {
+            @Override
+            public long run() throws Exception {
+                RepositoryConnection con = rep.getCon();
+                ValueFactory vf = con.getValueFactory();
+                URIImpl context = new URIImpl(graph);
+                int count = Math.max(1, triples / 10);
+                for (int i = 0; i < count; i++) {
+                    con.add(vf.createURI(BenchData.subject(i)), vf.createURI(BenchData.predicate(i)),
+                            BenchData.isLiteral(i) ? vf.createLiteral(BenchData.object(i)) : vf.createURI(BenchData.object(i)), context);
+                    con.commit();
+                }
+                return count;
+            }
+        });
+        workloads.add(new SesameWorkload(rep, "insert.batch") {
+            @Override
+            public long run() throws Exception {
+                insert(rep, graph, triples);
+                return triples;
+            }
+        });
+        workloads.add(new SesameWorkload(rep, "select.stream") {
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                insert(rep, graph, triples);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() throws Exception {
+                long rows = 0;
+                TupleQueryResult result = rep.queryExec("select ?s ?p ?o from <" + graph + "> where { ?s ?p ?o }");
+                try {
+                    while (result.hasNext()) {
+                        result.next();
+                        rows++;
+                    }
+                } finally {
+                    result.close();
+                }
+                return rows;
+            }
+        });
+        workloads.add(new SesameWorkload(rep, "count") {
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                insert(rep, graph, triples);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() throws Exception {
+                for (int i = 0; i < 100; i++) {
+                    rep.triplesNum(graph);
+                }
+                return 100;
+            }
+        });
+        workloads.add(new SesameWorkload(rep, "export") {
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                insert(rep, graph, triples);
+            }
+
+            @Override
+            public void beforeIteration() {
+            }
+
+            @Override
+            public long run() throws Exception {
+                return rep.exportToFile(new File(tmp, "export.nt").getPath(), RDFFormat.NTRIPLES, graph, false).getStatements();
+            }
+        });
+        workloads.add(new SesameWorkload(rep, "import") {
+            private File file;
+
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                file = BenchData.writeNTriples(new File(tmp, "import"), triples, 1).get(0);
+            }
+
+            @Override
+            public long run() throws Exception {
+                rep.importFile(file.getPath(), RDFFormat.NTRIPLES, graph);
+                rep.getCon().commit();
+                return triples;
+            }
+        });
+        workloads.add(new SesameWorkload(rep, "import.parallel") {
+            private File dir;
+
+            @Override
+            public void setUp() throws Exception {
+                super.setUp();
+                dir = new File(tmp, "import-parallel");
+                BenchData.writeNTriples(dir, triples, 4);
+            }
+
+            @Override
+            public long run() throws Exception {
+                return rep.importDirectory(dir.getPath(), RDFFormat.NTRIPLES, graph, 4).getCommittedStatements();
+            }
+        });
+        return workloads;
+    }
+
+    private static void insert(SesameVirtRep rep, String graph, int triples) throws Exception {
+        for (int i = 0; i < triples; i++) {
+            if (BenchData.isLiteral(i)) {
+                rep.addLitTriple(BenchData.subject(i), BenchData.predicate(i), BenchData.object(i), graph);
+            } else {
+                rep.addTriple(BenchData.subject(i), BenchData.predicate(i), BenchData.object(i), graph);
+            }
+        }
+        rep.flush();
+    }
+
+    /**
+     * A workload on a graph of its own which is cleared before every
+     * iteration.
+     */
+    private abstract static class SesameWorkload extends Workload {
+
+        final SesameVirtRep rep;
+        final String graph;
+
+        SesameWorkload(SesameVirtRep rep, String name) {
+            super(ADAPTER, name);
+            this.rep = rep;
+            this.graph = BenchData.graph(ADAPTER, name);
+        }
+
+        @Override
+        public void setUp() throws Exception {
+            clear();
+        }
+
+        @Override
+        public void beforeIteration() throws Exception {
+            clear();
+        }
+
+        @Override
+        public void tearDown() throws Exception {
+            clear();
+        }
+
+        private void clear() throws Exception {
+            rep.clearGraphContents(graph);
+            rep.getCon().commit();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package gr.forth.ics.virtuoso.bench;
+
+/**
+ * A benchmarked operation of one of the repository adapters. The runner calls
+ * {@link #setUp()} once, then {@link #beforeIteration()} and {@link #run()} for
+ * every warmup and measured iteration, and finally {@link #tearDown()}. Only
+ * {@link #run()} is timed.
+ *
+ * @author rousakis
+ */
+public abstract class Workload {
+
+    private final String adapter;
+    private final String name;
+
+    /**
+     * Creates a new workload.
+     *
+     * @param adapter The name of the benchmarked adapter.
+     * @param name The name of the operation.
+     */
+    protected Workload(String adapter, String name) {
+        this.adapter = adapter;
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the benchmarked adapter.
+     *
+     * @return
+     */
+    public String getAdapter() {
+        return adapter;
+    }
+
+    /**
+     * Returns the name of the operation.
+     *
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Prepares the data used by all iterations.
+     *
+     * @throws Exception
+     */
+    public void setUp() throws Exception {
+    }
+
+    /**
+     * Restores the state expected by the next iteration.
+     *
+     * @throws Exception
+     */
+    public void beforeIteration() throws Exception {
+    }
+
+    /**
+     * Runs one timed iteration.
+     *
+     * @return The number of items (triples, rows or calls) processed.
+     * @throws Exception
+     */
+    public abstract long run() throws Exception;
+
+    /**
+     * Removes the data of the workload.
+     *
+     * @throws Exception
+     */
+    public void tearDown() throws Exception {
+    }
+
+    @Override
+    public String toString() {
+        return adapter + "/" + name;
+    }
+}
@@ -0,0 +1,404 @@
+package gr.forth.ics.virtuoso;
+
+import com.hp.hpl.jena.query.QuerySolution;
+import com.hp.hpl.jena.query.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.rio.RDFFormat;
+import virtuoso.jena.driver.VirtGraph;
+import virtuoso.jena.driver.VirtuosoQueryExecution;
+import virtuoso.jena.driver.VirtuosoQueryExecutionFactory;
+
+/**
+ * Runs the operations of {@link JDBCVirtuosoRep}, {@link SesameVirtRep} and
+ * {@link JenaVirtuosoRep} asynchronously. Each operation returns a
+ * {@link VirtuosoFuture} immediately and is executed by a bounded set of
+ * worker threads, so at most as many requests as the permit limit are in
+ * flight against the server at any time; further requests wait in a queue
+ * without holding a thread. The operations surface their failures through the
+ * returned futures instead of printing them.
+ * <p>
+ * A {@link JDBCVirtuosoRep} serves concurrent operations in parallel only in
+ * pooled mode, in which case the permit limit should not exceed the pool size.
+ * In single connection mode its operations are serialized, since they share
+ * its connection and statement.
+ * Sesame queries and counts go through {@link SesameVirtRep#queryExec(String)}
+ * and {@link SesameVirtRep#triplesNum(String)}, so they use the read replicas,
+ * the caches and the metrics of the repository like synchronous reads.
+ * Operations on the same {@link JenaVirtuosoRep} are serialized, since its
+ * graph wraps a single connection.
+ *
+ * @author rousakis
+ */
+public class AsyncVirtuosoOps {
+
+    /**
+     * Converts one row of a query result into a value. Rows are only valid
+     * during the call.
+     *
+     * @param <R> The type of the rows.
+     * @param <T> The type of the values.
+     */
+    public interface RowMapper<R, T> {
+
+        /**
+         * Converts a row.
+         *
+         * @param row The current row.
+         * @return The value of the row.
+         * @throws Exception
+         */
+        T map(R row) throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final int permits;
+
+    /**
+     * Creates a new asynchronous facade.
+     *
+     * @param permits The maximum number of operations which run concurrently.
+     */
+    public AsyncVirtuosoOps(int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("The number of permits must be positive: " + permits);
+        }
+        this.permits = permits;
+        this.executor = new ThreadPoolExecutor(permits, permits, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new WorkerFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Submits an arbitrary operation.
+     *
+     * @param <T> The type of the result.
+     * @param task The operation.
+     * @return
+     */
+    public <T> VirtuosoFuture<T> submit(Callable<T> task) {
+        VirtuosoFuture<T> future = new VirtuosoFuture<>(task);
+        executor.execute(future);
+        return future;
+    }
+
+    /**
+     * Executes a SPARQL select query and maps each row of its result. The rows
+     * are streamed with the fetch size of the repository.
+     *
+     * @param <T> The type of the values.
+     * @param rep The repository.
+     * @param query The SPARQL select query.
+     * @param mapper Converts the rows.
+     * @return
+     */
+    public <T> VirtuosoFuture<List<T>> query(final JDBCVirtuosoRep rep, final String query, final RowMapper<SparqlRow, T> mapper) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return exclusive(rep, new Callable<List<T>>() {
+                    @Override
+                    public List<T> call() throws Exception {
+                        List<T> values = new ArrayList<>();
+                        try (SparqlCursor cursor = rep.openSparqlCursor(query, rep.getFetchSize())) {
+                            for (SparqlRow row : cursor) {
+                                values.add(mapper.map(row));
+                            }
+                        }
+                        return values;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Executes an update query and notifies the listeners of the repository
+     * of the graphs it changed.
+     *
+     * @param rep The repository.
+     * @param query The update query.
+     * @return
+     */
+    public VirtuosoFuture<Void> update(final JDBCVirtuosoRep rep, final String query) {
+        return submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                return exclusive(rep, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        rep.executeUpdate(query);
+                        rep.queryExecuted(query);
+                        return null;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Counts the triples of a named graph.
+     *
+     * @param rep The repository.
+     * @param graph The named graph whose triples are counted.
+     * @return
+     */
+    public VirtuosoFuture<Long> count(final JDBCVirtuosoRep rep, final String graph) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return exclusive(rep, new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return rep.countTriples(graph, false);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Bulk loads the files of a server side folder into a named graph.
+     *
+     * @param rep The repository.
+     * @param repFolder The server side folder which contains the files.
+     * @param format The file name pattern of the files.
+     * @param graph The named graph which will store the data.
+     * @param update True to add to the graph, false to replace its contents.
+     * @param loaders The number of concurrent rdf_loader_run() sessions.
+     * @return
+     */
+    public VirtuosoFuture<BulkLoadReport> importRDFData(final JDBCVirtuosoRep rep, final String repFolder, final String format,
+            final String graph, final boolean update, final int loaders) {
+        return submit(new Callable<BulkLoadReport>() {
+            @Override
+            public BulkLoadReport call() throws Exception {
+                return exclusive(rep, new Callable<BulkLoadReport>() {
+                    @Override
+                    public BulkLoadReport call() throws Exception {
+                        return rep.importRDFDataToVirtuoso(repFolder, format, graph, update, loaders, false);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Runs an operation of a repository, holding its connection in single
+     * connection mode so that no other operation uses its statement at the
+     * same time.
+     */
+    private static <T> T exclusive(JDBCVirtuosoRep rep, Callable<T> operation) throws Exception {
+        if (rep.getPool() != null) {
+            return operation.call();
+        }
+        synchronized (rep.getConnection()) {
+            return operation.call();
+        }
+    }
+
+    /**
+     * Executes a SPARQL select query, see
+     * {@link SesameVirtRep#queryExec(String)}, and maps each row of its
+     * result.
+     *
+     * @param <T> The type of the values.
+     * @param rep The repository.
+     * @param query The SPARQL select query.
+     * @param mapper Converts the rows.
+     * @return
+     */
+    public <T> VirtuosoFuture<List<T>> query(final SesameVirtRep rep, final String query, final RowMapper<BindingSet, T> mapper) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                return select(rep, query, mapper);
+            }
+        });
+    }
+
+    private static <T> List<T> select(SesameVirtRep rep, String query, RowMapper<BindingSet, T> mapper) throws Exception {
+        List<T> values = new ArrayList<>();
+        TupleQueryResult result = rep.queryExec(query);
+        try {
+            while (result.hasNext()) {
+                values.add(mapper.map(result.next()));
+            }
+        } finally {
+            result.close();
+        }
+        return values;
+    }
+
+    /**
+     * Counts the triples of a named graph, see
+     * {@link SesameVirtRep#triplesNum(String)}.
+     *
+     * @param rep The repository.
+     * @param graph The named graph whose triples are counted.
+     * @return
+     */
+    public VirtuosoFuture<Long> count(final SesameVirtRep rep, final String graph) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                return rep.triplesNum(graph);
+            }
+        });
+    }
+
+    /**
+     * Exports a named graph into a file.
+     *
+     * @param rep The repository.
+     * @param filename The name of the file.
+     * @param format The RDF format of the file.
+     * @param graphSource The named graph which is exported.
+     * @param gzip True to compress the file.
+     * @return
+     */
+    public VirtuosoFuture<ExportReport> exportToFile(final SesameVirtRep rep, final String filename, final RDFFormat format,
+            final String graphSource, final boolean gzip) {
+        return submit(new Callable<ExportReport>() {
+            @Override
+            public ExportReport call() throws Exception {
+                return rep.exportToFile(filename, format, graphSource, gzip);
+            }
+        });
+    }
+
+    /**
+     * Imports the RDF files of a local folder into a named graph.
+     *
+     * @param rep The repository.
+     * @param dirname The folder which contains the files.
+     * @param format The RDF format of the files.
+     * @param graphDest The named graph which will store the data.
+     * @param writers The number of concurrent writer connections.
+     * @return
+     */
+    public VirtuosoFuture<ParallelImportReport> importDirectory(final SesameVirtRep rep, final String dirname, final RDFFormat format,
+            final String graphDest, final int writers) {
+        return submit(new Callable<ParallelImportReport>() {
+            @Override
+            public ParallelImportReport call() throws Exception {
+                return rep.importDirectory(dirname, format, graphDest, writers);
+            }
+        });
+    }
+
+    /**
+     * Executes a SPARQL select query on the graph of the repository and maps
+     * each solution of its result.
+     *
+     * @param <T> The type of the values.
+     * @param rep The repository.
+     * @param query The SPARQL select query.
+     * @param mapper Converts the solutions.
+     * @return
+     */
+    public <T> VirtuosoFuture<List<T>> query(final JenaVirtuosoRep rep, final String query, final RowMapper<QuerySolution, T> mapper) {
+        return submit(new Callable<List<T>>() {
+            @Override
+            public List<T> call() throws Exception {
+                VirtGraph graph = rep.getGraph();
+                List<T> values = new ArrayList<>();
+                synchronized (graph) {
+                    VirtuosoQueryExecution vqe = VirtuosoQueryExecutionFactory.create(query, graph);
+                    try {
+                        ResultSet results = vqe.execSelect();
+                        while (results.hasNext()) {
+                            values.add(mapper.map(results.nextSolution()));
+                        }
+                    } finally {
+                        vqe.close();
+                    }
+                }
+                return values;
+            }
+        });
+    }
+
+    /**
+     * Counts the triples of the graph of the repository.
+     *
+     * @param rep The repository.
+     * @return
+     */
+    public VirtuosoFuture<Long> count(final JenaVirtuosoRep rep) {
+        return submit(new Callable<Long>() {
+            @Override
+            public Long call() throws Exception {
+                VirtGraph graph = rep.getGraph();
+                synchronized (graph) {
+                    return (long) graph.size();
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the maximum number of operations which run concurrently.
+     *
+     * @return
+     */
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * Returns the number of operations which are currently running.
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Returns the number of operations which wait for a permit.
+     *
+     * @return
+     */
+    public int getQueuedCount() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting operations. Submitted operations still run.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the submitted operations to complete after a shutdown.
+     *
+     * @param millis The maximum time to wait in milliseconds.
+     * @return True if all operations completed.
+     * @throws InterruptedException
+     */
+    public boolean awaitTermination(long millis) throws InterruptedException {
+        return executor.awaitTermination(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private static class WorkerFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "virtuoso-async-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a {@link BatchInserter} run: how many triples were inserted,
+ * how long it took and which chunks failed.
+ *
+ * @author rousakis
+ */
+public class BatchInsertResult {
+
+    private final List<ChunkFailure> failures = new ArrayList<>();
+    private long triples;
+    private int chunks;
+    private long elapsed;
+
+    synchronized void chunkSucceeded(int size) {
+        chunks++;
+        triples += size;
+    }
+
+    synchronized void chunkFailed(ChunkFailure failure) {
+        chunks++;
+        failures.add(failure);
+    }
+
+    synchronized void merge(BatchInsertResult other) {
+        chunks += other.chunks;
+        triples += other.triples;
+        elapsed += other.elapsed;
+        failures.addAll(other.failures);
+    }
+
+    void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of triples of the chunks which were inserted
+     * successfully.
+     *
+     * @return
+     */
+    public synchronized long getInsertedTriples() {
+        return triples;
+    }
+
+    /**
+     * Returns the number of chunks which were sent to the server.
+     *
+     * @return
+     */
+    public synchronized int getChunkCount() {
+        return chunks;
+    }
+
+    /**
+     * Returns the chunks which failed, in no particular order.
+     *
+     * @return
+     */
+    public synchronized List<ChunkFailure> getFailures() {
+        return Collections.unmodifiableList(new ArrayList<>(failures));
+    }
+
+    /**
+     * Returns whether every chunk was inserted.
+     *
+     * @return
+     */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * Returns the wall clock time of the run in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    /**
+     * Returns the insertion throughput of the run.
+     *
+     * @return The inserted triples per second.
+     */
+    public synchronized double getTriplesPerSecond() {
+        return elapsed == 0 ? 0 : triples * 1000.0 / elapsed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return triples + " triples in " + chunks + " chunks (" + failures.size() + " failed) in "
+                + elapsed + "ms, " + String.format("%.1f", getTriplesPerSecond()) + " triples/sec";
+    }
+
+    /**
+     * A chunk which could not be inserted.
+     */
+    public static class ChunkFailure {
+
+        private final String graph;
+        private final int offset;
+        private final int size;
+        private final SQLException cause;
+
+        ChunkFailure(String graph, int offset, int size, SQLException cause) {
+            this.graph = graph;
+            this.offset = offset;
+            this.size = size;
+            this.cause = cause;
+        }
+
+        /**
+         * Returns the named graph of the chunk.
+         *
+         * @return
+         */
+        public String getGraph() {
+            return graph;
+        }
+
+        /**
+         * Returns the index of the first triple of the chunk within the input.
+         *
+         * @return
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the number of triples of the chunk.
+         *
+         * @return
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Returns the exception raised by the server.
+         *
+         * @return
+         */
+        public SQLException getCause() {
+            return cause;
+        }
+    }
+}
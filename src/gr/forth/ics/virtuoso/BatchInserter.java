@@ -0,0 +1,273 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Inserts large lists of triples into Virtuoso as a sequence of SPARQL
+ * INSERT updates, each bounded both in the number of triples and in the size
+ * of its text. When the underlying {@link JDBCVirtuosoRep} is pooled, chunks
+ * can be sent over several connections at once. A failing chunk is reported
+ * in the {@link BatchInsertResult} and does not stop the remaining ones.
+ * <p>
+ * Besides whole lists, single triples can be buffered with
+ * {@link #add(TripleString, String)}; they are sent in chunks as the buffer of
+ * their graph fills up and when {@link #flush()} is called. Buffered triples
+ * are kept in a {@link CompactTripleBuffer} per graph, and the text of every
+ * chunk is rendered only when the chunk is sent.
+ *
+ * @author rousakis
+ */
+public class BatchInserter {
+
+    private static final ThreadLocal<StringBuilder> UPDATE_BUFFER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(64 * 1024);
+        }
+    };
+    private final JDBCVirtuosoRep rep;
+    private final Map<String, CompactTripleBuffer> buffers;
+    private BatchInsertResult buffered;
+    private int maxChunkTriples;
+    private int maxChunkChars;
+    private int parallelism;
+
+    /**
+     * Creates a new inserter which sends chunks of at most 10000 triples and
+     * 4M characters over a single connection.
+     *
+     * @param rep The JDBC connection layer used to send the chunks.
+     */
+    public BatchInserter(JDBCVirtuosoRep rep) {
+        this.rep = rep;
+        this.buffers = new HashMap<>();
+        this.buffered = new BatchInsertResult();
+        this.maxChunkTriples = 10000;
+        this.maxChunkChars = 4 * 1024 * 1024;
+        this.parallelism = 1;
+    }
+
+    /**
+     * Sets the maximum number of triples of a chunk.
+     *
+     * @param maxChunkTriples
+     * @return This inserter.
+     */
+    public BatchInserter setMaxChunkTriples(int maxChunkTriples) {
+        this.maxChunkTriples = Math.max(1, maxChunkTriples);
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of characters of the triples of a chunk. A
+     * single triple which exceeds it is sent as a chunk of its own.
+     *
+     * @param maxChunkChars
+     * @return This inserter.
+     */
+    public BatchInserter setMaxChunkChars(int maxChunkChars) {
+        this.maxChunkChars = Math.max(1, maxChunkChars);
+        return this;
+    }
+
+    /**
+     * Sets the number of chunks which are sent concurrently. It only has an
+     * effect if the connection layer is pooled, as a single connection cannot
+     * be shared between threads.
+     *
+     * @param parallelism
+     * @return This inserter.
+     */
+    public BatchInserter setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Inserts a list of triples into a named graph.
+     *
+     * @param triples The triples to be inserted.
+     * @param graph The named graph into which the triples will be inserted.
+     * @return The outcome of the insertion.
+     */
+    public BatchInsertResult insert(final List<TripleString> triples, final String graph) {
+        return insert(new TripleSequence() {
+            @Override
+            public int size() {
+                return triples.size();
+            }
+
+            @Override
+            public int length(int index) {
+                return triples.get(index).length();
+            }
+
+            @Override
+            public void appendTo(int index, StringBuilder sb) {
+                triples.get(index).appendTo(sb);
+            }
+        }, graph);
+    }
+
+    /**
+     * Inserts a buffer of dictionary encoded triples into a named graph.
+     *
+     * @param triples The triples to be inserted.
+     * @param graph The named graph into which the triples will be inserted.
+     * @return The outcome of the insertion.
+     */
+    public BatchInsertResult insert(CompactTripleBuffer triples, String graph) {
+        return insert((TripleSequence) triples, graph);
+    }
+
+    private BatchInsertResult insert(final TripleSequence triples, final String graph) {
+        long start = System.currentTimeMillis();
+        final BatchInsertResult result = new BatchInsertResult();
+        List<Integer> bounds = chunkBounds(triples);
+        int threads = rep.getPool() == null ? 1 : Math.min(parallelism, bounds.size() - 1);
+        if (threads <= 1) {
+            for (int i = 0; i + 1 < bounds.size(); i++) {
+                insertChunk(triples, bounds.get(i), bounds.get(i + 1), graph, result);
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i + 1 < bounds.size(); i++) {
+                    final int from = bounds.get(i);
+                    final int to = bounds.get(i + 1);
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            insertChunk(triples, from, to, graph, result);
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+            } catch (ExecutionException ex) {
+                throw new IllegalStateException(ex.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+        result.setElapsed(System.currentTimeMillis() - start);
+        return result;
+    }
+
+    /**
+     * Buffers a triple of a named graph. The buffer of the graph is inserted
+     * as soon as it holds a full chunk.
+     *
+     * @param triple The triple to be inserted.
+     * @param graph The named graph into which the triple will be inserted.
+     */
+    public synchronized void add(TripleString triple, String graph) {
+        buffer(graph).add(triple);
+        insertIfFull(graph);
+    }
+
+    /**
+     * Buffers a triple of a named graph. The buffer of the graph is inserted
+     * as soon as it holds a full chunk.
+     *
+     * @param s The subject URI of the triple.
+     * @param p The predicate URI of the triple.
+     * @param o The object of the triple.
+     * @param type Whether the object is a URI or a literal.
+     * @param graph The named graph into which the triple will be inserted.
+     */
+    public synchronized void add(String s, String p, String o, Triple_Type type, String graph) {
+        buffer(graph).add(s, p, o, type);
+        insertIfFull(graph);
+    }
+
+    private CompactTripleBuffer buffer(String graph) {
+        CompactTripleBuffer buffer = buffers.get(graph);
+        if (buffer == null) {
+            buffer = new CompactTripleBuffer();
+            buffers.put(graph, buffer);
+        }
+        return buffer;
+    }
+
+    private void insertIfFull(String graph) {
+        CompactTripleBuffer buffer = buffers.get(graph);
+        if (buffer.size() >= maxChunkTriples) {
+            buffers.remove(graph);
+            buffered.merge(insert(buffer, graph));
+        }
+    }
+
+    /**
+     * Inserts all buffered triples.
+     *
+     * @return The outcome of all insertions made through
+     * {@link #add(TripleString, String)} since the previous flush.
+     */
+    public synchronized BatchInsertResult flush() {
+        for (Map.Entry<String, CompactTripleBuffer> entry : buffers.entrySet()) {
+            buffered.merge(insert(entry.getValue(), entry.getKey()));
+        }
+        buffers.clear();
+        BatchInsertResult result = buffered;
+        buffered = new BatchInsertResult();
+        return result;
+    }
+
+    private List<Integer> chunkBounds(TripleSequence triples) {
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+        int count = 0;
+        long chars = 0;
+        for (int i = 0; i < triples.size(); i++) {
+            int length = triples.length(i) + 2;
+            if (count > 0 && (count == maxChunkTriples || chars + length > maxChunkChars)) {
+                bounds.add(i);
+                count = 0;
+                chars = 0;
+            }
+            count++;
+            chars += length;
+        }
+        if (count > 0) {
+            bounds.add(triples.size());
+        }
+        return bounds;
+    }
+
+    private void insertChunk(TripleSequence triples, int from, int to, String graph, BatchInsertResult result) {
+        StringBuilder update = UPDATE_BUFFER.get();
+        update.setLength(0);
+        update.append("sparql INSERT INTO ");
+        TermSerializer.appendIri(update, graph).append(" {\n");
+        for (int i = from; i < to; i++) {
+            triples.appendTo(i, update);
+            update.append(" .\n");
+        }
+        update.append("}\n");
+        VirtuosoMetrics metrics = rep.getMetrics();
+        long start = metrics.start();
+        try {
+            rep.executeUpdate(update.toString());
+            metrics.success("jdbc.batchInsert", start, to - from);
+            result.chunkSucceeded(to - from);
+            rep.graphChanged(graph);
+        } catch (SQLException ex) {
+            metrics.failure("jdbc.batchInsert", start);
+            result.chunkFailed(new BatchInsertResult.ChunkFailure(graph, from, to - from, ex));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Receives progress reports of a {@link VirtuosoBulkLoader} run.
+ *
+ * @author rousakis
+ */
+public interface BulkLoadListener {
+
+    /**
+     * Called after each poll of the load list and once more when the load has
+     * finished.
+     *
+     * @param report The current state of the load.
+     */
+    void progress(BulkLoadReport report);
+}
@@ -0,0 +1,133 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the progress of a {@link VirtuosoBulkLoader} run, taken from
+ * the state of the files in DB.DBA.load_list.
+ *
+ * @author rousakis
+ */
+public class BulkLoadReport {
+
+    private final int totalFiles;
+    private final int loadingFiles;
+    private final int loadedFiles;
+    private final List<String[]> errors;
+    private final long triples;
+    private final long elapsed;
+    private final boolean finished;
+
+    BulkLoadReport(int totalFiles, int loadingFiles, int loadedFiles, List<String[]> errors, long triples, long elapsed, boolean finished) {
+        this.totalFiles = totalFiles;
+        this.loadingFiles = loadingFiles;
+        this.loadedFiles = loadedFiles;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.triples = triples;
+        this.elapsed = elapsed;
+        this.finished = finished;
+    }
+
+    /**
+     * Returns the number of files registered for loading.
+     *
+     * @return
+     */
+    public int getTotalFiles() {
+        return totalFiles;
+    }
+
+    /**
+     * Returns the number of files which are being loaded right now.
+     *
+     * @return
+     */
+    public int getLoadingFiles() {
+        return loadingFiles;
+    }
+
+    /**
+     * Returns the number of files whose load has completed, including the
+     * failed ones.
+     *
+     * @return
+     */
+    public int getLoadedFiles() {
+        return loadedFiles;
+    }
+
+    /**
+     * Returns the files which failed to load as pairs of file name and error
+     * message.
+     *
+     * @return
+     */
+    public List<String[]> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of triples added to the target graph so far, or -1 if
+     * it was not counted.
+     *
+     * @return
+     */
+    public long getTriples() {
+        return triples;
+    }
+
+    /**
+     * Returns the time since the start of the load in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    /**
+     * Returns whether all loaders have finished and the checkpoint was made.
+     *
+     * @return
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns the load throughput in files per second.
+     *
+     * @return
+     */
+    public double getFilesPerSecond() {
+        return elapsed == 0 ? 0 : loadedFiles * 1000.0 / elapsed;
+    }
+
+    /**
+     * Returns the load throughput in triples per second, or -1 if the triples
+     * were not counted.
+     *
+     * @return
+     */
+    public double getTriplesPerSecond() {
+        if (triples < 0) {
+            return -1;
+        }
+        return elapsed == 0 ? 0 : triples * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(loadedFiles).append('/').append(totalFiles).append(" files loaded (")
+                .append(loadingFiles).append(" in progress, ").append(errors.size()).append(" failed) in ")
+                .append(elapsed).append("ms, ").append(String.format("%.2f", getFilesPerSecond())).append(" files/sec");
+        if (triples >= 0) {
+            sb.append(", ").append(triples).append(" triples, ")
+                    .append(String.format("%.1f", getTriplesPerSecond())).append(" triples/sec");
+        }
+        return sb.toString();
+    }
+}
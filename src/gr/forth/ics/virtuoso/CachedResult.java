@@ -0,0 +1,391 @@
+package gr.forth.ics.virtuoso;
+
+import info.aduna.iteration.CloseableIteration;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.openrdf.model.Value;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryEvaluationException;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.ListBindingSet;
+import org.openrdf.query.impl.TupleQueryResultImpl;
+
+/**
+ * The rows of a query result kept in columnar form: one array of values per
+ * column, so a cached result costs one object per value and no per row
+ * objects. The result can be replayed any number of times, as a JDBC
+ * {@link ResultSet} or as a Sesame {@link TupleQueryResult}, depending on the
+ * rep class which materialized it. Cached results are immutable.
+ *
+ * @author rousakis
+ */
+public final class CachedResult {
+
+    private final List<String> names;
+    private final Object[][] columns;
+    private final int rows;
+    private final long bytes;
+    private final long createdAt;
+
+    private CachedResult(List<String> names, Object[][] columns, int rows, long bytes) {
+        this.names = names;
+        this.columns = columns;
+        this.rows = rows;
+        this.bytes = bytes;
+        this.createdAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the names of the columns.
+     *
+     * @return
+     */
+    public List<String> getColumnNames() {
+        return names;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return
+     */
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Returns a value.
+     *
+     * @param row The index of the row, starting from 0.
+     * @param column The index of the column, starting from 0.
+     * @return The value, or null if it is unbound.
+     */
+    public Object getValue(int row, int column) {
+        if (row < 0 || row >= rows) {
+            throw new IndexOutOfBoundsException("Row: " + row + ", rows: " + rows);
+        }
+        return columns[column][row];
+    }
+
+    /**
+     * Returns an estimate of the memory used by the values, in bytes.
+     *
+     * @return
+     */
+    public long getEstimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the time at which the result was materialized.
+     *
+     * @return
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    private static long estimate(Object value) {
+        return value == null ? 8 : 40 + 2 * value.toString().length();
+    }
+
+    /**
+     * Collects the rows of a result up to a memory limit.
+     */
+    static class Builder {
+
+        private final List<String> names;
+        private final long maxBytes;
+        private Object[][] columns;
+        private int rows;
+        private long bytes;
+
+        Builder(List<String> names, long maxBytes) {
+            this.names = Collections.unmodifiableList(names);
+            this.maxBytes = maxBytes;
+            this.columns = new Object[names.size()][16];
+        }
+
+        /**
+         * Adds a row unless it would exceed the memory limit.
+         *
+         * @param row The values of the row.
+         * @return False if the row was not added.
+         */
+        boolean add(Object[] row) {
+            long size = 0;
+            for (Object value : row) {
+                size += estimate(value);
+            }
+            if (bytes + size > maxBytes) {
+                return false;
+            }
+            if (columns.length > 0 && rows == columns[0].length) {
+                for (int c = 0; c < columns.length; c++) {
+                    columns[c] = Arrays.copyOf(columns[c], 2 * rows);
+                }
+            }
+            for (int c = 0; c < columns.length; c++) {
+                columns[c][rows] = row[c];
+            }
+            rows++;
+            bytes += size;
+            return true;
+        }
+
+        CachedResult build() {
+            Object[][] trimmed = new Object[columns.length][];
+            for (int c = 0; c < columns.length; c++) {
+                trimmed[c] = Arrays.copyOf(columns[c], rows);
+            }
+            return new CachedResult(names, trimmed, rows, bytes);
+        }
+    }
+
+    /**
+     * Replays the rows as a forward only result set. If the rows were cut at
+     * the memory limit, the rows of the rest of the live result follow them.
+     *
+     * @param rest The live result set, positioned on the first row which is
+     * not cached, or null.
+     * @return
+     */
+    ResultSet asResultSet(ResultSet rest) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new Replay(rest));
+    }
+
+    /**
+     * Replays the rows as a tuple query result, followed by the rows of the
+     * rest of the live result, if any.
+     *
+     * @param pending The first row which is not cached, or null.
+     * @param rest The live result whose next row follows the pending row, or
+     * null.
+     * @return
+     */
+    TupleQueryResult asTupleQueryResult(final BindingSet pending, final TupleQueryResult rest) {
+        return new TupleQueryResultImpl(names, new CloseableIteration<BindingSet, QueryEvaluationException>() {
+            private int row;
+            private BindingSet next = pending;
+
+            @Override
+            public boolean hasNext() throws QueryEvaluationException {
+                return row < rows || next != null || (rest != null && rest.hasNext());
+            }
+
+            @Override
+            public BindingSet next() throws QueryEvaluationException {
+                if (row < rows) {
+                    Value[] values = new Value[columns.length];
+                    for (int c = 0; c < columns.length; c++) {
+                        values[c] = (Value) columns[c][row];
+                    }
+                    row++;
+                    return new ListBindingSet(names, values);
+                }
+                if (next != null) {
+                    BindingSet current = next;
+                    next = null;
+                    return current;
+                }
+                if (rest == null) {
+                    throw new NoSuchElementException();
+                }
+                return rest.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() throws QueryEvaluationException {
+                if (rest != null) {
+                    rest.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Serves the accessors of {@link ResultSet} and its metadata from the
+     * cached columns.
+     */
+    private class Replay implements InvocationHandler {
+
+        private final ResultSet rest;
+        private int row = -1;
+        private boolean live;
+        private boolean closed;
+        private boolean wasNull;
+
+        Replay(ResultSet rest) {
+            this.rest = rest;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.equals("close")) {
+                if (!closed) {
+                    closed = true;
+                    if (rest != null) {
+                        rest.close();
+                    }
+                }
+                return null;
+            }
+            if (name.equals("isClosed")) {
+                return closed;
+            }
+            if (live) {
+                try {
+                    return method.invoke(rest, args);
+                } catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            }
+            switch (name) {
+                case "next":
+                    if (closed) {
+                        return false;
+                    }
+                    if (row + 1 < rows) {
+                        row++;
+                        return true;
+                    }
+                    row = rows;
+                    if (rest != null) {
+                        live = true;
+                        return true;
+                    }
+                    return false;
+                case "wasNull":
+                    return wasNull;
+                case "getRow":
+                    return row < rows ? row + 1 : 0;
+                case "findColumn":
+                    return column((String) args[0]) + 1;
+                case "getMetaData":
+                    return rest != null ? rest.getMetaData() : metaData();
+                case "setFetchSize":
+                case "setFetchDirection":
+                    return null;
+                case "getFetchSize":
+                    return 0;
+                case "getFetchDirection":
+                    return ResultSet.FETCH_FORWARD;
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "getConcurrency":
+                    return ResultSet.CONCUR_READ_ONLY;
+                case "getWarnings":
+                    return null;
+                case "clearWarnings":
+                    return null;
+                case "toString":
+                    return "CachedResultSet[" + rows + " rows]";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    break;
+            }
+            if (name.startsWith("get") && args != null && args.length == 1) {
+                int column = args[0] instanceof String ? column((String) args[0]) : (Integer) args[0] - 1;
+                return convert(name, value(column));
+            }
+            throw new SQLFeatureNotSupportedException("A cached result does not support " + name);
+        }
+
+        private Object value(int column) throws SQLException {
+            if (row < 0 || row >= rows) {
+                throw new SQLException("The cursor is not on a row.");
+            }
+            if (column < 0 || column >= columns.length) {
+                throw new SQLException("Invalid column index: " + (column + 1));
+            }
+            Object value = columns[column][row];
+            wasNull = value == null;
+            return value;
+        }
+
+        private int column(String label) throws SQLException {
+            int index = names.indexOf(label);
+            if (index < 0) {
+                throw new SQLException("Unknown column: " + label);
+            }
+            return index;
+        }
+
+        private Object convert(String getter, Object value) throws SQLException {
+            switch (getter) {
+                case "getObject":
+                    return value;
+                case "getString":
+                case "getNString":
+                    return value == null ? null : value.toString();
+                case "getInt":
+                    return value == null ? 0 : number(value).intValue();
+                case "getLong":
+                    return value == null ? 0L : number(value).longValue();
+                case "getDouble":
+                    return value == null ? 0d : number(value).doubleValue();
+                case "getFloat":
+                    return value == null ? 0f : number(value).floatValue();
+                case "getShort":
+                    return value == null ? (short) 0 : number(value).shortValue();
+                case "getBoolean":
+                    return value != null && (value instanceof Boolean ? (Boolean) value : Boolean.parseBoolean(value.toString()));
+                default:
+                    throw new SQLFeatureNotSupportedException("A cached result does not support " + getter);
+            }
+        }
+
+        private Number number(Object value) throws SQLException {
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+            try {
+                String text = value.toString().trim();
+                if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+                    return Long.valueOf(text);
+                }
+                return Double.valueOf(text);
+            } catch (NumberFormatException ex) {
+                throw new SQLException("Not a number: " + value, ex);
+            }
+        }
+
+        private ResultSetMetaData metaData() {
+            return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                    new Class<?>[]{ResultSetMetaData.class}, new InvocationHandler() {
+                        @Override
+                        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                            switch (method.getName()) {
+                                case "getColumnCount":
+                                    return columns.length;
+                                case "getColumnName":
+                                case "getColumnLabel":
+                                    return names.get((Integer) args[0] - 1);
+                                default:
+                                    throw new SQLFeatureNotSupportedException("A cached result does not support " + method.getName());
+                            }
+                        }
+                    });
+        }
+    }
+}
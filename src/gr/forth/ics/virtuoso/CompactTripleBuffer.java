@@ -0,0 +1,187 @@
+package gr.forth.ics.virtuoso;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A growable buffer of triples stored as three int ids per triple into a
+ * {@link TermDictionary}. Each distinct URI or literal is kept once, however
+ * many triples use it, and the text of a triple is rendered only when it is
+ * written, e.g. by {@link BatchInserter}. The ids can be kept off heap in a
+ * direct buffer, which keeps large batches out of the garbage collected heap.
+ * Buffers are not thread safe.
+ *
+ * @author rousakis
+ */
+public class CompactTripleBuffer implements TripleSequence {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private final TermDictionary dictionary;
+    private final boolean offHeap;
+    private IntBuffer ids;
+    private int size;
+
+    /**
+     * Creates an empty buffer with a dictionary of its own, kept on heap.
+     */
+    public CompactTripleBuffer() {
+        this(new TermDictionary(), false);
+    }
+
+    /**
+     * Creates an empty buffer.
+     *
+     * @param dictionary The dictionary of the terms, which can be shared with
+     * other buffers.
+     * @param offHeap True to keep the ids in a direct buffer.
+     */
+    public CompactTripleBuffer(TermDictionary dictionary, boolean offHeap) {
+        this.dictionary = dictionary;
+        this.offHeap = offHeap;
+        this.ids = allocate(3 * INITIAL_CAPACITY);
+    }
+
+    private IntBuffer allocate(int ints) {
+        if (offHeap) {
+            return ByteBuffer.allocateDirect(4 * ints).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return IntBuffer.allocate(ints);
+    }
+
+    /**
+     * Adds a triple.
+     *
+     * @param s The subject URI of the triple.
+     * @param p The predicate URI of the triple.
+     * @param o The object of the triple.
+     * @param type Whether the object is a URI or a literal.
+     * @return This buffer.
+     */
+    public CompactTripleBuffer add(String s, String p, String o, Triple_Type type) {
+        return add(s, p, o, type, null);
+    }
+
+    /**
+     * Adds a triple.
+     *
+     * @param s The subject URI of the triple.
+     * @param p The predicate URI of the triple.
+     * @param o The object of the triple.
+     * @param type The kind of the object.
+     * @param qualifier The language tag or datatype URI of the object.
+     * @return This buffer.
+     */
+    public CompactTripleBuffer add(String s, String p, String o, Triple_Type type, String qualifier) {
+        return add(dictionary.uri(s), dictionary.uri(p), dictionary.object(o, type, qualifier));
+    }
+
+    /**
+     * Adds a triple.
+     *
+     * @param triple The triple.
+     * @return This buffer.
+     */
+    public CompactTripleBuffer add(TripleString triple) {
+        return add(triple.getSubject(), triple.getPredicate(), triple.getObject(), triple.getType(), triple.getQualifier());
+    }
+
+    /**
+     * Adds a triple given the dictionary ids of its terms.
+     *
+     * @param s The id of the subject.
+     * @param p The id of the predicate.
+     * @param o The id of the object.
+     * @return This buffer.
+     */
+    public CompactTripleBuffer add(int s, int p, int o) {
+        if (ids.remaining() < 3) {
+            IntBuffer grown = allocate(2 * ids.capacity());
+            ids.flip();
+            grown.put(ids);
+            ids = grown;
+        }
+        ids.put(s).put(p).put(o);
+        size++;
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getSubjectId(int index) {
+        return ids.get(3 * check(index));
+    }
+
+    public int getPredicateId(int index) {
+        return ids.get(3 * check(index) + 1);
+    }
+
+    public int getObjectId(int index) {
+        return ids.get(3 * check(index) + 2);
+    }
+
+    private int check(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the text of a triple, without the terminating dot.
+     *
+     * @param index The index of the triple.
+     * @return
+     */
+    public String getTripleString(int index) {
+        StringBuilder sb = new StringBuilder(length(index));
+        appendTo(index, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public int length(int index) {
+        return dictionary.term(getSubjectId(index)).length() + dictionary.term(getPredicateId(index)).length()
+                + dictionary.term(getObjectId(index)).length() + 2;
+    }
+
+    @Override
+    public void appendTo(int index, StringBuilder sb) {
+        sb.append(dictionary.term(getSubjectId(index))).append(' ')
+                .append(dictionary.term(getPredicateId(index))).append(' ')
+                .append(dictionary.term(getObjectId(index)));
+    }
+
+    /**
+     * Returns the dictionary of the terms of this buffer.
+     *
+     * @return
+     */
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Returns whether the ids are kept off heap.
+     *
+     * @return
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Removes all triples. The dictionary is kept, as it may be shared.
+     */
+    public void clear() {
+        ids.clear();
+        size = 0;
+    }
+}
@@ -0,0 +1,81 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A connection and a statement leased for the duration of one operation. In
+ * single connection mode the lease wraps the shared connection and closing it
+ * only closes the statement if it was created for this lease; in pooled mode
+ * closing it closes the statement and gives the connection back to the pool.
+ *
+ * @author rousakis
+ */
+class ConnectionLease implements AutoCloseable {
+
+    private final VirtuosoConnectionPool pool;
+    private final Connection connection;
+    private final Statement statement;
+    private final boolean ownsStatement;
+    private Runnable onClose;
+    private boolean closed;
+
+    ConnectionLease(VirtuosoConnectionPool pool, Connection connection, Statement statement, boolean ownsStatement) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statement = statement;
+        this.ownsStatement = ownsStatement;
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    Statement getStatement() {
+        return statement;
+    }
+
+    /**
+     * Returns whether the lease wraps the shared connection and statement of
+     * single connection mode, in which case closing it releases nothing.
+     *
+     * @return
+     */
+    boolean isShared() {
+        return pool == null && !ownsStatement;
+    }
+
+    /**
+     * Sets an action which runs once the lease is closed, e.g. the release of
+     * a read replica.
+     *
+     * @param onClose
+     * @return This lease.
+     */
+    ConnectionLease onClose(Runnable onClose) {
+        this.onClose = onClose;
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (ownsStatement) {
+            try {
+                statement.close();
+            } catch (SQLException ex) {
+                System.out.println("Exception: " + ex.getMessage() + " occured during the close of a leased statement.");
+            }
+        }
+        if (pool != null) {
+            pool.release(connection);
+        }
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Receives progress reports of a {@link DiachronDereifier} run.
+ *
+ * @author rousakis
+ */
+public interface DereificationListener {
+
+    /**
+     * Called after each partition has been processed and once more when the
+     * run has finished.
+     *
+     * @param report The current state of the run.
+     */
+    void progress(DereificationReport report);
+}
@@ -0,0 +1,112 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the progress of a {@link DiachronDereifier} run.
+ *
+ * @author rousakis
+ */
+public class DereificationReport {
+
+    private final int totalPartitions;
+    private final int resumedPartitions;
+    private final int completedPartitions;
+    private final List<String[]> errors;
+    private final long elapsed;
+    private final boolean finished;
+
+    DereificationReport(int totalPartitions, int resumedPartitions, int completedPartitions, List<String[]> errors, long elapsed, boolean finished) {
+        this.totalPartitions = totalPartitions;
+        this.resumedPartitions = resumedPartitions;
+        this.completedPartitions = completedPartitions;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.elapsed = elapsed;
+        this.finished = finished;
+    }
+
+    /**
+     * Returns the number of partitions of the records.
+     *
+     * @return
+     */
+    public int getTotalPartitions() {
+        return totalPartitions;
+    }
+
+    /**
+     * Returns the number of partitions which had been completed by an earlier
+     * run, according to the checkpoint file, and were skipped.
+     *
+     * @return
+     */
+    public int getResumedPartitions() {
+        return resumedPartitions;
+    }
+
+    /**
+     * Returns the number of partitions which have been completed, including
+     * the resumed ones.
+     *
+     * @return
+     */
+    public int getCompletedPartitions() {
+        return completedPartitions;
+    }
+
+    /**
+     * Returns the partitions which failed as pairs of partition prefix and
+     * error message. They are not checkpointed, so a rerun retries them.
+     *
+     * @return
+     */
+    public List<String[]> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the time since the start of the run in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    /**
+     * Returns whether all partitions have been processed.
+     *
+     * @return
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns whether every partition has been completed.
+     *
+     * @return
+     */
+    public boolean isComplete() {
+        return completedPartitions == totalPartitions;
+    }
+
+    /**
+     * Returns the throughput of this run in partitions per second, not
+     * counting the resumed partitions.
+     *
+     * @return
+     */
+    public double getPartitionsPerSecond() {
+        return elapsed == 0 ? 0 : (completedPartitions - resumedPartitions) * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return completedPartitions + "/" + totalPartitions + " partitions dereified (" + resumedPartitions + " resumed, "
+                + errors.size() + " failed) in " + elapsed + "ms, "
+                + String.format("%.2f", getPartitionsPerSecond()) + " partitions/sec";
+    }
+}
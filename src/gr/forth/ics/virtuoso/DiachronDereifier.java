@@ -0,0 +1,255 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dereifies the DIACHRON records of a named graph into another named graph in
+ * partitions instead of one transaction over the whole graph. The records are
+ * split into ranges of IRI ids of about the same number of records, which are
+ * found by walking the records of the graph in DB.DBA.RDF_QUAD in the order of
+ * their ids, as {@link GraphCopier} does for subjects. Each range is inserted
+ * by a statement of its own which joins only the records of the range, so the
+ * partitions together read every record once. With a pooled
+ * {@link JDBCVirtuosoRep} the partitions run in parallel on several
+ * connections.
+ * <p>
+ * Completed partitions are appended to an optional checkpoint file. A rerun
+ * with the same graphs, partition size and file skips them, so a failed or
+ * interrupted run resumes with the unfinished partitions. Since the insert of
+ * a partition only adds triples, repeating a partition which was interrupted
+ * half way is harmless. The partitions are written with the write mode of the
+ * thread which starts the run.
+ *
+ * @author rousakis
+ */
+public class DiachronDereifier {
+
+    private static final String DIACHRON = "http://www.diachron-fp7.eu/resource/";
+    private final JDBCVirtuosoRep rep;
+    private int partitionRecords;
+    private int workers;
+    private File checkpoint;
+    private DereificationListener listener;
+
+    /**
+     * Creates a new dereifier with partitions of 100000 records and two
+     * workers.
+     *
+     * @param rep The JDBC connection layer.
+     */
+    public DiachronDereifier(JDBCVirtuosoRep rep) {
+        this.rep = rep;
+        this.partitionRecords = 100000;
+        this.workers = 2;
+    }
+
+    /**
+     * Sets the number of records per partition.
+     *
+     * @param partitionRecords
+     * @return This dereifier.
+     */
+    public DiachronDereifier setPartitionRecords(int partitionRecords) {
+        this.partitionRecords = Math.max(1, partitionRecords);
+        return this;
+    }
+
+    /**
+     * Sets the number of partitions which are processed concurrently. It only
+     * applies to a pooled {@link JDBCVirtuosoRep}.
+     *
+     * @param workers
+     * @return This dereifier.
+     */
+    public DiachronDereifier setWorkers(int workers) {
+        this.workers = Math.max(1, workers);
+        return this;
+    }
+
+    /**
+     * Sets the file which records the completed partitions.
+     *
+     * @param checkpoint The file, or null to keep no checkpoint.
+     * @return This dereifier.
+     */
+    public DiachronDereifier setCheckpointFile(File checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Sets the listener which receives the progress reports.
+     *
+     * @param listener
+     * @return This dereifier.
+     */
+    public DiachronDereifier setListener(DereificationListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Dereifies the records of a named graph.
+     *
+     * @param reifiedSrc The named graph which contains the DIACHRON records.
+     * @param dereifiedDst The named graph which will receive the triples.
+     * @return The final report of the run.
+     * @throws SQLException If the partitions could not be planned or the run
+     * was interrupted. Failures of single partitions are reported in the
+     * result.
+     * @throws IOException If the checkpoint file could not be read or written.
+     */
+    public DereificationReport dereify(String reifiedSrc, String dereifiedDst) throws SQLException, IOException {
+        VirtuosoMetrics metrics = rep.getMetrics();
+        long begin = metrics.start();
+        try {
+            DereificationReport report = run(reifiedSrc, dereifiedDst);
+            metrics.success("jdbc.dereify", begin, report.getCompletedPartitions() - report.getResumedPartitions());
+            return report;
+        } catch (SQLException | IOException ex) {
+            metrics.failure("jdbc.dereify", begin);
+            throw ex;
+        }
+    }
+
+    private DereificationReport run(final String src, final String dst) throws SQLException, IOException {
+        final long start = System.currentTimeMillis();
+        final List<Long> bounds = plan(src);
+        final int total = bounds.size() + 1;
+        final PartitionCheckpoint done = new PartitionCheckpoint(checkpoint, "dereify <" + src + "> <" + dst + "> " + partitionRecords);
+        final List<String[]> errors = Collections.synchronizedList(new ArrayList<String[]>());
+        final WriteMode mode = rep.getWriteMode();
+        try {
+            int sessions = rep.getPool() == null ? 1 : Math.min(workers, total);
+            ExecutorService executor = Executors.newFixedThreadPool(sessions);
+            for (int i = 0; i < total; i++) {
+                final Long from = i == 0 ? null : bounds.get(i - 1);
+                final Long to = i == bounds.size() ? null : bounds.get(i);
+                final String partition = (from == null ? "" : from) + ":" + (to == null ? "" : to);
+                if (done.isCompleted(partition)) {
+                    continue;
+                }
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            runPartition(statement(src, dst, from, to), mode);
+                            rep.graphChanged(dst);
+                            done.complete(partition);
+                        } catch (SQLException | IOException ex) {
+                            errors.add(new String[]{partition, ex.getMessage()});
+                        }
+                        if (listener != null) {
+                            listener.progress(report(total, done, errors, start, false));
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the partitions.", ex);
+            }
+        } finally {
+            done.close();
+        }
+        DereificationReport report = report(total, done, errors, start, true);
+        if (listener != null) {
+            listener.progress(report);
+        }
+        return report;
+    }
+
+    private static DereificationReport report(int total, PartitionCheckpoint done, List<String[]> errors, long start, boolean finished) {
+        List<String[]> failed;
+        synchronized (errors) {
+            failed = new ArrayList<>(errors);
+        }
+        return new DereificationReport(total, done.getResumedCount(), done.getCompletedCount(), failed,
+                System.currentTimeMillis() - start, finished);
+    }
+
+    /**
+     * Finds the record ids which separate the partitions of a graph. Each
+     * bound is the first record of the next partition.
+     *
+     * @param graph The graph.
+     * @return The ascending bounds.
+     * @throws SQLException
+     */
+    private List<Long> plan(String graph) throws SQLException {
+        List<Long> bounds = new ArrayList<>();
+        try (ConnectionLease lease = rep.leaseDedicated()) {
+            Long last = null;
+            while (true) {
+                String query = "select top " + (last == null ? partitionRecords : partitionRecords - 1) + ", 1 iri_id_num (S) "
+                        + "from DB.DBA.RDF_QUAD "
+                        + "where P = iri_to_id ('" + DIACHRON + "subject', 0) and G = iri_to_id ('" + sqlString(graph) + "', 0)"
+                        + (last == null ? "" : " and S > iri_id_from_num (" + last + ")")
+                        + " order by S";
+                try (ResultSet result = lease.getStatement().executeQuery(query)) {
+                    if (!result.next()) {
+                        break;
+                    }
+                    last = result.getLong(1);
+                }
+                bounds.add(last);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Returns the statement which dereifies the records of a range of ids:
+     * for each record r with diachron:subject s and a record attribute with
+     * diachron:predicate p and diachron:object o, the triple s p o is
+     * inserted into the destination graph.
+     *
+     * @param src The named graph which contains the records.
+     * @param dst The named graph which will receive the triples.
+     * @param from The first record id of the range, or null.
+     * @param to The first record id after the range, or null.
+     * @return
+     */
+    static String statement(String src, String dst, Long from, Long to) {
+        String graph = "iri_to_id ('" + sqlString(src) + "', 0)";
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("insert soft DB.DBA.RDF_QUAD (G, S, P, O) select iri_to_id ('").append(sqlString(dst))
+                .append("'), rs.O, ap.O, ao.O\n");
+        sb.append("from DB.DBA.RDF_QUAD rs, DB.DBA.RDF_QUAD ra, DB.DBA.RDF_QUAD ap, DB.DBA.RDF_QUAD ao\n");
+        sb.append("where rs.G = ").append(graph).append(" and rs.P = iri_to_id ('").append(DIACHRON).append("subject', 0)\n");
+        sb.append("and ra.G = rs.G and ra.S = rs.S and ra.P = iri_to_id ('").append(DIACHRON).append("hasRecordAttribute', 0)\n");
+        sb.append("and ap.G = rs.G and ap.S = ra.O and ap.P = iri_to_id ('").append(DIACHRON).append("predicate', 0)\n");
+        sb.append("and ao.G = rs.G and ao.S = ra.O and ao.P = iri_to_id ('").append(DIACHRON).append("object', 0)");
+        if (from != null) {
+            sb.append("\nand rs.S >= iri_id_from_num (").append(from).append(')');
+        }
+        if (to != null) {
+            sb.append("\nand rs.S < iri_id_from_num (").append(to).append(')');
+        }
+        return sb.toString();
+    }
+
+    private void runPartition(String statement, WriteMode mode) throws SQLException {
+        try (ConnectionLease lease = rep.leaseDedicated()) {
+            rep.applyWriteMode(lease.getConnection(), mode);
+            lease.getStatement().executeUpdate(statement);
+        }
+    }
+
+    private static String sqlString(String value) {
+        return value.replace("'", "''");
+    }
+}
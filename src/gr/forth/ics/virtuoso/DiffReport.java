@@ -0,0 +1,73 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * The outcome of a {@link GraphDiff} run.
+ *
+ * @author rousakis
+ */
+public class DiffReport {
+
+    private final long oldTriples;
+    private final long newTriples;
+    private final long added;
+    private final long deleted;
+    private final long elapsed;
+
+    DiffReport(long oldTriples, long newTriples, long added, long deleted, long elapsed) {
+        this.oldTriples = oldTriples;
+        this.newTriples = newTriples;
+        this.added = added;
+        this.deleted = deleted;
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of distinct triples of the old version.
+     *
+     * @return
+     */
+    public long getOldTriples() {
+        return oldTriples;
+    }
+
+    /**
+     * Returns the number of distinct triples of the new version.
+     *
+     * @return
+     */
+    public long getNewTriples() {
+        return newTriples;
+    }
+
+    /**
+     * Returns the number of triples which exist only in the new version.
+     *
+     * @return
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the number of triples which exist only in the old version.
+     *
+     * @return
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * Returns the wall clock time of the diff in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "+" + added + " -" + deleted + " (" + oldTriples + " -> " + newTriples + " triples) in " + elapsed + "ms";
+    }
+}
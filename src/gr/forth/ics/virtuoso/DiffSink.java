@@ -0,0 +1,32 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Receives the outcome of a {@link GraphDiff} as N-Triples lines.
+ *
+ * @author rousakis
+ */
+public interface DiffSink {
+
+    /**
+     * Called for a triple which exists only in the new version.
+     *
+     * @param line The N-Triples line of the triple, without line break.
+     * @throws Exception
+     */
+    void added(String line) throws Exception;
+
+    /**
+     * Called for a triple which exists only in the old version.
+     *
+     * @param line The N-Triples line of the triple, without line break.
+     * @throws Exception
+     */
+    void deleted(String line) throws Exception;
+
+    /**
+     * Called once after the last triple, to write out anything buffered.
+     *
+     * @throws Exception
+     */
+    void close() throws Exception;
+}
@@ -0,0 +1,70 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a {@link GraphExporter} run.
+ *
+ * @author rousakis
+ */
+public class ExportReport {
+
+    private final List<File> files = new ArrayList<>();
+    private long statements;
+    private long bytes;
+    private long elapsed;
+
+    synchronized void fileWritten(File file, long fileStatements, long fileBytes) {
+        files.add(file);
+        statements += fileStatements;
+        bytes += fileBytes;
+    }
+
+    void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the files which were written.
+     *
+     * @return
+     */
+    public synchronized List<File> getFiles() {
+        return Collections.unmodifiableList(new ArrayList<>(files));
+    }
+
+    /**
+     * Returns the number of exported statements.
+     *
+     * @return
+     */
+    public synchronized long getStatements() {
+        return statements;
+    }
+
+    /**
+     * Returns the number of bytes written to disk, after compression.
+     *
+     * @return
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the wall clock time of the export in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return files.size() + " files, " + statements + " statements, " + bytes + " bytes in " + elapsed + "ms";
+    }
+}
@@ -0,0 +1,262 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts a stream of text lines with bounded memory. Lines are collected in
+ * memory up to a given number, then sorted and spilled into a temporary run
+ * file. The sorted result is a k-way merge of the runs, which is read lazily
+ * and contains each distinct line once. If all lines fit in memory no file is
+ * written. Sorters are not thread safe.
+ *
+ * @author rousakis
+ */
+public class ExternalLineSorter implements Closeable {
+
+    private final int maxLinesInMemory;
+    private final File tempDir;
+    private final List<File> runs;
+    private List<String> lines;
+    private long count;
+
+    /**
+     * Creates a new sorter.
+     *
+     * @param maxLinesInMemory The number of lines kept in memory before a run
+     * is spilled to disk.
+     * @param tempDir The directory of the run files, or null for the default
+     * temporary directory.
+     */
+    public ExternalLineSorter(int maxLinesInMemory, File tempDir) {
+        this.maxLinesInMemory = Math.max(1, maxLinesInMemory);
+        this.tempDir = tempDir;
+        this.runs = new ArrayList<>();
+        this.lines = new ArrayList<>();
+    }
+
+    /**
+     * Adds a line. It must not contain line breaks.
+     *
+     * @param line
+     * @throws IOException If a run could not be spilled.
+     */
+    public void add(String line) throws IOException {
+        lines.add(line);
+        count++;
+        if (lines.size() >= maxLinesInMemory) {
+            spill();
+        }
+    }
+
+    /**
+     * Returns the number of lines added so far, including duplicates.
+     *
+     * @return
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the number of runs spilled to disk so far.
+     *
+     * @return
+     */
+    public int getSpilledRuns() {
+        return runs.size();
+    }
+
+    /**
+     * Finishes the input and returns the distinct lines in ascending order.
+     * The returned iterator must be closed, which also deletes the run files.
+     *
+     * @return
+     * @throws IOException
+     */
+    public SortedLines sorted() throws IOException {
+        if (runs.isEmpty()) {
+            Collections.sort(lines);
+            List<String> sorted = lines;
+            lines = new ArrayList<>();
+            return new SortedLines(sorted.iterator(), null);
+        }
+        spill();
+        List<BufferedReader> readers = new ArrayList<>();
+        try {
+            for (File run : runs) {
+                readers.add(new BufferedReader(new InputStreamReader(Files.newInputStream(run.toPath()), StandardCharsets.UTF_8), 65536));
+            }
+        } catch (IOException ex) {
+            for (BufferedReader reader : readers) {
+                reader.close();
+            }
+            throw ex;
+        }
+        return new SortedLines(null, readers);
+    }
+
+    private void spill() throws IOException {
+        if (lines.isEmpty()) {
+            return;
+        }
+        Collections.sort(lines);
+        File run = File.createTempFile("sort-run-", ".txt", tempDir);
+        run.deleteOnExit();
+        runs.add(run);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(run.toPath()), StandardCharsets.UTF_8), 65536)) {
+            String previous = null;
+            for (String line : lines) {
+                if (!line.equals(previous)) {
+                    writer.write(line);
+                    writer.write('\n');
+                    previous = line;
+                }
+            }
+        }
+        lines = new ArrayList<>();
+    }
+
+    /**
+     * Deletes the run files.
+     */
+    @Override
+    public void close() {
+        for (File run : runs) {
+            if (!run.delete()) {
+                run.deleteOnExit();
+            }
+        }
+        runs.clear();
+        lines = new ArrayList<>();
+    }
+
+    /**
+     * The distinct sorted lines of a sorter.
+     */
+    public class SortedLines implements Iterator<String>, Closeable {
+
+        private final Iterator<String> memory;
+        private final List<BufferedReader> readers;
+        private final PriorityQueue<Head> heads;
+        private String next;
+        private String last;
+
+        SortedLines(Iterator<String> memory, List<BufferedReader> readers) throws IOException {
+            this.memory = memory;
+            this.readers = readers;
+            this.heads = new PriorityQueue<>();
+            if (readers != null) {
+                for (BufferedReader reader : readers) {
+                    String line = reader.readLine();
+                    if (line != null) {
+                        heads.add(new Head(line, reader));
+                    }
+                }
+            }
+            advance();
+        }
+
+        private void advance() throws IOException {
+            next = null;
+            while (true) {
+                String candidate;
+                if (memory != null) {
+                    if (!memory.hasNext()) {
+                        return;
+                    }
+                    candidate = memory.next();
+                } else {
+                    Head head = heads.poll();
+                    if (head == null) {
+                        return;
+                    }
+                    candidate = head.line;
+                    String line = head.reader.readLine();
+                    if (line != null) {
+                        heads.add(new Head(line, head.reader));
+                    }
+                }
+                if (!candidate.equals(last)) {
+                    next = candidate;
+                    last = candidate;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        /**
+         * Returns the next line. Failures to read a run are rethrown as
+         * {@link IllegalStateException}.
+         *
+         * @return
+         */
+        @Override
+        public String next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            String current = next;
+            try {
+                advance();
+            } catch (IOException ex) {
+                throw new IllegalStateException("Exception: " + ex.getMessage() + " occured during the merge of sorted runs.", ex);
+            }
+            return current;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            if (readers != null) {
+                for (BufferedReader reader : readers) {
+                    try {
+                        reader.close();
+                    } catch (IOException ex) {
+                        System.out.println("Exception: " + ex.getMessage() + " occured during the close of a sorted run.");
+                    }
+                }
+            }
+            ExternalLineSorter.this.close();
+        }
+    }
+
+    private static class Head implements Comparable<Head> {
+
+        final String line;
+        final BufferedReader reader;
+
+        Head(String line, BufferedReader reader) {
+            this.line = line;
+            this.reader = reader;
+        }
+
+        @Override
+        public int compareTo(Head other) {
+            return line.compareTo(other.line);
+        }
+    }
+}
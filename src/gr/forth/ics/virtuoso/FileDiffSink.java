@@ -0,0 +1,70 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the added and the deleted triples of a {@link GraphDiff} into two
+ * N-Triples files, optionally gzip compressed.
+ *
+ * @author rousakis
+ */
+public class FileDiffSink implements DiffSink {
+
+    private final Writer added;
+    private final Writer deleted;
+
+    /**
+     * Creates the two files.
+     *
+     * @param addedFile The file of the added triples.
+     * @param deletedFile The file of the deleted triples.
+     * @param gzip Whether the files are gzip compressed.
+     * @throws IOException
+     */
+    public FileDiffSink(File addedFile, File deletedFile, boolean gzip) throws IOException {
+        this.added = open(addedFile, gzip);
+        try {
+            this.deleted = open(deletedFile, gzip);
+        } catch (IOException ex) {
+            added.close();
+            throw ex;
+        }
+    }
+
+    private static Writer open(File file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file.toPath());
+        if (gzip) {
+            out = new GZIPOutputStream(out, 65536);
+        }
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 256 * 1024);
+    }
+
+    @Override
+    public void added(String line) throws IOException {
+        added.write(line);
+        added.write('\n');
+    }
+
+    @Override
+    public void deleted(String line) throws IOException {
+        deleted.write(line);
+        deleted.write('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            added.close();
+        } finally {
+            deleted.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Is notified of writes made through the rep classes, so that client side
+ * state derived from the contents of named graphs can be updated or
+ * invalidated.
+ *
+ * @author rousakis
+ */
+public interface GraphChangeListener {
+
+    /**
+     * Called after the contents of a named graph have changed.
+     *
+     * @param graph The named graph.
+     */
+    void graphChanged(String graph);
+
+    /**
+     * Called after a write whose target graphs are not known, e.g. a server
+     * side load of the load list or a free form update.
+     */
+    void allGraphsChanged();
+}
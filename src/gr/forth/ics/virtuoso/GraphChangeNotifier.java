@@ -0,0 +1,41 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The list of {@link GraphChangeListener}s of a rep class.
+ *
+ * @author rousakis
+ */
+class GraphChangeNotifier implements GraphChangeListener {
+
+    private final CopyOnWriteArrayList<GraphChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    void add(GraphChangeListener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    void remove(GraphChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void graphChanged(String graph) {
+        for (GraphChangeListener listener : listeners) {
+            listener.graphChanged(graph);
+        }
+    }
+
+    @Override
+    public void allGraphsChanged() {
+        for (GraphChangeListener listener : listeners) {
+            listener.allGraphsChanged();
+        }
+    }
+
+    void graphsChanged(Iterable<String> graphs) {
+        for (String graph : graphs) {
+            graphChanged(graph);
+        }
+    }
+}
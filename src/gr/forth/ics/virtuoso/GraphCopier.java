@@ -0,0 +1,292 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copies or renames a named graph in bounded chunks instead of one statement
+ * over the whole graph. The quads of the source graph are split into ranges of
+ * subject IRI ids of about the same number of subjects, which are found by
+ * walking the G,S index of DB.DBA.RDF_QUAD, and each range is written by a
+ * statement of its own: INSERT SOFT for a copy and an UPDATE of the graph
+ * column for a rename. With a pooled {@link JDBCVirtuosoRep} the chunks run in
+ * parallel on several connections, under the configured {@link WriteMode}, so
+ * that no statement holds locks or log space for the whole graph.
+ * <p>
+ * A run can be cancelled, in which case the running chunks complete and the
+ * rest are skipped. Completed chunks of a copy are appended to an optional
+ * checkpoint file, so that a rerun with the same graphs, chunk size and file
+ * resumes with the unfinished chunks; copying a chunk twice is harmless. A
+ * rename resumes by itself, since the quads which were moved are no longer
+ * in the old graph, so it keeps no checkpoint and a rerun moves the rest.
+ *
+ * @author rousakis
+ */
+public class GraphCopier {
+
+    private final JDBCVirtuosoRep rep;
+    private int chunkSubjects;
+    private int workers;
+    private WriteMode writeMode;
+    private File checkpoint;
+    private GraphCopyListener listener;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a new copier with chunks of 100000 subjects and two workers,
+     * which writes with the write mode of the calling thread.
+     *
+     * @param rep The JDBC connection layer.
+     */
+    public GraphCopier(JDBCVirtuosoRep rep) {
+        this.rep = rep;
+        this.chunkSubjects = 100000;
+        this.workers = 2;
+    }
+
+    /**
+     * Sets the number of distinct subjects per chunk.
+     *
+     * @param chunkSubjects
+     * @return This copier.
+     */
+    public GraphCopier setChunkSubjects(int chunkSubjects) {
+        this.chunkSubjects = Math.max(1, chunkSubjects);
+        return this;
+    }
+
+    /**
+     * Sets the number of chunks which are processed concurrently. It only
+     * applies to a pooled {@link JDBCVirtuosoRep}.
+     *
+     * @param workers
+     * @return This copier.
+     */
+    public GraphCopier setWorkers(int workers) {
+        this.workers = Math.max(1, workers);
+        return this;
+    }
+
+    /**
+     * Sets the write mode of the connections which process the chunks, e.g.
+     * {@link WriteMode#BULK} for the fastest copy.
+     *
+     * @param writeMode The write mode, or null to use the mode of the thread
+     * which starts the run, see {@link JDBCVirtuosoRep#getWriteMode()}.
+     * @return This copier.
+     */
+    public GraphCopier setWriteMode(WriteMode writeMode) {
+        this.writeMode = writeMode;
+        return this;
+    }
+
+    /**
+     * Sets the file which records the completed chunks of a copy.
+     *
+     * @param checkpoint The file, or null to keep no checkpoint.
+     * @return This copier.
+     */
+    public GraphCopier setCheckpointFile(File checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Sets the listener which receives the progress reports.
+     *
+     * @param listener
+     * @return This copier.
+     */
+    public GraphCopier setListener(GraphCopyListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Cancels the current run. Chunks which are running complete; the others
+     * are skipped.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Copies the contents of a named graph into another.
+     *
+     * @param source The source named graph.
+     * @param destination The destination named graph.
+     * @return The final report of the run.
+     * @throws SQLException If the chunks could not be planned or the run was
+     * interrupted. Failures of single chunks are reported in the result.
+     * @throws IOException If the checkpoint file could not be read or written.
+     */
+    public GraphCopyReport copy(String source, String destination) throws SQLException, IOException {
+        return execute("jdbc.copyGraph", source, destination, false);
+    }
+
+    /**
+     * Renames a named graph by moving its quads to the new name.
+     *
+     * @param oldName The old name of the named graph.
+     * @param newName The new name of the named graph.
+     * @return The final report of the run.
+     * @throws SQLException If the chunks could not be planned or the run was
+     * interrupted. Failures of single chunks are reported in the result.
+     * @throws IOException
+     */
+    public GraphCopyReport rename(String oldName, String newName) throws SQLException, IOException {
+        return execute("jdbc.renameGraph", oldName, newName, true);
+    }
+
+    private GraphCopyReport execute(String operation, String source, String destination, boolean move) throws SQLException, IOException {
+        VirtuosoMetrics metrics = rep.getMetrics();
+        long begin = metrics.start();
+        try {
+            GraphCopyReport report = run(source, destination, move);
+            metrics.success(operation, begin, report.getQuads());
+            return report;
+        } catch (SQLException | IOException ex) {
+            metrics.failure(operation, begin);
+            throw ex;
+        }
+    }
+
+    private GraphCopyReport run(final String source, final String destination, final boolean move) throws SQLException, IOException {
+        cancelled = false;
+        final long start = System.currentTimeMillis();
+        final List<Long> bounds = plan(source);
+        final int total = bounds.size() + 1;
+        final PartitionCheckpoint done = new PartitionCheckpoint(move ? null : checkpoint,
+                "copy <" + source + "> <" + destination + "> " + chunkSubjects);
+        final List<String[]> errors = Collections.synchronizedList(new ArrayList<String[]>());
+        final AtomicLong quads = new AtomicLong();
+        final WriteMode mode = writeMode == null ? rep.getWriteMode() : writeMode;
+        try {
+            int sessions = rep.getPool() == null ? 1 : Math.min(workers, total);
+            ExecutorService executor = Executors.newFixedThreadPool(sessions);
+            for (int i = 0; i < total; i++) {
+                final Long from = i == 0 ? null : bounds.get(i - 1);
+                final Long to = i == bounds.size() ? null : bounds.get(i);
+                final String chunk = (from == null ? "" : from) + ":" + (to == null ? "" : to);
+                if (done.isCompleted(chunk)) {
+                    continue;
+                }
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancelled) {
+                            return;
+                        }
+                        try {
+                            quads.addAndGet(runChunk(statement(source, destination, move, from, to), mode));
+                            rep.graphChanged(destination);
+                            if (move) {
+                                rep.graphChanged(source);
+                            }
+                            done.complete(chunk);
+                        } catch (SQLException | IOException ex) {
+                            errors.add(new String[]{chunk, ex.getMessage()});
+                        }
+                        if (listener != null) {
+                            listener.progress(report(total, done, quads, errors, start, false));
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                cancelled = true;
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the chunks.", ex);
+            }
+        } finally {
+            done.close();
+        }
+        GraphCopyReport report = report(total, done, quads, errors, start, true);
+        if (listener != null) {
+            listener.progress(report);
+        }
+        return report;
+    }
+
+    private GraphCopyReport report(int total, PartitionCheckpoint done, AtomicLong quads, List<String[]> errors, long start, boolean finished) {
+        List<String[]> failed;
+        synchronized (errors) {
+            failed = new ArrayList<>(errors);
+        }
+        return new GraphCopyReport(total, done.getResumedCount(), done.getCompletedCount(), quads.get(), failed,
+                System.currentTimeMillis() - start, finished, cancelled);
+    }
+
+    /**
+     * Finds the subject ids which separate the chunks of a graph. Each bound is
+     * the first subject of the next chunk.
+     *
+     * @param graph The graph.
+     * @return The ascending bounds.
+     * @throws SQLException
+     */
+    private List<Long> plan(String graph) throws SQLException {
+        List<Long> bounds = new ArrayList<>();
+        try (ConnectionLease lease = rep.leaseDedicated()) {
+            Long last = null;
+            while (true) {
+                String query = "select top " + (last == null ? chunkSubjects : chunkSubjects - 1) + ", 1 iri_id_num (S) "
+                        + "from DB.DBA.RDF_QUAD table option (index RDF_QUAD_GS) "
+                        + "where G = iri_to_id ('" + sqlString(graph) + "', 0)"
+                        + (last == null ? "" : " and S > iri_id_from_num (" + last + ")")
+                        + " order by S";
+                try (ResultSet result = lease.getStatement().executeQuery(query)) {
+                    if (!result.next()) {
+                        break;
+                    }
+                    last = result.getLong(1);
+                }
+                bounds.add(last);
+            }
+        }
+        return bounds;
+    }
+
+    private static String statement(String source, String destination, boolean move, Long from, Long to) {
+        StringBuilder sb = new StringBuilder(256);
+        if (move) {
+            sb.append("update DB.DBA.RDF_QUAD table option (index RDF_QUAD_GS) set G = iri_to_id ('")
+                    .append(sqlString(destination)).append("') ");
+        } else {
+            sb.append("insert soft DB.DBA.RDF_QUAD (G, S, P, O) select iri_to_id ('").append(sqlString(destination))
+                    .append("'), S, P, O from DB.DBA.RDF_QUAD table option (index RDF_QUAD_GS) ");
+        }
+        sb.append("where G = iri_to_id ('").append(sqlString(source)).append("', 0)");
+        if (from != null) {
+            sb.append(" and S >= iri_id_from_num (").append(from).append(')');
+        }
+        if (to != null) {
+            sb.append(" and S < iri_id_from_num (").append(to).append(')');
+        }
+        return sb.toString();
+    }
+
+    private int runChunk(String statement, WriteMode mode) throws SQLException {
+        try (ConnectionLease lease = rep.leaseDedicated()) {
+            rep.applyWriteMode(lease.getConnection(), mode);
+            return Math.max(0, lease.getStatement().executeUpdate(statement));
+        }
+    }
+
+    private static String sqlString(String value) {
+        return value.replace("'", "''");
+    }
+}
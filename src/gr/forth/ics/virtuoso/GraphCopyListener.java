@@ -0,0 +1,17 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Receives progress reports of a {@link GraphCopier} run.
+ *
+ * @author rousakis
+ */
+public interface GraphCopyListener {
+
+    /**
+     * Called after each chunk has been processed and once more when the run
+     * has finished.
+     *
+     * @param report The current state of the run.
+     */
+    void progress(GraphCopyReport report);
+}
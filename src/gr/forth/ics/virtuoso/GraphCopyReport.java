@@ -0,0 +1,135 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the progress of a {@link GraphCopier} run.
+ *
+ * @author rousakis
+ */
+public class GraphCopyReport {
+
+    private final int totalChunks;
+    private final int resumedChunks;
+    private final int completedChunks;
+    private final long quads;
+    private final List<String[]> errors;
+    private final long elapsed;
+    private final boolean finished;
+    private final boolean cancelled;
+
+    GraphCopyReport(int totalChunks, int resumedChunks, int completedChunks, long quads, List<String[]> errors, long elapsed,
+            boolean finished, boolean cancelled) {
+        this.totalChunks = totalChunks;
+        this.resumedChunks = resumedChunks;
+        this.completedChunks = completedChunks;
+        this.quads = quads;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.elapsed = elapsed;
+        this.finished = finished;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Returns the number of chunks of the source graph.
+     *
+     * @return
+     */
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    /**
+     * Returns the number of chunks which had been completed by an earlier run,
+     * according to the checkpoint file, and were skipped.
+     *
+     * @return
+     */
+    public int getResumedChunks() {
+        return resumedChunks;
+    }
+
+    /**
+     * Returns the number of chunks which have been completed, including the
+     * resumed ones.
+     *
+     * @return
+     */
+    public int getCompletedChunks() {
+        return completedChunks;
+    }
+
+    /**
+     * Returns the number of quads which this run has written.
+     *
+     * @return
+     */
+    public long getQuads() {
+        return quads;
+    }
+
+    /**
+     * Returns the chunks which failed as pairs of subject id range and error
+     * message.
+     *
+     * @return
+     */
+    public List<String[]> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the time since the start of the run in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    /**
+     * Returns whether all chunks have been processed or the run was cancelled
+     * and its running chunks have completed.
+     *
+     * @return
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Returns whether the run was cancelled.
+     *
+     * @return
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Returns whether every chunk has been completed.
+     *
+     * @return
+     */
+    public boolean isComplete() {
+        return completedChunks == totalChunks;
+    }
+
+    /**
+     * Returns the throughput of this run in quads per second.
+     *
+     * @return
+     */
+    public double getQuadsPerSecond() {
+        return elapsed == 0 ? 0 : quads * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return completedChunks + "/" + totalChunks + " chunks done (" + resumedChunks + " resumed, " + errors.size()
+                + " failed" + (cancelled ? ", cancelled" : "") + ") in " + elapsed + "ms, " + quads + " quads, "
+                + String.format("%.1f", getQuadsPerSecond()) + " quads/sec";
+    }
+}
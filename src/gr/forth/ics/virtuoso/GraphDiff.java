@@ -0,0 +1,247 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * Computes the differences between two versions of a dataset, e.g. two named
+ * graphs such as http://original/efo/2.43 and http://original/efo/2.44. Both
+ * versions are streamed, serialized into canonical N-Triples lines and sorted
+ * with an {@link ExternalLineSorter}, which spills to disk once a given number
+ * of lines is held in memory. The two sorted streams are then merge-joined,
+ * so the diff takes time linear in the size of the versions and bounded
+ * memory. Blank nodes are compared by their labels.
+ *
+ * @author rousakis
+ */
+public class GraphDiff {
+
+    private int maxLinesInMemory;
+    private File tempDir;
+
+    /**
+     * Creates a new diff engine which keeps up to 500000 lines per version in
+     * memory.
+     */
+    public GraphDiff() {
+        this.maxLinesInMemory = 500000;
+    }
+
+    /**
+     * Sets the number of lines per version which are kept in memory before a
+     * sorted run is spilled to disk.
+     *
+     * @param maxLinesInMemory
+     * @return This engine.
+     */
+    public GraphDiff setMaxLinesInMemory(int maxLinesInMemory) {
+        this.maxLinesInMemory = Math.max(1, maxLinesInMemory);
+        return this;
+    }
+
+    /**
+     * Sets the directory of the spilled runs.
+     *
+     * @param tempDir The directory, or null for the default temporary
+     * directory.
+     * @return This engine.
+     */
+    public GraphDiff setTempDir(File tempDir) {
+        this.tempDir = tempDir;
+        return this;
+    }
+
+    /**
+     * Returns a source which streams a named graph of a Sesame repository.
+     *
+     * @param repository The repository.
+     * @param graph The named graph.
+     * @return
+     */
+    public static TripleSource graph(final Repository repository, final String graph) {
+        return new TripleSource() {
+            @Override
+            public void emit(RDFHandler handler) throws Exception {
+                RepositoryConnection con = repository.getConnection();
+                try {
+                    con.exportStatements(null, null, null, false, handler, new URIImpl(graph));
+                } finally {
+                    con.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a source which parses an RDF file. Files whose name ends with .gz
+     * are decompressed on the fly.
+     *
+     * @param file The file.
+     * @param format The format of the file, or null to guess it from its name.
+     * @return
+     */
+    public static TripleSource file(final File file, final RDFFormat format) {
+        return new TripleSource() {
+            @Override
+            public void emit(RDFHandler handler) throws Exception {
+                String name = file.getName();
+                boolean gzip = name.endsWith(".gz");
+                RDFFormat fileFormat = format != null ? format
+                        : Rio.getParserFormatForFileName(gzip ? name.substring(0, name.length() - 3) : name);
+                if (fileFormat == null) {
+                    throw new IOException("Unknown RDF format: " + file);
+                }
+                RDFParser parser = Rio.createParser(fileFormat);
+                parser.setRDFHandler(handler);
+                try (InputStream in = gzip ? new GZIPInputStream(new FileInputStream(file), 65536)
+                        : new BufferedInputStream(new FileInputStream(file), 65536)) {
+                    parser.parse(in, file.toURI().toString());
+                }
+            }
+        };
+    }
+
+    /**
+     * Computes the triples added and deleted between two versions.
+     *
+     * @param oldVersion The old version.
+     * @param newVersion The new version.
+     * @param sink The sink which receives the added and deleted triples. It is
+     * closed at the end of the diff, also when the diff fails.
+     * @return
+     * @throws Exception
+     */
+    public DiffReport diff(final TripleSource oldVersion, TripleSource newVersion, DiffSink sink) throws Exception {
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ExternalLineSorter.SortedLines oldLines = null;
+        ExternalLineSorter.SortedLines newLines = null;
+        boolean closed = false;
+        Exception failure = null;
+        try {
+            Future<ExternalLineSorter.SortedLines> oldSorted = executor.submit(new Callable<ExternalLineSorter.SortedLines>() {
+                @Override
+                public ExternalLineSorter.SortedLines call() throws Exception {
+                    return sort(oldVersion);
+                }
+            });
+            Exception sortFailure = null;
+            try {
+                newLines = sort(newVersion);
+            } catch (Exception ex) {
+                sortFailure = ex;
+                throw ex;
+            } finally {
+                try {
+                    oldLines = oldSorted.get();
+                } catch (Exception ex) {
+                    Exception cause = ex instanceof ExecutionException && ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                    if (sortFailure == null) {
+                        throw cause;
+                    }
+                    sortFailure.addSuppressed(cause);
+                }
+            }
+            long oldCount = 0;
+            long newCount = 0;
+            long added = 0;
+            long deleted = 0;
+            String oldLine = oldLines.hasNext() ? oldLines.next() : null;
+            String newLine = newLines.hasNext() ? newLines.next() : null;
+            while (oldLine != null || newLine != null) {
+                int cmp = oldLine == null ? 1 : newLine == null ? -1 : oldLine.compareTo(newLine);
+                if (cmp <= 0) {
+                    oldCount++;
+                }
+                if (cmp >= 0) {
+                    newCount++;
+                }
+                if (cmp < 0) {
+                    sink.deleted(oldLine);
+                    deleted++;
+                } else if (cmp > 0) {
+                    sink.added(newLine);
+                    added++;
+                }
+                if (cmp <= 0) {
+                    oldLine = oldLines.hasNext() ? oldLines.next() : null;
+                }
+                if (cmp >= 0) {
+                    newLine = newLines.hasNext() ? newLines.next() : null;
+                }
+            }
+            closed = true;
+            sink.close();
+            return new DiffReport(oldCount, newCount, added, deleted, System.currentTimeMillis() - start);
+        } catch (Exception ex) {
+            failure = ex;
+            throw ex;
+        } finally {
+            executor.shutdown();
+            if (oldLines != null) {
+                oldLines.close();
+            }
+            if (newLines != null) {
+                newLines.close();
+            }
+            if (!closed) {
+                try {
+                    sink.close();
+                } catch (Exception ex) {
+                    if (failure != null) {
+                        failure.addSuppressed(ex);
+                    } else {
+                        throw ex;
+                    }
+                }
+            }
+        }
+    }
+
+    private ExternalLineSorter.SortedLines sort(TripleSource source) throws Exception {
+        final ExternalLineSorter sorter = new ExternalLineSorter(maxLinesInMemory, tempDir);
+        try {
+            final StringBuilder line = new StringBuilder(256);
+            source.emit(new RDFHandlerBase() {
+                @Override
+                public void handleStatement(Statement st) throws RDFHandlerException {
+                    line.setLength(0);
+                    NTriplesStatementWriter.appendValue(line, st.getSubject());
+                    line.append(' ');
+                    NTriplesStatementWriter.appendValue(line, st.getPredicate());
+                    line.append(' ');
+                    NTriplesStatementWriter.appendValue(line, st.getObject());
+                    line.append(" .");
+                    try {
+                        sorter.add(line.toString());
+                    } catch (IOException ex) {
+                        throw new RDFHandlerException(ex);
+                    }
+                }
+            });
+            return sorter.sorted();
+        } catch (Exception ex) {
+            sorter.close();
+            throw ex;
+        }
+    }
+}
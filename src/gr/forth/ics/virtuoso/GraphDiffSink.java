@@ -0,0 +1,124 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.StringReader;
+import org.openrdf.model.URI;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+
+/**
+ * Writes the added and the deleted triples of a {@link GraphDiff} into two
+ * named graphs, in chunks of a given number of triples. The triples can be
+ * written either over JDBC, as SPARQL INSERT updates, or through a Sesame
+ * repository. Subclasses decide how a chunk is written, see
+ * {@link GraphPatchSink}.
+ *
+ * @author rousakis
+ */
+public abstract class GraphDiffSink implements DiffSink {
+
+    private final String addedGraph;
+    private final String deletedGraph;
+    private final int chunkSize;
+    private final StringBuilder addedChunk;
+    private final StringBuilder deletedChunk;
+    private int addedLines;
+    private int deletedLines;
+
+    GraphDiffSink(String addedGraph, String deletedGraph, int chunkSize) {
+        this.addedGraph = addedGraph;
+        this.deletedGraph = deletedGraph;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.addedChunk = new StringBuilder();
+        this.deletedChunk = new StringBuilder();
+    }
+
+    /**
+     * Returns a sink which inserts the triples over JDBC.
+     *
+     * @param rep The JDBC connection layer.
+     * @param addedGraph The graph which receives the added triples.
+     * @param deletedGraph The graph which receives the deleted triples.
+     * @param chunkSize The number of triples per INSERT update.
+     * @return
+     */
+    public static GraphDiffSink jdbc(final JDBCVirtuosoRep rep, String addedGraph, String deletedGraph, int chunkSize) {
+        return new GraphDiffSink(addedGraph, deletedGraph, chunkSize) {
+            @Override
+            void write(String graph, StringBuilder chunk, boolean deleted) throws Exception {
+                rep.executeUpdate("sparql INSERT INTO <" + graph + "> {\n" + chunk + "}\n");
+                rep.graphChanged(graph);
+            }
+        };
+    }
+
+    /**
+     * Returns a sink which adds the triples through a Sesame repository.
+     *
+     * @param repository The repository.
+     * @param addedGraph The graph which receives the added triples.
+     * @param deletedGraph The graph which receives the deleted triples.
+     * @param chunkSize The number of triples per commit.
+     * @return
+     */
+    public static GraphDiffSink sesame(final Repository repository, String addedGraph, String deletedGraph, int chunkSize) {
+        return new GraphDiffSink(addedGraph, deletedGraph, chunkSize) {
+            @Override
+            void write(String graph, StringBuilder chunk, boolean deleted) throws Exception {
+                RepositoryConnection con = repository.getConnection();
+                try {
+                    con.setAutoCommit(false);
+                    URI context = repository.getValueFactory().createURI(graph);
+                    con.add(new StringReader(chunk.toString()), graph, RDFFormat.NTRIPLES, context);
+                    con.commit();
+                } finally {
+                    con.close();
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes a chunk of triples.
+     *
+     * @param graph The graph of the chunk.
+     * @param chunk The triples, one N-Triples line each.
+     * @param deleted Whether the triples are deleted ones.
+     * @throws Exception
+     */
+    abstract void write(String graph, StringBuilder chunk, boolean deleted) throws Exception;
+
+    @Override
+    public void added(String line) throws Exception {
+        addedChunk.append(line).append('\n');
+        if (++addedLines == chunkSize) {
+            write(addedGraph, addedChunk, false);
+            addedChunk.setLength(0);
+            addedLines = 0;
+        }
+    }
+
+    @Override
+    public void deleted(String line) throws Exception {
+        deletedChunk.append(line).append('\n');
+        if (++deletedLines == chunkSize) {
+            write(deletedGraph, deletedChunk, true);
+            deletedChunk.setLength(0);
+            deletedLines = 0;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (addedLines > 0) {
+            write(addedGraph, addedChunk, false);
+            addedChunk.setLength(0);
+            addedLines = 0;
+        }
+        if (deletedLines > 0) {
+            write(deletedGraph, deletedChunk, true);
+            deletedChunk.setLength(0);
+            deletedLines = 0;
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import org.openrdf.model.Statement;
+import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.QueryLanguage;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerWrapper;
+
+/**
+ * Exports named graphs into files through large buffers on top of NIO file
+ * channels, optionally gzip compressed. N-Triples output is written by
+ * {@link NTriplesStatementWriter} instead of the generic Rio writer. Graphs
+ * can also be exported in parallel slices, each read over a connection of its
+ * own and written into a part file of its own.
+ *
+ * @author rousakis
+ */
+public class GraphExporter {
+
+    /**
+     * The ways a graph can be sliced for a partitioned export.
+     */
+    public enum Partitioning {
+
+        /**
+         * Triples are assigned to slices by the MD5 hash of their subject, so
+         * all triples of a subject end up in the same part file. Blank node
+         * subjects go to the first slice.
+         */
+        SUBJECT_HASH,
+        /**
+         * The graph is sorted and cut into equally sized ranges with ORDER
+         * BY/OFFSET/LIMIT.
+         */
+        OFFSET_RANGES;
+    }
+
+    private static final int HASH_BUCKETS = 256;
+    private final Repository repository;
+    private int bufferSize;
+    private boolean gzip;
+
+    /**
+     * Creates a new exporter with 256KB buffers and no compression.
+     *
+     * @param repository The repository which holds the graphs.
+     */
+    public GraphExporter(Repository repository) {
+        this.repository = repository;
+        this.bufferSize = 256 * 1024;
+    }
+
+    /**
+     * Sets whether the files are gzip compressed.
+     *
+     * @param gzip
+     * @return This exporter.
+     */
+    public GraphExporter setGzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * Sets the size of the output buffers.
+     *
+     * @param bufferSize The size in bytes.
+     * @return This exporter.
+     */
+    public GraphExporter setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(8192, bufferSize);
+        return this;
+    }
+
+    /**
+     * Exports the contents of a named graph into a file.
+     *
+     * @param graph The named graph whose data will be exported.
+     * @param file The file in which the data will be stored.
+     * @param format The format of the exported data.
+     * @return
+     * @throws Exception
+     */
+    public ExportReport export(String graph, File file, RDFFormat format) throws Exception {
+        long start = System.currentTimeMillis();
+        ExportReport report = new ExportReport();
+        RepositoryConnection con = repository.getConnection();
+        final long[] count = new long[1];
+        CountingOutputStream counter;
+        try (Output output = open(file)) {
+            counter = output.counter;
+            RDFHandlerWrapper handler = new RDFHandlerWrapper(format == RDFFormat.NTRIPLES
+                    ? new NTriplesStatementWriter(output.writer) : Rio.createWriter(format, output.writer)) {
+                @Override
+                public void handleStatement(Statement st) throws RDFHandlerException {
+                    super.handleStatement(st);
+                    count[0]++;
+                }
+            };
+            con.export(handler, new URIImpl(graph));
+        } finally {
+            con.close();
+        }
+        report.fileWritten(file, count[0], counter.count);
+        report.setElapsed(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    /**
+     * Exports the contents of a named graph as N-Triples into several part
+     * files, which are read and written in parallel. The part files are named
+     * after the base name, followed by .part-N.nt and, if compression is on,
+     * .gz.
+     *
+     * @param graph The named graph whose data will be exported.
+     * @param dir The directory of the part files.
+     * @param baseName The common prefix of the part file names.
+     * @param parts The number of slices.
+     * @param partitioning How the graph is sliced.
+     * @return
+     * @throws Exception If any slice failed; the other slices are still
+     * written.
+     */
+    public ExportReport exportPartitioned(final String graph, File dir, String baseName, int parts, final Partitioning partitioning) throws Exception {
+        long start = System.currentTimeMillis();
+        final ExportReport report = new ExportReport();
+        final int slices = partitioning == Partitioning.SUBJECT_HASH ? Math.min(Math.max(1, parts), HASH_BUCKETS) : Math.max(1, parts);
+        final long sliceSize = partitioning == Partitioning.OFFSET_RANGES ? (countTriples(graph) + slices - 1) / slices : 0;
+        ExecutorService executor = Executors.newFixedThreadPool(slices);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            for (int i = 0; i < slices; i++) {
+                final int slice = i;
+                final File file = new File(dir, baseName + String.format(".part-%03d.nt", slice) + (gzip ? ".gz" : ""));
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        String query = partitioning == Partitioning.SUBJECT_HASH
+                                ? hashSliceQuery(graph, slice, slices)
+                                : "SELECT ?s ?p ?o FROM <" + graph + "> WHERE { ?s ?p ?o } ORDER BY ?s ?p ?o "
+                                + "OFFSET " + (slice * sliceSize) + " LIMIT " + sliceSize;
+                        exportSlice(query, file, report);
+                        return null;
+                    }
+                }));
+            }
+            Exception failure = null;
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ex) {
+                    if (failure == null) {
+                        failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            executor.shutdown();
+        }
+        report.setElapsed(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    private void exportSlice(String query, File file, ExportReport report) throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        NTriplesStatementWriter writer;
+        CountingOutputStream counter;
+        try (Output output = open(file)) {
+            counter = output.counter;
+            writer = new NTriplesStatementWriter(output.writer);
+            TupleQueryResult result = con.prepareTupleQuery(QueryLanguage.SPARQL, query).evaluate();
+            try {
+                while (result.hasNext()) {
+                    BindingSet row = result.next();
+                    writer.write(row.getValue("s"), row.getValue("p"), row.getValue("o"));
+                }
+            } finally {
+                result.close();
+            }
+        } finally {
+            con.close();
+        }
+        report.fileWritten(file, writer.getStatementCount(), counter.count);
+    }
+
+    private long countTriples(String graph) throws Exception {
+        RepositoryConnection con = repository.getConnection();
+        try {
+            TupleQueryResult result = con.prepareTupleQuery(QueryLanguage.SPARQL,
+                    "SELECT (COUNT(*) AS ?c) FROM <" + graph + "> WHERE { ?s ?p ?o }").evaluate();
+            try {
+                return Long.parseLong(result.next().getValue("c").stringValue());
+            } finally {
+                result.close();
+            }
+        } finally {
+            con.close();
+        }
+    }
+
+    static String hashSliceQuery(String graph, int slice, int slices) {
+        StringBuilder buckets = new StringBuilder();
+        for (int b = slice; b < HASH_BUCKETS; b += slices) {
+            if (buckets.length() > 0) {
+                buckets.append(", ");
+            }
+            buckets.append('"').append(String.format("%02x", b)).append('"');
+        }
+        StringBuilder query = new StringBuilder();
+        query.append("SELECT ?s ?p ?o FROM <").append(graph).append("> WHERE { ?s ?p ?o . FILTER (");
+        if (slice == 0) {
+            query.append("isBlank(?s) || ");
+        }
+        query.append("(isIRI(?s) && SUBSTR(MD5(STR(?s)), 1, 2) IN (").append(buckets).append("))) }");
+        return query.toString();
+    }
+
+    private Output open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        CountingOutputStream counter = new CountingOutputStream(Channels.newOutputStream(channel));
+        OutputStream out = new BufferedOutputStream(counter, bufferSize);
+        if (gzip) {
+            out = new GZIPOutputStream(out, 65536);
+        }
+        return new Output(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), bufferSize), counter);
+    }
+
+    private static class Output implements AutoCloseable {
+
+        final Writer writer;
+        final CountingOutputStream counter;
+
+        Output(Writer writer, CountingOutputStream counter) {
+            this.writer = writer;
+            this.counter = counter;
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Applies the result of a {@link GraphDiff} to a named graph over JDBC: the
+ * deleted triples are removed from the graph with DELETE DATA and the added
+ * triples are inserted into it with INSERT DATA, in chunks of a given number
+ * of triples, see {@link GraphDiffSink}. Since a diff never reports the same
+ * triple as both added and deleted, the order of the chunks does not matter.
+ *
+ * @author rousakis
+ */
+public class GraphPatchSink extends GraphDiffSink {
+
+    private final JDBCVirtuosoRep rep;
+    private final String graphIri;
+
+    /**
+     * Creates a new sink.
+     *
+     * @param rep The JDBC connection layer.
+     * @param graph The graph which is patched.
+     * @param chunkSize The number of triples per update.
+     */
+    public GraphPatchSink(JDBCVirtuosoRep rep, String graph, int chunkSize) {
+        super(graph, graph, chunkSize);
+        this.rep = rep;
+        this.graphIri = TermSerializer.appendIri(new StringBuilder(), graph).toString();
+    }
+
+    @Override
+    public void added(String line) throws Exception {
+        checkSparql(line);
+        super.added(line);
+    }
+
+    @Override
+    public void deleted(String line) throws Exception {
+        checkSparql(line);
+        super.deleted(line);
+    }
+
+    private static void checkSparql(String line) {
+        if (TermSerializer.hasEscapedIri(line)) {
+            throw new IllegalArgumentException("The triple has an IRI which SPARQL does not allow: " + line);
+        }
+    }
+
+    @Override
+    void write(String graph, StringBuilder chunk, boolean deleted) throws Exception {
+        rep.executeUpdate("sparql " + (deleted ? "DELETE DATA FROM " : "INSERT DATA INTO ") + graphIri + " {\n" + chunk + "}\n");
+        rep.graphChanged(graph);
+    }
+}
@@ -0,0 +1,97 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds the named graphs which a SPARQL query or update, or a Virtuoso SQL
+ * statement, refers to.
+ *
+ * @author rousakis
+ */
+class GraphReferences {
+
+    private static final Pattern SPARQL_GRAPH = Pattern.compile(
+            "(?i)\\b(?:FROM\\s+NAMED|FROM|GRAPH|INTO|WITH|USING\\s+NAMED|USING)\\s*<([^>\\s]*)>");
+    private static final Pattern SQL_GRAPH = Pattern.compile("(?i)\\biri_to_id\\s*\\(\\s*'([^']*)'");
+    private static final Pattern DATASET = Pattern.compile("(?i)\\bFROM(?:\\s+NAMED)?\\s*<([^>\\s]*)>");
+    private static final Pattern UNRESOLVED_GRAPH = Pattern.compile(
+            "(?i)\\b(?:FROM(?:\\s+NAMED)?|GRAPH|INTO|WITH|USING(?:\\s+NAMED)?)\\s+(?!(?:NAMED|GRAPH)\\b)[?$A-Za-z_:]");
+
+    private GraphReferences() {
+    }
+
+    /**
+     * Returns the graphs referred to by a query.
+     *
+     * @param query The query text.
+     * @return The graph IRIs, in order of first appearance.
+     */
+    static Set<String> of(String query) {
+        Set<String> graphs = new LinkedHashSet<>();
+        Matcher matcher = SPARQL_GRAPH.matcher(query);
+        while (matcher.find()) {
+            graphs.add(matcher.group(1));
+        }
+        matcher = SQL_GRAPH.matcher(query);
+        while (matcher.find()) {
+            graphs.add(matcher.group(1));
+        }
+        return graphs;
+    }
+
+    /**
+     * Returns the graphs a SPARQL query may read. A query reads only the
+     * graphs it names if its dataset is pinned by FROM or FROM NAMED IRIs and
+     * every graph it names is an IRI; otherwise, e.g. with GRAPH ?g, with a
+     * prefixed graph name or with no FROM at all, it may read any graph and
+     * the empty set is returned.
+     *
+     * @param query The query text.
+     * @return The graph IRIs, or the empty set for all graphs.
+     */
+    static Set<String> read(String query) {
+        if (!DATASET.matcher(query).find() || UNRESOLVED_GRAPH.matcher(query).find()) {
+            return Collections.emptySet();
+        }
+        return of(query);
+    }
+
+    /**
+     * Returns the graphs a statement given to executeUpdateQuery may write. A
+     * SPARQL update which names a graph by a variable or a prefixed name may
+     * write any graph, and the empty set is returned.
+     *
+     * @param query The statement text.
+     * @return The graph IRIs, or the empty set for all graphs.
+     */
+    static Set<String> written(String query) {
+        if (isSparql(query) && UNRESOLVED_GRAPH.matcher(query).find()) {
+            return Collections.emptySet();
+        }
+        return of(query);
+    }
+
+    private static boolean isSparql(String query) {
+        return query.trim().regionMatches(true, 0, "sparql", 0, 6);
+    }
+
+    /**
+     * Returns whether a statement given to executeUpdateQuery may write
+     * triples, i.e. it is a SPARQL update or touches the quad store directly.
+     *
+     * @param query The statement text.
+     * @return
+     */
+    static boolean mayWrite(String query) {
+        if (isSparql(query)) {
+            return true;
+        }
+        String lower = query.toLowerCase();
+        return lower.contains("rdf_quad") || lower.contains("rdf_loader_run") || lower.contains("ttlp")
+                || lower.contains("rdf_load_rdfxml");
+    }
+}
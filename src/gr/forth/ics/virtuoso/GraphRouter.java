@@ -0,0 +1,272 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Routes named graphs to one of several Virtuoso instances, each reached
+ * through an adapter of its own, e.g. a {@link JDBCVirtuosoRep},
+ * {@link SesameVirtRep} or {@link JenaVirtuosoRep}, following a
+ * {@link PlacementPolicy}. Operations on a single graph go to the instance
+ * which holds it, and operations on several graphs or on all instances are
+ * fanned out in parallel, one thread per instance, so that an adapter is never
+ * used by two threads of the same fan-out. The results are merged by the
+ * caller, see {@link ShardedSesameRep}.
+ *
+ * @param <R> The type of the adapters.
+ * @author rousakis
+ */
+public class GraphRouter<R> {
+
+    private final List<R> instances;
+    private final PlacementPolicy policy;
+    private ExecutorService executor;
+
+    /**
+     * Creates a new router.
+     *
+     * @param instances The adapters of the instances. The order of the list
+     * defines the index of each instance.
+     * @param policy The placement policy of the graphs.
+     */
+    public GraphRouter(List<R> instances, PlacementPolicy policy) {
+        if (instances.isEmpty()) {
+            throw new IllegalArgumentException("At least one instance is required.");
+        }
+        this.instances = Collections.unmodifiableList(new ArrayList<>(instances));
+        this.policy = policy;
+    }
+
+    /**
+     * Returns the adapters of the instances.
+     *
+     * @return
+     */
+    public List<R> getInstances() {
+        return instances;
+    }
+
+    /**
+     * Returns the placement policy of the graphs.
+     *
+     * @return
+     */
+    public PlacementPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Returns the index of the instance which holds a named graph.
+     *
+     * @param graph The named graph.
+     * @return
+     */
+    public int indexOf(String graph) {
+        return policy.place(graph, instances.size());
+    }
+
+    /**
+     * Returns the adapter of the instance which holds a named graph.
+     *
+     * @param graph The named graph.
+     * @return
+     */
+    public R route(String graph) {
+        return instances.get(indexOf(graph));
+    }
+
+    /**
+     * Runs a task for each of several graphs on the instance which holds it.
+     * The graphs of an instance are processed one after the other and the
+     * instances in parallel.
+     *
+     * @param <T> The type of the results.
+     * @param graphs The named graphs.
+     * @param task The task.
+     * @return The result of each graph, in the order of the given graphs.
+     * @throws Exception The first failure of a task.
+     */
+    public <T> Map<String, T> forEachGraph(Collection<String> graphs, final GraphTask<R, T> task) throws Exception {
+        Map<Integer, List<String>> groups = new TreeMap<>();
+        for (String graph : graphs) {
+            int index = indexOf(graph);
+            List<String> group = groups.get(index);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(index, group);
+            }
+            group.add(graph);
+        }
+        List<Callable<Map<String, T>>> calls = new ArrayList<>(groups.size());
+        for (final Map.Entry<Integer, List<String>> group : groups.entrySet()) {
+            calls.add(new Callable<Map<String, T>>() {
+                @Override
+                public Map<String, T> call() throws Exception {
+                    R instance = instances.get(group.getKey());
+                    Map<String, T> results = new LinkedHashMap<>();
+                    for (String graph : group.getValue()) {
+                        results.put(graph, task.run(instance, graph));
+                    }
+                    return results;
+                }
+            });
+        }
+        Map<String, T> merged = new LinkedHashMap<>();
+        for (Map<String, T> results : invoke(calls)) {
+            merged.putAll(results);
+        }
+        Map<String, T> ordered = new LinkedHashMap<>();
+        for (String graph : graphs) {
+            ordered.put(graph, merged.get(graph));
+        }
+        return ordered;
+    }
+
+    /**
+     * Runs a task on every instance in parallel.
+     *
+     * @param <T> The type of the results.
+     * @param task The task.
+     * @return The result of each instance, in the order of the instances.
+     * @throws Exception The first failure of a task.
+     */
+    public <T> List<T> forEachInstance(InstanceTask<R, T> task) throws Exception {
+        List<Integer> all = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            all.add(i);
+        }
+        return run(all, task);
+    }
+
+    /**
+     * Runs a task in parallel on the instances which hold some graphs.
+     *
+     * @param <T> The type of the results.
+     * @param graphs The named graphs, or an empty collection for all
+     * instances.
+     * @param task The task.
+     * @return The result of each instance, in the order of the instances.
+     * @throws Exception The first failure of a task.
+     */
+    public <T> List<T> forInstancesOf(Collection<String> graphs, InstanceTask<R, T> task) throws Exception {
+        if (graphs.isEmpty()) {
+            return forEachInstance(task);
+        }
+        TreeMap<Integer, Boolean> indexes = new TreeMap<>();
+        for (String graph : graphs) {
+            indexes.put(indexOf(graph), Boolean.TRUE);
+        }
+        return run(new ArrayList<>(indexes.keySet()), task);
+    }
+
+    private <T> List<T> run(List<Integer> indexes, final InstanceTask<R, T> task) throws Exception {
+        List<Callable<T>> calls = new ArrayList<>(indexes.size());
+        for (final Integer index : indexes) {
+            calls.add(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return task.run(instances.get(index), index);
+                }
+            });
+        }
+        return invoke(calls);
+    }
+
+    private <T> List<T> invoke(List<Callable<T>> calls) throws Exception {
+        List<T> results = new ArrayList<>(calls.size());
+        if (calls.size() == 1) {
+            results.add(calls.get(0).call());
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(calls.size());
+        ExecutorService pool = executor();
+        for (Callable<T> call : calls) {
+            futures.add(pool.submit(call));
+        }
+        Exception failure = null;
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException ex) {
+                if (failure == null) {
+                    failure = ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                for (Future<T> other : futures) {
+                    other.cancel(true);
+                }
+                throw ex;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return results;
+    }
+
+    private synchronized ExecutorService executor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(instances.size());
+        }
+        return executor;
+    }
+
+    /**
+     * Stops the threads of the fan-outs. The adapters are not terminated.
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * A task on a named graph.
+     *
+     * @param <R> The type of the adapters.
+     * @param <T> The type of the result.
+     */
+    public interface GraphTask<R, T> {
+
+        /**
+         * Runs the task.
+         *
+         * @param instance The adapter of the instance which holds the graph.
+         * @param graph The named graph.
+         * @return
+         * @throws Exception
+         */
+        T run(R instance, String graph) throws Exception;
+    }
+
+    /**
+     * A task on an instance.
+     *
+     * @param <R> The type of the adapters.
+     * @param <T> The type of the result.
+     */
+    public interface InstanceTask<R, T> {
+
+        /**
+         * Runs the task.
+         *
+         * @param instance The adapter of the instance.
+         * @param index The index of the instance.
+         * @return
+         * @throws Exception
+         */
+        T run(R instance, int index) throws Exception;
+    }
+}
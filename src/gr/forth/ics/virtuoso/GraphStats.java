@@ -0,0 +1,100 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Statistics of the contents of a named graph.
+ *
+ * @author rousakis
+ */
+public class GraphStats {
+
+    private final String graph;
+    private final long triples;
+    private final long distinctSubjects;
+    private final Map<String, Long> predicateCounts;
+    private final long computedAt;
+
+    GraphStats(String graph, long triples, long distinctSubjects, Map<String, Long> predicateCounts) {
+        this.graph = graph;
+        this.triples = triples;
+        this.distinctSubjects = distinctSubjects;
+        this.predicateCounts = Collections.unmodifiableMap(predicateCounts);
+        this.computedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Returns the named graph.
+     *
+     * @return
+     */
+    public String getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the number of triples of the graph.
+     *
+     * @return
+     */
+    public long getTriples() {
+        return triples;
+    }
+
+    /**
+     * Returns the number of distinct subjects of the graph.
+     *
+     * @return
+     */
+    public long getDistinctSubjects() {
+        return distinctSubjects;
+    }
+
+    /**
+     * Returns the number of distinct predicates of the graph.
+     *
+     * @return
+     */
+    public long getDistinctPredicates() {
+        return predicateCounts.size();
+    }
+
+    /**
+     * Returns the number of triples per predicate.
+     *
+     * @return
+     */
+    public Map<String, Long> getPredicateCounts() {
+        return predicateCounts;
+    }
+
+    /**
+     * Returns the time at which the statistics were computed.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getComputedAt() {
+        return computedAt;
+    }
+
+    /**
+     * Returns the SPARQL query which computes the statistics of a graph in one
+     * round trip. Each row holds a predicate (?p), its number of triples (?n)
+     * and the number of distinct subjects of the graph (?subjects).
+     *
+     * @param graph The named graph.
+     * @return
+     */
+    static String query(String graph) {
+        return "SELECT ?p ?n ?subjects WHERE { "
+                + "{ SELECT ?p (COUNT(*) AS ?n) WHERE { GRAPH <" + graph + "> { ?s ?p ?o } } GROUP BY ?p } "
+                + "{ SELECT (COUNT(DISTINCT ?s) AS ?subjects) WHERE { GRAPH <" + graph + "> { ?s ?p ?o } } } "
+                + "}";
+    }
+
+    @Override
+    public String toString() {
+        return graph + ": " + triples + " triples, " + distinctSubjects + " subjects, " + predicateCounts.size() + " predicates";
+    }
+}
@@ -0,0 +1,135 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Caches the {@link GraphStats} of named graphs. Statistics are computed on
+ * first use, at most once at a time per graph, and kept until a write through
+ * the rep classes invalidates them or, optionally, until they expire. A load
+ * which was overtaken by an invalidation is returned to its caller but not
+ * cached.
+ *
+ * @author rousakis
+ */
+public class GraphStatsCache implements GraphChangeListener {
+
+    /**
+     * Computes the statistics of a graph.
+     */
+    public interface Loader {
+
+        /**
+         * Computes the statistics of a graph.
+         *
+         * @param graph The named graph.
+         * @return
+         * @throws Exception
+         */
+        GraphStats load(String graph) throws Exception;
+    }
+
+    private final ConcurrentHashMap<String, FutureTask<GraphStats>> entries;
+    private final Loader loader;
+    private final long ttl;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param loader The loader of the statistics.
+     * @param ttl The time in milliseconds after which cached statistics are
+     * recomputed, or zero to keep them until they are invalidated.
+     */
+    public GraphStatsCache(Loader loader, long ttl) {
+        this.entries = new ConcurrentHashMap<>();
+        this.loader = loader;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns the statistics of a graph, computing them if they are not cached.
+     *
+     * @param graph The named graph.
+     * @return
+     * @throws Exception If the statistics could not be computed.
+     */
+    public GraphStats get(final String graph) throws Exception {
+        while (true) {
+            FutureTask<GraphStats> entry = entries.get(graph);
+            if (entry == null) {
+                FutureTask<GraphStats> task = new FutureTask<>(new Callable<GraphStats>() {
+                    @Override
+                    public GraphStats call() throws Exception {
+                        return loader.load(graph);
+                    }
+                });
+                entry = entries.putIfAbsent(graph, task);
+                if (entry == null) {
+                    entry = task;
+                    task.run();
+                }
+            }
+            try {
+                GraphStats stats = entry.get();
+                if (ttl > 0 && System.currentTimeMillis() - stats.getComputedAt() > ttl) {
+                    entries.remove(graph, entry);
+                    continue;
+                }
+                return stats;
+            } catch (ExecutionException ex) {
+                entries.remove(graph, entry);
+                throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw ex;
+            }
+        }
+    }
+
+    /**
+     * Returns the cached statistics of a graph without computing them.
+     *
+     * @param graph The named graph.
+     * @return The statistics, or null if they are not cached or still being
+     * computed.
+     */
+    public GraphStats peek(String graph) {
+        FutureTask<GraphStats> entry = entries.get(graph);
+        if (entry == null || !entry.isDone()) {
+            return null;
+        }
+        try {
+            return entry.get();
+        } catch (InterruptedException | ExecutionException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Drops the cached statistics of a graph.
+     *
+     * @param graph The named graph.
+     */
+    public void invalidate(String graph) {
+        entries.remove(graph);
+    }
+
+    /**
+     * Drops all cached statistics.
+     */
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    @Override
+    public void graphChanged(String graph) {
+        invalidate(graph);
+    }
+
+    @Override
+    public void allGraphsChanged() {
+        invalidateAll();
+    }
+}
@@ -0,0 +1,158 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The state of the incremental imports of a named graph: the size and the
+ * SHA-256 hash of every file which was imported, kept in a text file with one
+ * line per file, and a copy of the imported version of every file, which is
+ * needed to compute the delta once the file changes. The first line of the
+ * manifest identifies the graph; a state directory of another graph is
+ * rejected rather than silently reused.
+ *
+ * @author rousakis
+ */
+class ImportManifest {
+
+    private final File dir;
+    private final File file;
+    private final File snapshots;
+    private final String header;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    /**
+     * Opens the state of a graph, reading the manifest of earlier imports.
+     *
+     * @param dir The state directory. It is created if it does not exist.
+     * @param graph The imported graph.
+     * @throws IOException If the manifest cannot be read or belongs to another
+     * graph.
+     */
+    ImportManifest(File dir, String graph) throws IOException {
+        this.dir = dir;
+        this.file = new File(dir, "manifest");
+        this.snapshots = new File(dir, "snapshots");
+        this.header = "# import <" + graph + ">";
+        if (!snapshots.isDirectory() && !snapshots.mkdirs()) {
+            throw new IOException("Could not create the state directory " + snapshots);
+        }
+        if (!file.exists()) {
+            return;
+        }
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            if (!header.equals(line)) {
+                throw new IOException("The manifest " + file + " belongs to another import: " + line);
+            }
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length == 3) {
+                    entries.put(fields[2], new Entry(Long.parseLong(fields[0]), fields[1]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the recorded state of a file.
+     *
+     * @param name The name of the file.
+     * @return The state, or null if the file was never imported.
+     */
+    Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * Returns the names of the imported files.
+     *
+     * @return
+     */
+    Set<String> names() {
+        return entries.keySet();
+    }
+
+    /**
+     * Returns the copy of the imported version of a file.
+     *
+     * @param name The name of the file.
+     * @return
+     */
+    File snapshot(String name) {
+        return new File(snapshots, name);
+    }
+
+    /**
+     * Records a file as imported and keeps a copy of it.
+     *
+     * @param source The file.
+     * @param size The size of the file.
+     * @param hash The SHA-256 hash of the file.
+     * @throws IOException
+     */
+    void record(File source, long size, String hash) throws IOException {
+        Files.copy(source.toPath(), snapshot(source.getName()).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        entries.put(source.getName(), new Entry(size, hash));
+        save();
+    }
+
+    /**
+     * Forgets a file and deletes its copy.
+     *
+     * @param name The name of the file.
+     * @throws IOException
+     */
+    void remove(String name) throws IOException {
+        entries.remove(name);
+        Files.deleteIfExists(snapshot(name).toPath());
+        save();
+    }
+
+    /**
+     * Rewrites the manifest. The new manifest replaces the old one only once
+     * it has been written completely.
+     *
+     * @throws IOException
+     */
+    private void save() throws IOException {
+        File tmp = new File(dir, "manifest.tmp");
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            out.write(header + "\n");
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.write(entry.getValue().size + "\t" + entry.getValue().hash + "\t" + entry.getKey() + "\n");
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * The size and the hash of an imported file.
+     */
+    static class Entry {
+
+        final long size;
+        final String hash;
+
+        Entry(long size, String hash) {
+            this.size = size;
+            this.hash = hash;
+        }
+
+        boolean matches(long size, String hash) {
+            return this.size == size && this.hash.equals(hash);
+        }
+    }
+}
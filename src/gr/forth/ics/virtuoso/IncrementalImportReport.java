@@ -0,0 +1,123 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of an {@link IncrementalImporter} run.
+ *
+ * @author rousakis
+ */
+public class IncrementalImportReport {
+
+    private final int newFiles;
+    private final int changedFiles;
+    private final int removedFiles;
+    private final int unchangedFiles;
+    private final long addedTriples;
+    private final long deletedTriples;
+    private final List<String[]> errors;
+    private final long elapsed;
+
+    IncrementalImportReport(int newFiles, int changedFiles, int removedFiles, int unchangedFiles,
+            long addedTriples, long deletedTriples, List<String[]> errors, long elapsed) {
+        this.newFiles = newFiles;
+        this.changedFiles = changedFiles;
+        this.removedFiles = removedFiles;
+        this.unchangedFiles = unchangedFiles;
+        this.addedTriples = addedTriples;
+        this.deletedTriples = deletedTriples;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of files which were not imported before.
+     *
+     * @return
+     */
+    public int getNewFiles() {
+        return newFiles;
+    }
+
+    /**
+     * Returns the number of files whose contents changed since their last
+     * import.
+     *
+     * @return
+     */
+    public int getChangedFiles() {
+        return changedFiles;
+    }
+
+    /**
+     * Returns the number of imported files which no longer exist.
+     *
+     * @return
+     */
+    public int getRemovedFiles() {
+        return removedFiles;
+    }
+
+    /**
+     * Returns the number of files which were skipped because they did not
+     * change.
+     *
+     * @return
+     */
+    public int getUnchangedFiles() {
+        return unchangedFiles;
+    }
+
+    /**
+     * Returns the number of triples added to the graph, or -1 if the triples
+     * of the new files were not counted.
+     *
+     * @return
+     */
+    public long getAddedTriples() {
+        return addedTriples;
+    }
+
+    /**
+     * Returns the number of stale triples removed from the graph.
+     *
+     * @return
+     */
+    public long getDeletedTriples() {
+        return deletedTriples;
+    }
+
+    /**
+     * Returns the files which failed to import as pairs of file name and error
+     * message. They are retried by the next run.
+     *
+     * @return
+     */
+    public List<String[]> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the duration of the run in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(newFiles).append(" new, ").append(changedFiles).append(" changed, ")
+                .append(removedFiles).append(" removed, ").append(unchangedFiles).append(" unchanged files (")
+                .append(errors.size()).append(" failed) in ").append(elapsed).append("ms");
+        if (addedTriples >= 0) {
+            sb.append(", ").append(addedTriples).append(" triples added");
+        }
+        sb.append(", ").append(deletedTriples).append(" triples deleted");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,342 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.PathMatcher;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Statement;
+import org.openrdf.rio.RDFHandler;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * Imports a folder of RDF files into a named graph incrementally. The size
+ * and the SHA-256 hash of every imported file are recorded in a state
+ * directory, see {@link ImportManifest}, and a rerun only touches the files
+ * which differ from the recorded ones:
+ * <ul>
+ * <li>new files are registered with ld_add and loaded by a
+ * {@link VirtuosoBulkLoader},</li>
+ * <li>changed files are compared with the copy of their previous version by a
+ * {@link GraphDiff} and only the delta is applied to the graph, see
+ * {@link GraphPatchSink},</li>
+ * <li>the triples of files which were removed from the folder are deleted
+ * from the graph.</li>
+ * </ul>
+ * A file is recorded only after it was applied, so the files which failed are
+ * retried by the next run. The files are read on the client, for the hashes
+ * and the deltas, and new files are loaded by the server, so the folder must
+ * be visible to both; {@link #setServerFolder(String)} maps it to its path on
+ * the Virtuoso host.
+ * <p>
+ * The delta of a file assumes that its triples do not also occur in other
+ * files of the graph: a triple removed from one file is deleted from the graph
+ * even if another file still contains it. Triples with blank nodes can not be
+ * matched across parses, nor deleted with DELETE DATA, so if a changed or
+ * removed file has blank nodes in either version, no deltas are applied;
+ * instead the graph is cleared and all the files of the folder are loaded
+ * again in full.
+ *
+ * @author rousakis
+ */
+public class IncrementalImporter {
+
+    private static final TripleSource EMPTY = new TripleSource() {
+        @Override
+        public void emit(RDFHandler handler) throws Exception {
+            handler.startRDF();
+            handler.endRDF();
+        }
+    };
+    private final JDBCVirtuosoRep rep;
+    private final File stateDir;
+    private String serverFolder;
+    private int loaders;
+    private int chunkSize;
+    private int maxLinesInMemory;
+    private BulkLoadListener listener;
+
+    /**
+     * Creates a new importer with two loaders and deltas of 10000 triples per
+     * update.
+     *
+     * @param rep The JDBC connection layer.
+     * @param stateDir The directory which keeps the manifest and the copies of
+     * the imported files of one graph.
+     */
+    public IncrementalImporter(JDBCVirtuosoRep rep, File stateDir) {
+        this.rep = rep;
+        this.stateDir = stateDir;
+        this.loaders = 2;
+        this.chunkSize = 10000;
+        this.maxLinesInMemory = 500000;
+    }
+
+    /**
+     * Sets the path of the imported folder on the Virtuoso host.
+     *
+     * @param serverFolder The path, or null if it is the same as on the client.
+     * @return This importer.
+     */
+    public IncrementalImporter setServerFolder(String serverFolder) {
+        this.serverFolder = serverFolder;
+        return this;
+    }
+
+    /**
+     * Sets the number of concurrent rdf_loader_run() sessions for new files.
+     *
+     * @param loaders
+     * @return This importer.
+     */
+    public IncrementalImporter setLoaders(int loaders) {
+        this.loaders = Math.max(1, loaders);
+        return this;
+    }
+
+    /**
+     * Sets the number of triples per update of a delta.
+     *
+     * @param chunkSize
+     * @return This importer.
+     */
+    public IncrementalImporter setChunkSize(int chunkSize) {
+        this.chunkSize = Math.max(1, chunkSize);
+        return this;
+    }
+
+    /**
+     * Sets the number of lines per version which a delta keeps in memory, see
+     * {@link GraphDiff#setMaxLinesInMemory(int)}.
+     *
+     * @param maxLinesInMemory
+     * @return This importer.
+     */
+    public IncrementalImporter setMaxLinesInMemory(int maxLinesInMemory) {
+        this.maxLinesInMemory = Math.max(1, maxLinesInMemory);
+        return this;
+    }
+
+    /**
+     * Sets the listener which receives the progress reports of the load of the
+     * new files.
+     *
+     * @param listener
+     * @return This importer.
+     */
+    public IncrementalImporter setListener(BulkLoadListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Brings a named graph up to date with the files of a folder.
+     *
+     * @param folder The folder which contains the files.
+     * @param pattern The file name pattern of the files, e.g. *.nt or *.rdf.
+     * @param graph The graph which will receive the data.
+     * @return The final report of the run.
+     * @throws SQLException If the load of the new files could not be prepared
+     * or the checkpoint failed. Failures of single files are reported in the
+     * result.
+     * @throws IOException If the folder or the state directory could not be
+     * read or written.
+     */
+    public IncrementalImportReport importFolder(File folder, String pattern, String graph) throws SQLException, IOException {
+        VirtuosoMetrics metrics = rep.getMetrics();
+        long begin = metrics.start();
+        try {
+            IncrementalImportReport report = run(folder, pattern, graph);
+            metrics.success("jdbc.incrementalImport", begin, report.getNewFiles() + report.getChangedFiles() + report.getRemovedFiles());
+            return report;
+        } catch (SQLException | IOException ex) {
+            metrics.failure("jdbc.incrementalImport", begin);
+            throw ex;
+        }
+    }
+
+    private IncrementalImportReport run(File folder, String pattern, String graph) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        ImportManifest manifest = new ImportManifest(stateDir, graph);
+        File[] files = folder.listFiles();
+        if (files == null) {
+            throw new IOException("Could not list the folder " + folder);
+        }
+        Arrays.sort(files);
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+        List<File> added = new ArrayList<>();
+        List<File> changed = new ArrayList<>();
+        Map<String, String> hashes = new HashMap<>();
+        Set<String> present = new HashSet<>();
+        List<File> matched = new ArrayList<>();
+        int unchanged = 0;
+        for (File file : files) {
+            if (!file.isFile() || !matcher.matches(file.toPath().getFileName())) {
+                continue;
+            }
+            present.add(file.getName());
+            matched.add(file);
+            ImportManifest.Entry entry = manifest.get(file.getName());
+            String hash = sha256(file);
+            hashes.put(file.getName(), hash);
+            if (entry == null) {
+                added.add(file);
+            } else if (entry.matches(file.length(), hash)) {
+                unchanged++;
+            } else {
+                changed.add(file);
+            }
+        }
+        List<String> removed = new ArrayList<>();
+        for (String name : manifest.names()) {
+            if (!present.contains(name)) {
+                removed.add(name);
+            }
+        }
+        List<String[]> errors = new ArrayList<>();
+        long addedTriples = 0;
+        long deletedTriples = 0;
+        GraphDiff diff = new GraphDiff().setMaxLinesInMemory(maxLinesInMemory);
+        List<File> toLoad = new ArrayList<>(added);
+        if (needsRebuild(manifest, changed, removed)) {
+            deletedTriples = rep.countTriples(graph, true);
+            rep.executeUpdate("SPARQL CLEAR GRAPH <" + graph + ">");
+            rep.graphChanged(graph);
+            for (String name : new ArrayList<>(manifest.names())) {
+                manifest.remove(name);
+            }
+            toLoad = matched;
+        } else {
+            for (File file : changed) {
+                File snapshot = manifest.snapshot(file.getName());
+                if (!snapshot.isFile()) {
+                    errors.add(new String[]{file.getName(), "No copy of the previous version, its stale triples were kept."});
+                    toLoad.add(file);
+                    continue;
+                }
+                try {
+                    DiffReport delta = diff.diff(GraphDiff.file(snapshot, null), GraphDiff.file(file, null), new GraphPatchSink(rep, graph, chunkSize));
+                    addedTriples += delta.getAdded();
+                    deletedTriples += delta.getDeleted();
+                    manifest.record(file, file.length(), hashes.get(file.getName()));
+                } catch (Exception ex) {
+                    errors.add(new String[]{file.getName(), ex.getMessage()});
+                }
+            }
+            for (String name : removed) {
+                File snapshot = manifest.snapshot(name);
+                try {
+                    if (snapshot.isFile()) {
+                        deletedTriples += diff.diff(GraphDiff.file(snapshot, null), EMPTY, new GraphPatchSink(rep, graph, chunkSize)).getDeleted();
+                    }
+                    manifest.remove(name);
+                } catch (Exception ex) {
+                    errors.add(new String[]{name, ex.getMessage()});
+                }
+            }
+        }
+        if (!toLoad.isEmpty()) {
+            List<String> paths = new ArrayList<>(toLoad.size());
+            for (File file : toLoad) {
+                paths.add(serverFolder == null ? file.getAbsolutePath() : serverFolder + "/" + file.getName());
+            }
+            BulkLoadReport load = new VirtuosoBulkLoader(rep).setLoaders(loaders).setListener(listener).load(paths, graph);
+            Set<String> failed = new HashSet<>();
+            for (String[] error : load.getErrors()) {
+                failed.add(error[0]);
+            }
+            for (int i = 0; i < toLoad.size(); i++) {
+                File file = toLoad.get(i);
+                if (!failed.contains(paths.get(i)) && !failed.contains("rdf_loader_run()")) {
+                    manifest.record(file, file.length(), hashes.get(file.getName()));
+                }
+            }
+            errors.addAll(load.getErrors());
+            addedTriples = load.getTriples() < 0 ? -1 : addedTriples + load.getTriples();
+        } else if (!changed.isEmpty() || !removed.isEmpty()) {
+            rep.executeUpdate("checkpoint");
+        }
+        return new IncrementalImportReport(added.size(), changed.size(), removed.size(), unchanged,
+                addedTriples, deletedTriples, errors, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Returns whether a changed or removed file has blank nodes in its current
+     * or previous version, so the graph must be rebuilt instead of patched.
+     */
+    private static boolean needsRebuild(ImportManifest manifest, List<File> changed, List<String> removed) {
+        List<File> versions = new ArrayList<>();
+        for (File file : changed) {
+            versions.add(file);
+            versions.add(manifest.snapshot(file.getName()));
+        }
+        for (String name : removed) {
+            versions.add(manifest.snapshot(name));
+        }
+        for (File version : versions) {
+            if (version.isFile() && hasBlankNodes(version)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasBlankNodes(File file) {
+        final boolean[] found = new boolean[1];
+        try {
+            GraphDiff.file(file, null).emit(new RDFHandlerBase() {
+                @Override
+                public void handleStatement(Statement st) throws RDFHandlerException {
+                    if (st.getSubject() instanceof BNode || st.getObject() instanceof BNode) {
+                        found[0] = true;
+                        throw new RDFHandlerException("Blank node found.");
+                    }
+                }
+            });
+        } catch (Exception ex) {
+            // A file which can not be parsed is reported by its diff.
+        }
+        return found[0];
+    }
+
+    /**
+     * Returns the SHA-256 hash of the contents of a file.
+     *
+     * @param file The file.
+     * @return The hash in hexadecimal.
+     * @throws IOException
+     */
+    static String sha256(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+        byte[] buffer = new byte[65536];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
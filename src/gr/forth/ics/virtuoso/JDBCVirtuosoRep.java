@@ -1,20 +1,30 @@
 package gr.forth.ics.virtuoso;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * This class contains a set of methods which are used to handle Virtuoso Triple
- * Store over JDBC interface.
+ * Store over JDBC interface. An instance either holds a single connection,
+ * in which case it must not be shared between threads, or leases connections
+ * from a {@link VirtuosoConnectionPool} per operation, in which case it can be
+ * used concurrently.
  *
  * @author rous
  */
@@ -22,6 +32,34 @@ public class JDBCVirtuosoRep {
 
     private Connection conn;
     private Statement statement;
+    private VirtuosoConnectionPool pool;
+    private int fetchSize = 1000000;
+    private final GraphChangeNotifier changes = new GraphChangeNotifier();
+    private GraphStatsCache statsCache;
+    private volatile QueryResultCache resultCache;
+    private volatile SlowQueryLog slowQueries;
+    private volatile VirtuosoMetrics metrics = VirtuosoMetrics.global();
+    private volatile PrefixSet prefixes = PrefixSet.diachron();
+    private volatile int statementCacheSize = 64;
+    private final Map<Connection, PreparedStatementCache> statementCaches = new HashMap<>();
+    private final VirtuosoConnectionPool.DiscardListener statementCacheEvictor = new VirtuosoConnectionPool.DiscardListener() {
+        @Override
+        public void discarded(Connection connection) {
+            PreparedStatementCache cache;
+            synchronized (statementCaches) {
+                cache = statementCaches.remove(connection);
+            }
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    };
+    private volatile WriteMode writeMode = WriteMode.AUTOCOMMIT;
+    private final ThreadLocal<WriteMode> scopedWriteMode = new ThreadLocal<>();
+    private final Map<Connection, WriteMode> appliedWriteModes = new WeakHashMap<>();
+    private volatile ReadReplicas<VirtuosoConnectionPool> replicas;
+    private final ThreadLocal<ReadYourWritesScope> readYourWrites = new ThreadLocal<>();
+    private final GraphChangeListener sessionWrites = ReadYourWritesScope.recorder(readYourWrites);
     HashMap<String, String> namespaces;
 
     /**
@@ -42,14 +80,22 @@ public class JDBCVirtuosoRep {
         sa[2] = usr;
         sa[3] = pwd;
         Class.forName("virtuoso.jdbc4.Driver");
-        conn = DriverManager.getConnection("jdbc:virtuoso://" + sa[0] + ":" + sa[1] + "/charset=UTF-8/log_enable=2", sa[2], sa[3]);
+        conn = DriverManager.getConnection(connectionUrl(sa[0], sa[1], writeMode), sa[2], sa[3]);
         statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
         initNamespaces();
     }
 
     /**
      * Creates a new Virtuoso connection. The credentials are taken from a
-     * properties file.
+     * properties file. If the optional property Repository_PoolSize is set to a
+     * positive number, a pooled connection layer of that size is created
+     * instead of a single connection. The optional property
+     * Repository_WriteMode names the {@link WriteMode} of the updates. The
+     * optional property Repository_Replicas lists read replicas as
+     * comma separated host:port pairs, which get pools of
+     * Repository_ReplicaPoolSize connections (4 by default) and are picked as
+     * named by Repository_ReplicaSelection (LEAST_LOADED by default), see
+     * {@link #setReadReplicas(ReadReplicas)}.
      *
      * @param prop The properties file
      * @throws ClassNotFoundException
@@ -63,12 +109,204 @@ public class JDBCVirtuosoRep {
         sa[1] = Integer.parseInt(prop.getProperty("Repository_Port")) + "";
         sa[2] = prop.getProperty("Repository_Username");
         sa[3] = prop.getProperty("Repository_Password");
-        Class.forName("virtuoso.jdbc4.Driver");
-        conn = DriverManager.getConnection("jdbc:virtuoso://" + sa[0] + ":" + sa[1] + "/charset=UTF-8/log_enable=2", sa[2], sa[3]);
-        statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        String mode = prop.getProperty("Repository_WriteMode");
+        if (mode != null && !mode.trim().isEmpty()) {
+            writeMode = WriteMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        }
+        String poolSize = prop.getProperty("Repository_PoolSize");
+        if (poolSize != null && Integer.parseInt(poolSize.trim()) > 0) {
+            pool = new VirtuosoConnectionPool(connectionUrl(sa[0], sa[1], writeMode), sa[2], sa[3], Integer.parseInt(poolSize.trim()));
+            pool.addDiscardListener(statementCacheEvictor);
+        } else {
+            Class.forName("virtuoso.jdbc4.Driver");
+            conn = DriverManager.getConnection(connectionUrl(sa[0], sa[1], writeMode), sa[2], sa[3]);
+            statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        }
+        String replicaList = prop.getProperty("Repository_Replicas");
+        if (replicaList != null && !replicaList.trim().isEmpty()) {
+            String replicaPoolSize = prop.getProperty("Repository_ReplicaPoolSize", "4");
+            String selection = prop.getProperty("Repository_ReplicaSelection", ReplicaSelection.LEAST_LOADED.name());
+            List<VirtuosoConnectionPool> pools = new ArrayList<>();
+            for (String replica : replicaList.split(",")) {
+                String[] address = replica.trim().split(":");
+                pools.add(new VirtuosoConnectionPool(connectionUrl(address[0], address.length > 1 ? address[1] : "1111", writeMode), sa[2], sa[3],
+                        Integer.parseInt(replicaPoolSize.trim())));
+            }
+            replicas = new ReadReplicas<>(pools, ReplicaSelection.valueOf(selection.trim().toUpperCase(Locale.ROOT)));
+        }
         initNamespaces();
     }
 
+    /**
+     * Creates a new pooled Virtuoso connection layer. Each operation leases a
+     * connection from a bounded pool, so that the methods of this class can be
+     * called concurrently from many threads.
+     *
+     * @param virt_instance The IP of the machine which hosts Virtuoso.
+     * @param port The port.
+     * @param usr The username of the certified user.
+     * @param pwd The password of the certified user.
+     * @param poolSize The maximum number of open connections.
+     * @throws ClassNotFoundException
+     */
+    public JDBCVirtuosoRep(String virt_instance, int port, String usr, String pwd, int poolSize) throws ClassNotFoundException {
+        this(new VirtuosoConnectionPool(connectionUrl(virt_instance, port + "", WriteMode.AUTOCOMMIT), usr, pwd, poolSize));
+    }
+
+    /**
+     * Creates a new Virtuoso connection layer on top of an existing connection
+     * pool. Each operation leases a connection from the pool.
+     *
+     * @param pool The connection pool.
+     */
+    public JDBCVirtuosoRep(VirtuosoConnectionPool pool) {
+        this.pool = pool;
+        pool.addDiscardListener(statementCacheEvictor);
+        initNamespaces();
+    }
+
+    /**
+     * Returns the URL of a connection which starts in the given write mode, so
+     * that statements which run before the mode is applied, or which bypass
+     * {@link #applyWriteMode(Connection, WriteMode)}, use the configured mode
+     * as well.
+     */
+    private static String connectionUrl(String virt_instance, String port, WriteMode mode) {
+        return "jdbc:virtuoso://" + virt_instance + ":" + port + "/charset=UTF-8/log_enable=" + mode.getLogEnable();
+    }
+
+    /**
+     * Leases a connection and a statement for the duration of one operation.
+     * The lease must be closed when the operation completes.
+     *
+     * @return
+     * @throws SQLException
+     */
+    ConnectionLease lease() throws SQLException {
+        if (pool == null) {
+            return new ConnectionLease(null, conn, statement, false);
+        }
+        return leaseDedicated();
+    }
+
+    /**
+     * Leases a connection together with a statement which is not shared with
+     * any other operation, even in single connection mode. This is used by
+     * operations whose results outlive the next call on this instance.
+     *
+     * @return
+     * @throws SQLException
+     */
+    ConnectionLease leaseDedicated() throws SQLException {
+        if (pool == null) {
+            return new ConnectionLease(null, conn, conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), true);
+        }
+        Connection leased = borrow();
+        try {
+            return new ConnectionLease(pool, leased, leased.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), true);
+        } catch (SQLException ex) {
+            pool.invalidate(leased);
+            throw ex;
+        }
+    }
+
+    private Connection borrow() throws SQLException {
+        if (pool == null) {
+            return conn;
+        }
+        return borrow(pool);
+    }
+
+    private Connection borrow(VirtuosoConnectionPool source) throws SQLException {
+        long start = metrics.start();
+        Connection leased;
+        try {
+            leased = source.borrow();
+        } catch (SQLException ex) {
+            metrics.failure("jdbc.connectionWait", start);
+            throw ex;
+        }
+        metrics.success("jdbc.connectionWait", start, 0);
+        return leased;
+    }
+
+    /**
+     * Leases a connection for a read. With read replicas the connection is
+     * taken from a replica, unless the read must see the writes of the open
+     * {@link ReadYourWritesScope} of the calling thread or the replica can not
+     * be reached, in which case the read goes to the primary.
+     *
+     * @param graphs The graphs the read refers to.
+     * @param dedicated Whether the statement must not be shared with any
+     * other operation, see {@link #leaseDedicated()}.
+     * @return
+     * @throws SQLException
+     */
+    ConnectionLease leaseRead(Set<String> graphs, boolean dedicated) throws SQLException {
+        final ReadReplicas<VirtuosoConnectionPool> set = replicas;
+        ReadYourWritesScope scope = readYourWrites.get();
+        if (set == null || (scope != null && scope.requiresPrimary(graphs))) {
+            return dedicated ? leaseDedicated() : lease();
+        }
+        final int index = set.acquire();
+        VirtuosoConnectionPool replica = set.get(index);
+        Connection leased;
+        try {
+            leased = borrow(replica);
+        } catch (SQLException ex) {
+            set.release(index);
+            System.out.println("Exception: " + ex.getMessage() + " occured during the connection to read replica " + index + ", reading from the primary.");
+            return dedicated ? leaseDedicated() : lease();
+        }
+        try {
+            return new ConnectionLease(replica, leased, leased.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), true)
+                    .onClose(new Runnable() {
+                        @Override
+                        public void run() {
+                            set.release(index);
+                        }
+                    });
+        } catch (SQLException ex) {
+            replica.invalidate(leased);
+            set.release(index);
+            throw ex;
+        }
+    }
+
+    /**
+     * Leases a connection together with the prepared statement of a text. The
+     * statement is taken from the statement cache of the connection, in which
+     * case the lease does not close it, or prepared for this lease alone if
+     * the cache is disabled.
+     *
+     * @param text The text of the statement.
+     * @return
+     * @throws SQLException
+     */
+    private ConnectionLease leasePrepared(String text) throws SQLException {
+        Connection leased = borrow();
+        try {
+            int cacheSize = statementCacheSize;
+            if (cacheSize == 0) {
+                return new ConnectionLease(pool, leased, leased.prepareStatement(text, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY), true);
+            }
+            PreparedStatementCache cache;
+            synchronized (statementCaches) {
+                cache = statementCaches.get(leased);
+                if (cache == null) {
+                    cache = new PreparedStatementCache(cacheSize);
+                    statementCaches.put(leased, cache);
+                }
+            }
+            return new ConnectionLease(pool, leased, cache.prepare(leased, text), false);
+        } catch (SQLException ex) {
+            if (pool != null) {
+                pool.release(leased);
+            }
+            throw ex;
+        }
+    }
+
     private void initNamespaces() {
         namespaces = new HashMap<>();
         namespaces.put("rdfs", "http://www.w3.org/2000/01/rdf-schema#");
@@ -83,58 +321,220 @@ public class JDBCVirtuosoRep {
      * and its execution time will be printed or not.
      */
     public void executeUpdateQuery(String query, boolean logging) {
-        try {
-            long start = 0;
-            if (logging) {
-                System.out.println("QUERY: " + query);
-                start = System.currentTimeMillis();
-            }
-            statement.executeQuery("log_enable(3,1)");
-            if (query.startsWith("sparql")) {
-                if (!query.contains("PREFIX")) {
-                    String prefixes = "PREFIX diachron: <http://www.diachron-fp7.eu/resource/>\n"
-                            + "PREFIX efo:<http://www.ebi.ac.uk/efo/>\n"
-                            + "PREFIX co:<http://www.diachron-fp7.eu/changes/>\n";
-                    query = query.replace("sparql", "sparql " + prefixes);
-                }
-            }
-            statement.executeUpdate(query);
-            if (logging) {
-                System.out.println("Done in " + (System.currentTimeMillis() - start) + "ms");
+        update(query, logging);
+        queryExecuted(query);
+    }
+
+    /**
+     * Notifies the listeners of the graphs which an arbitrary query may have
+     * changed. If the query may write but no graph can be identified, all
+     * graphs are reported as changed.
+     *
+     * @param query The executed query.
+     */
+    void queryExecuted(String query) {
+        if (GraphReferences.mayWrite(query)) {
+            Set<String> graphs = GraphReferences.written(query);
+            if (graphs.isEmpty()) {
+                changes.allGraphsChanged();
+            } else {
+                changes.graphsChanged(graphs);
             }
+        }
+    }
+
+    private void update(String query, boolean logging, String... graphs) {
+        update(query, logging);
+        for (String graph : graphs) {
+            changes.graphChanged(graph);
+        }
+    }
+
+    private void update(String query, boolean logging) {
+        try (ConnectionLease lease = lease()) {
+            executeUpdateQuery(lease, query, logging);
         } catch (SQLException ex) {
             System.out.println("Exception: " + ex.getMessage());
             System.out.println("During the update query: " + query);
         }
     }
 
+    /**
+     * Executes an update query on a leased connection and reports failures to
+     * the caller instead of printing them. Listeners are not notified; the
+     * caller must report the graphs it changed with
+     * {@link #graphChanged(String)}.
+     *
+     * @param query The update query.
+     * @throws SQLException
+     */
+    void executeUpdate(String query) throws SQLException {
+        try (ConnectionLease lease = lease()) {
+            executeUpdateQuery(lease, query, false);
+        }
+    }
+
+    void executeUpdateQuery(ConnectionLease lease, String query, boolean logging) throws SQLException {
+        long start = 0;
+        if (logging) {
+            System.out.println("QUERY: " + query);
+            start = System.currentTimeMillis();
+        }
+        long begin = metrics.start();
+        try {
+            applyWriteMode(lease.getConnection(), getWriteMode());
+            String text = prefixes.declareIn(query);
+            SlowQueryProbe probe = probe("update", query, null, text);
+            int count = lease.getStatement().executeUpdate(text);
+            if (probe != null) {
+                probe.updated(count);
+            }
+            if (changesWriteMode(query)) {
+                forgetWriteMode(lease.getConnection());
+            }
+        } catch (SQLException ex) {
+            metrics.failure("jdbc.update", begin);
+            throw ex;
+        }
+        metrics.success("jdbc.update", begin, 0);
+        if (logging) {
+            System.out.println("Done in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Sets the write mode of the updates of this instance. The mode is
+     * applied once per connection, before its first update, and again only
+     * when it changes. By default updates are logged and committed row by
+     * row.
+     *
+     * @param mode The write mode.
+     */
+    public void setWriteMode(WriteMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("The write mode must not be null.");
+        }
+        this.writeMode = mode;
+    }
+
+    /**
+     * Returns the write mode of the updates of the current thread, i.e. the
+     * mode of its innermost open {@link WriteModeScope} or else the mode of
+     * this instance.
+     *
+     * @return
+     */
+    public WriteMode getWriteMode() {
+        WriteMode scoped = scopedWriteMode.get();
+        return scoped == null ? writeMode : scoped;
+    }
+
+    /**
+     * Opens a scope in which the updates of the current thread use a write
+     * mode of their own, e.g. {@link WriteMode#BULK} for a bulk job. When the
+     * scope is closed, later updates use the previous mode again.
+     *
+     * @param mode The write mode.
+     * @return The scope, which must be closed.
+     */
+    public WriteModeScope openWriteScope(WriteMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("The write mode must not be null.");
+        }
+        return new WriteModeScope(scopedWriteMode, mode);
+    }
+
+    /**
+     * Sets the write mode of a connection unless it is already in effect.
+     *
+     * @param connection The connection.
+     * @param mode The write mode.
+     * @throws SQLException
+     */
+    void applyWriteMode(Connection connection, WriteMode mode) throws SQLException {
+        synchronized (appliedWriteModes) {
+            if (appliedWriteModes.get(connection) == mode) {
+                return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.executeQuery(mode.statement()).close();
+        }
+        synchronized (appliedWriteModes) {
+            appliedWriteModes.put(connection, mode);
+        }
+    }
+
+    private void forgetWriteMode(Connection connection) {
+        synchronized (appliedWriteModes) {
+            appliedWriteModes.remove(connection);
+        }
+    }
+
+    /**
+     * Returns whether a statement may change the write mode of its connection
+     * behind the back of {@link #applyWriteMode(Connection, WriteMode)}, as
+     * rdf_loader_run() does.
+     */
+    private static boolean changesWriteMode(String query) {
+        return !query.regionMatches(true, 0, "sparql", 0, 6) && (query.contains("log_enable") || query.contains("rdf_loader_run"));
+    }
+
     /**
      * Executes a SPARQL select query given as parameter.
      *
      * @param query The SPARQL select query.
      * @param logging A boolean variable which denotes whether the select query
      * and its execution time will be printed or not.
-     * @return
+     * @return The result of the query. In pooled mode the connection stays
+     * leased until the result is closed or fully consumed.
      */
     public ResultSet executeSparqlQuery(String query, boolean logging) {
+        ConnectionLease lease = null;
+        long begin = metrics.start();
+        String text = "sparql " + prefixes.getPrologue() + query;
+        QueryResultCache cache = resultCache;
+        String key = null;
+        long since = 0;
         try {
+            if (cache != null) {
+                key = QueryResultCache.key(text);
+                CachedResult cached = cache.get(key);
+                if (cached != null) {
+                    metrics.success("jdbc.selectCached", begin, cached.getRowCount());
+                    return cached.asResultSet(null);
+                }
+                since = cache.generation();
+            }
+            lease = cache == null ? leaseRead(GraphReferences.read(query), false) : lease();
             ResultSet result;
             long start = 0;
             if (logging) {
                 System.out.println("QUERY: " + query);
                 start = System.currentTimeMillis();
             }
-            statement.setFetchSize(1000000);
-            StringBuilder sparql = new StringBuilder();
-            sparql.append("PREFIX diachron:<http://www.diachron-fp7.eu/resource/>\n").
-                    append("PREFIX efo:<http://www.ebi.ac.uk/efo/>\n").
-                    append("PREFIX co:<http://www.diachron-fp7.eu/changes/>\n");
-            result = statement.executeQuery("sparql " + sparql + query);
+            lease.getStatement().setFetchSize(fetchSize);
+            SlowQueryProbe probe = probe("select", query, null, text);
+            result = lease.getStatement().executeQuery(text);
+            if (probe != null) {
+                result = probe.wrap(result);
+            }
+            metrics.success("jdbc.select", begin, 0);
             if (logging) {
                 System.out.println("Done in " + (System.currentTimeMillis() - start) + "ms");
             }
+            if (!lease.isShared()) {
+                result = LeasedResultSet.wrap(result, lease);
+            }
+            if (cache != null) {
+                result = materialize(cache, key, query, result, since);
+            }
             return result;
         } catch (SQLException ex) {
+            metrics.failure("jdbc.select", begin);
+            if (lease != null) {
+                lease.close();
+            }
             System.out.println("Exception: " + ex.getMessage());
             System.out.println("During the select query: " + query);
             return null;
@@ -142,7 +542,473 @@ public class JDBCVirtuosoRep {
     }
 
     /**
-     * Returns the statement instance of this JDBC connection.
+     * Reads a result into the result cache. If the result exceeds the entry
+     * limit of the cache, the rows read so far are followed by the rest of the
+     * live result and nothing is cached.
+     *
+     * @return A result set which replays the rows; the live result is closed
+     * unless its rows are still needed.
+     */
+    private static ResultSet materialize(QueryResultCache cache, String key, String query, ResultSet result, long since) throws SQLException {
+        try {
+            ResultSetMetaData meta = result.getMetaData();
+            List<String> names = new ArrayList<>(meta.getColumnCount());
+            for (int c = 1; c <= meta.getColumnCount(); c++) {
+                names.add(meta.getColumnLabel(c));
+            }
+            CachedResult.Builder rows = new CachedResult.Builder(names, cache.getMaxEntryBytes());
+            while (result.next()) {
+                Object[] row = new Object[names.size()];
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = result.getObject(c + 1);
+                }
+                if (!rows.add(row)) {
+                    return rows.build().asResultSet(result);
+                }
+            }
+            result.close();
+            CachedResult cached = rows.build();
+            cache.put(key, GraphReferences.read(query), cached, since);
+            return cached.asResultSet(null);
+        } catch (SQLException ex) {
+            result.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Opens a streaming cursor over the rows of a SPARQL select query. The
+     * cursor uses a statement of its own, fetches rows from the server in pages
+     * of the given size and decodes columns only when they are read, so the
+     * memory it uses stays flat regardless of the size of the result. The
+     * cursor must be closed unless it is consumed to the end.
+     *
+     * @param query The SPARQL select query.
+     * @param fetchSize The number of rows fetched per round trip.
+     * @return
+     * @throws SQLException
+     */
+    public SparqlCursor openSparqlCursor(String query, int fetchSize) throws SQLException {
+        long begin = metrics.start();
+        String text = "sparql " + prefixes.getPrologue() + query;
+        QueryResultCache cache = resultCache;
+        String key = null;
+        long since = 0;
+        if (cache != null) {
+            key = QueryResultCache.key(text);
+            CachedResult cached = cache.get(key);
+            if (cached != null) {
+                return new SparqlCursor(new ConnectionLease(null, null, null, false), cached.asResultSet(null), metrics, begin);
+            }
+            since = cache.generation();
+        }
+        ConnectionLease lease = cache == null ? leaseRead(GraphReferences.read(query), true) : leaseDedicated();
+        try {
+            lease.getStatement().setFetchSize(fetchSize);
+            SlowQueryProbe probe = probe("cursor", query, null, text);
+            ResultSet live = lease.getStatement().executeQuery(text);
+            if (probe != null) {
+                live = probe.wrap(live);
+            }
+            if (cache == null) {
+                return new SparqlCursor(lease, live, metrics, begin);
+            }
+            ResultSet result = materialize(cache, key, query, live, since);
+            if (live.isClosed()) {
+                lease.close();
+                lease = new ConnectionLease(null, null, null, false);
+            }
+            return new SparqlCursor(lease, result, metrics, begin);
+        } catch (SQLException ex) {
+            metrics.failure("jdbc.cursor", begin);
+            lease.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Compiles a SPARQL query or update with %{name} parameters, declaring the
+     * prefixes of this instance, see {@link SparqlTemplate}. Templates should
+     * be compiled once and executed many times.
+     *
+     * @param template The SPARQL text, without the sparql keyword.
+     * @return
+     */
+    public SparqlTemplate prepareSparql(String template) {
+        return SparqlTemplate.compile(template, prefixes);
+    }
+
+    /**
+     * Opens a streaming cursor over the rows of a SPARQL select template. The
+     * template is executed through a prepared statement of the leased
+     * connection, which is cached, so repeated executions skip the parsing
+     * and compilation on the server. In single connection mode the cursor is
+     * invalidated by the next execution of the same template.
+     *
+     * @param query The SPARQL select template.
+     * @param values The values of the parameters by name.
+     * @param fetchSize The number of rows fetched per round trip.
+     * @return
+     * @throws SQLException
+     */
+    public SparqlCursor openSparqlCursor(SparqlTemplate query, Map<String, ?> values, int fetchSize) throws SQLException {
+        long begin = metrics.start();
+        ConnectionLease lease = null;
+        try {
+            lease = leasePrepared(query.getText());
+            PreparedStatement statement = (PreparedStatement) lease.getStatement();
+            query.bind(statement, values);
+            statement.setFetchSize(fetchSize);
+            SlowQueryProbe probe = probe("cursor", query.getTemplate(), values, query.render(values));
+            ResultSet result = statement.executeQuery();
+            return new SparqlCursor(lease, probe == null ? result : probe.wrap(result), metrics, begin);
+        } catch (SQLException | RuntimeException ex) {
+            metrics.failure("jdbc.cursor", begin);
+            if (lease != null) {
+                lease.close();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Executes a SPARQL update template through a cached prepared statement
+     * and notifies the listeners of the graphs it changed.
+     *
+     * @param update The SPARQL update template.
+     * @param values The values of the parameters by name.
+     * @throws SQLException
+     */
+    public void executeUpdate(SparqlTemplate update, Map<String, ?> values) throws SQLException {
+        long begin = metrics.start();
+        try (ConnectionLease lease = leasePrepared(update.getText())) {
+            PreparedStatement statement = (PreparedStatement) lease.getStatement();
+            update.bind(statement, values);
+            applyWriteMode(lease.getConnection(), getWriteMode());
+            SlowQueryProbe probe = probe("update", update.getTemplate(), values, update.render(values));
+            int count = statement.executeUpdate();
+            if (probe != null) {
+                probe.updated(count);
+            }
+        } catch (SQLException | RuntimeException ex) {
+            metrics.failure("jdbc.update", begin);
+            throw ex;
+        }
+        metrics.success("jdbc.update", begin, 0);
+        queryExecuted(update.render(values));
+    }
+
+    /**
+     * Sets the prefixes which are declared in the queries of this instance.
+     * By default these are the prefixes of the DIACHRON data model.
+     *
+     * @param prefixes The prefixes.
+     */
+    public void setPrefixes(PrefixSet prefixes) {
+        this.prefixes = prefixes;
+    }
+
+    /**
+     * Returns the prefixes which are declared in the queries of this instance.
+     *
+     * @return
+     */
+    public PrefixSet getPrefixes() {
+        return prefixes;
+    }
+
+    /**
+     * Sets the number of prepared statements which are cached per connection.
+     * The setting applies to connections which have no cache yet.
+     *
+     * @param size The number of statements, or 0 to prepare a statement for
+     * every execution.
+     */
+    public void setStatementCacheSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("The statement cache size must not be negative: " + size);
+        }
+        this.statementCacheSize = size;
+    }
+
+    /**
+     * Returns the number of prepared statements which are cached per
+     * connection.
+     *
+     * @return
+     */
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Returns a publisher which executes a SPARQL select query once it is
+     * subscribed to and streams the rows with backpressure.
+     *
+     * @param query The SPARQL select query.
+     * @param fetchSize The number of rows fetched per round trip.
+     * @return
+     */
+    public SparqlRowPublisher publishSparqlQuery(String query, int fetchSize) {
+        return new SparqlRowPublisher(this, query, fetchSize);
+    }
+
+    /**
+     * Sets the fetch size used by {@link #executeSparqlQuery(String, boolean)}.
+     *
+     * @param fetchSize The number of rows fetched per round trip.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Returns the fetch size used by
+     * {@link #executeSparqlQuery(String, boolean)}.
+     *
+     * @return
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the registry which records the metrics of the operations of this
+     * instance. By default the global registry is used.
+     *
+     * @param metrics The registry.
+     */
+    public void setMetrics(VirtuosoMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the registry which records the metrics of the operations of this
+     * instance.
+     *
+     * @return
+     */
+    public VirtuosoMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Registers a listener which is notified of the graphs changed by writes
+     * made through this instance.
+     *
+     * @param listener
+     */
+    public void addGraphChangeListener(GraphChangeListener listener) {
+        changes.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with
+     * {@link #addGraphChangeListener(GraphChangeListener)}.
+     *
+     * @param listener
+     */
+    public void removeGraphChangeListener(GraphChangeListener listener) {
+        changes.remove(listener);
+    }
+
+    /**
+     * Reports that the contents of a named graph were changed through this
+     * instance.
+     *
+     * @param graph The named graph.
+     */
+    void graphChanged(String graph) {
+        changes.graphChanged(graph);
+    }
+
+    /**
+     * Sends the reads of this instance to a set of read replicas: the SELECT
+     * queries of {@link #executeSparqlQuery(String, boolean)} and
+     * {@link #openSparqlCursor(String, int)}, which also serve
+     * {@link #graphExists(String)}, and the counts and statistics of graphs.
+     * Updates, imports and loads stay on the primary. Replicas lag behind the
+     * primary, so a session which reads its own writes should open a
+     * {@link #openReadYourWrites()} scope.
+     *
+     * @param replicas The connection pools of the replicas, or null to read
+     * from the primary.
+     */
+    public void setReadReplicas(ReadReplicas<VirtuosoConnectionPool> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Returns the read replicas of this instance, or null if it reads from the
+     * primary.
+     *
+     * @return
+     */
+    public ReadReplicas<VirtuosoConnectionPool> getReadReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Opens a read-your-writes session for the calling thread: until the
+     * scope is closed, the reads which refer to graphs the thread has written
+     * go to the primary instead of the replicas.
+     *
+     * @return The scope, to be closed at the end of the session.
+     */
+    public ReadYourWritesScope openReadYourWrites() {
+        changes.add(sessionWrites);
+        return new ReadYourWritesScope(readYourWrites);
+    }
+
+    /**
+     * Turns on the cache of SELECT results, which then serves
+     * {@link #executeSparqlQuery(String, boolean)} and
+     * {@link #openSparqlCursor(String, int)}, see {@link QueryResultCache}.
+     * Writes made through this instance invalidate the results of the
+     * queries over the graphs they change. Queries which miss the cache are
+     * read from the primary, not from read replicas, which may lag behind.
+     *
+     * @param maxEntries The maximum number of cached results.
+     * @param maxBytes The maximum estimated memory of the cached results.
+     * @param ttl The time in milliseconds after which results expire, or zero
+     * to keep them until they are invalidated.
+     */
+    public synchronized void enableResultCache(int maxEntries, long maxBytes, long ttl) {
+        disableResultCache();
+        resultCache = new QueryResultCache(maxEntries, maxBytes, ttl);
+        changes.add(resultCache);
+    }
+
+    /**
+     * Turns off the cache of SELECT results.
+     */
+    public synchronized void disableResultCache() {
+        if (resultCache != null) {
+            changes.remove(resultCache);
+            resultCache = null;
+        }
+    }
+
+    /**
+     * Returns the cache of SELECT results, or null if it is turned off.
+     *
+     * @return
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the log which records the queries and updates of this instance
+     * that keep the server busy for longer than its threshold, see
+     * {@link SlowQueryLog}. Execution plans are fetched on connections of the
+     * pool of this instance, hence only in pooled mode. Without a log, which
+     * is the default, queries are not timed.
+     *
+     * @param log The log, or null to stop recording.
+     */
+    public void setSlowQueryLog(SlowQueryLog log) {
+        this.slowQueries = log;
+    }
+
+    /**
+     * Returns the slow query log of this instance, or null if there is none.
+     *
+     * @return
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueries;
+    }
+
+    /**
+     * Starts timing a statement for the slow query log, if there is one.
+     *
+     * @return The probe, or null if there is no log.
+     */
+    private SlowQueryProbe probe(String kind, String query, Map<String, ?> values, String text) {
+        SlowQueryLog log = slowQueries;
+        return log == null ? null : new SlowQueryProbe(log, pool, kind, query, values, text);
+    }
+
+    /**
+     * Turns on the cache of graph statistics, which then also serves
+     * {@link #triplesNum(String)} and {@link #graphExists(String)}. Writes
+     * made through this instance invalidate the statistics of the graphs they
+     * change; writes made by other clients are only picked up when the
+     * statistics expire.
+     *
+     * @param ttl The time in milliseconds after which statistics are
+     * recomputed, or zero to keep them until they are invalidated.
+     */
+    public synchronized void enableStatsCache(long ttl) {
+        disableStatsCache();
+        statsCache = new GraphStatsCache(new GraphStatsCache.Loader() {
+            @Override
+            public GraphStats load(String graph) throws SQLException {
+                return computeGraphStats(graph, true);
+            }
+        }, ttl);
+        changes.add(statsCache);
+    }
+
+    /**
+     * Turns off the cache of graph statistics.
+     */
+    public synchronized void disableStatsCache() {
+        if (statsCache != null) {
+            changes.remove(statsCache);
+            statsCache = null;
+        }
+    }
+
+    /**
+     * Returns the statistics of a named graph: its triples, distinct subjects
+     * and predicates, and the triples per predicate. They are computed in one
+     * round trip, or taken from the cache if it is turned on.
+     *
+     * @param graph The named graph.
+     * @return
+     * @throws SQLException
+     */
+    public GraphStats getGraphStats(String graph) throws SQLException {
+        GraphStatsCache cache = statsCache;
+        if (cache == null) {
+            return computeGraphStats(graph, false);
+        }
+        try {
+            return cache.get(graph);
+        } catch (SQLException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    /**
+     * Computes the statistics of a graph on a read replica, unless they must
+     * come from the primary, as those kept by the statistics cache must: a
+     * replica may lag behind the write which invalidated them.
+     */
+    private GraphStats computeGraphStats(String graph, boolean primary) throws SQLException {
+        try (ConnectionLease lease = primary ? lease() : leaseRead(Collections.singleton(graph), false)) {
+            ResultSet result = lease.getStatement().executeQuery("sparql " + GraphStats.query(graph));
+            Map<String, Long> predicates = new HashMap<>();
+            long triples = 0;
+            long subjects = 0;
+            while (result.next()) {
+                long n = result.getLong(2);
+                predicates.put(result.getString(1), n);
+                triples += n;
+                subjects = result.getLong(3);
+            }
+            result.close();
+            return new GraphStats(graph, triples, subjects, predicates);
+        }
+    }
+
+    /**
+     * Returns the statement instance of this JDBC connection. In pooled mode
+     * there is no shared statement and null is returned.
      *
      * @return
      */
@@ -151,7 +1017,8 @@ public class JDBCVirtuosoRep {
     }
 
     /**
-     * Returns the connection instance of this JDBC connection.
+     * Returns the connection instance of this JDBC connection. In pooled mode
+     * there is no shared connection and null is returned.
      *
      * @return
      */
@@ -159,6 +1026,16 @@ public class JDBCVirtuosoRep {
         return conn;
     }
 
+    /**
+     * Returns the connection pool of this instance, or null if it uses a
+     * single connection.
+     *
+     * @return
+     */
+    public VirtuosoConnectionPool getPool() {
+        return pool;
+    }
+
     /**
      * Returns the number of the triples contained in the named graph given as
      * parameter.
@@ -167,9 +1044,37 @@ public class JDBCVirtuosoRep {
      * @return The number of triples.
      */
     public long triplesNum(String graph) {
+        if (statsCache != null) {
+            try {
+                return getGraphStats(graph).getTriples();
+            } catch (SQLException ex) {
+                System.out.println("Exception " + ex.getMessage() + "occured during the count of triples.");
+                return 0;
+            }
+        }
         try {
+            return countTriples(graph, false);
+        } catch (SQLException ex) {
+            System.out.println("Exception " + ex.getMessage() + "occured during the count of triples.");
+            return 0;
+        }
+    }
+
+    /**
+     * Counts the triples of a named graph, reporting failures to the caller.
+     * The statistics cache is bypassed.
+     *
+     * @param graph The named graph whose triples are counted.
+     * @param primary Whether the count must come from the primary, e.g. to
+     * measure a load, rather than from a read replica which may lag behind.
+     * @return The number of triples.
+     * @throws SQLException
+     */
+    long countTriples(String graph, boolean primary) throws SQLException {
+        long begin = metrics.start();
+        try (ConnectionLease lease = primary ? lease() : leaseRead(Collections.singleton(graph), false)) {
             String query = "SPARQL SELECT count(*) from <" + graph + "> where {?s ?p ?o}";
-            ResultSet result = statement.executeQuery(query);
+            ResultSet result = lease.getStatement().executeQuery(query);
             ResultSetMetaData meta = result.getMetaData();
             int count = meta.getColumnCount();
             long triples = 0;
@@ -178,10 +1083,12 @@ public class JDBCVirtuosoRep {
                     triples = Long.parseLong(result.getString(c));
                 }
             }
+            result.close();
+            metrics.success("jdbc.count", begin, 0);
             return triples;
         } catch (SQLException ex) {
-            System.out.println("Exception " + ex.getMessage() + "occured during the count of triples.");
-            return 0;
+            metrics.failure("jdbc.count", begin);
+            throw ex;
         }
     }
 
@@ -192,12 +1099,23 @@ public class JDBCVirtuosoRep {
      * @return True if the graph exists, false otherwise.
      */
     public boolean graphExists(String graph) {
+        if (statsCache != null) {
+            try {
+                return getGraphStats(graph).getTriples() > 0;
+            } catch (SQLException ex) {
+                System.out.println("Exception: " + ex.getMessage());
+                return false;
+            }
+        }
         String query = "SELECT * from <" + graph + "> where {?s ?p ?o} limit 2";
         ResultSet result = executeSparqlQuery(query, false);
+        if (result == null) {
+            return false;
+        }
         try {
-            if (result.next()) {
-                return true;
-            }
+            boolean exists = result.next();
+            result.close();
+            return exists;
         } catch (SQLException ex) {
             System.out.println("Exception: " + ex.getMessage());
         }
@@ -216,7 +1134,7 @@ public class JDBCVirtuosoRep {
      */
     public void importSingleRDFFile(String filename, String graph, boolean logging) {
         String query = "RDF_LOAD_RDFXML_MT(file_to_string_output('" + filename + "'), '', '" + graph + "')";
-        executeUpdateQuery(query, logging);
+        update(query, logging, graph);
     }
 
     /**
@@ -230,7 +1148,7 @@ public class JDBCVirtuosoRep {
      */
     public void importSingleN3File(String filename, String graph, boolean logging) {
         String query = "TTLP_MT(file_to_string_output('" + filename + "'), '', '" + graph + "')";
-        executeUpdateQuery(query, logging);
+        update(query, logging, graph);
     }
 
     /**
@@ -241,16 +1159,32 @@ public class JDBCVirtuosoRep {
      * execution time will be printed or not.
      */
     public void clearGraph(String graph, boolean logging) {
-        executeUpdateQuery("SPARQL CLEAR GRAPH <" + graph + ">", logging);
+        update("SPARQL CLEAR GRAPH <" + graph + ">", logging, graph);
     }
 
     /**
      * Terminates the JDBC connection.
      */
     public void terminate() {
-
+        synchronized (statementCaches) {
+            for (PreparedStatementCache cache : statementCaches.values()) {
+                cache.clear();
+            }
+            statementCaches.clear();
+        }
+        if (pool != null) {
+            pool.removeDiscardListener(statementCacheEvictor);
+        }
+        ReadReplicas<VirtuosoConnectionPool> set = replicas;
+        if (set != null) {
+            for (VirtuosoConnectionPool replica : set.getReplicas()) {
+                replica.close();
+            }
+        }
         try {
-            if (!statement.isClosed()) {
+            if (pool != null) {
+                pool.close();
+            } else if (!statement.isClosed()) {
                 statement.close();
                 conn.close();
             }
@@ -272,8 +1206,14 @@ public class JDBCVirtuosoRep {
     }
 
     public void processFilesToLoadQueue(boolean timer) throws Exception {
-        executeUpdateQuery("set isolation='uncommitted'", timer);
-        executeUpdateQuery("rdf_loader_run()", timer);
+        try (ConnectionLease lease = lease()) {
+            executeUpdateQuery(lease, "set isolation='uncommitted'", timer);
+            executeUpdateQuery(lease, "rdf_loader_run()", timer);
+        } catch (SQLException ex) {
+            System.out.println("Exception: " + ex.getMessage());
+            System.out.println("During the processing of the load list.");
+        }
+        changes.allGraphsChanged();
     }
 
     public void importRDFDataToVirtuoso(String repFolder, String format, String graph, boolean update, boolean logging) throws Exception {
@@ -289,33 +1229,168 @@ public class JDBCVirtuosoRep {
     }
 
     /**
-     * Copies the contents of a named graph into another.
+     * Imports the RDF files of a folder on the Virtuoso host into a named graph
+     * with several concurrent loaders, see {@link VirtuosoBulkLoader}.
+     *
+     * @param repFolder The folder on the Virtuoso host which contains the
+     * files.
+     * @param format The file name pattern of the files, e.g. *.nt or *.rdf.
+     * @param graph The graph which will receive the data.
+     * @param update If false the graph is cleared before the import.
+     * @param loaders The number of concurrent rdf_loader_run() sessions.
+     * @param logging A boolean variable which denotes whether the progress of
+     * the import will be printed or not.
+     * @return The final report of the import.
+     * @throws SQLException
+     */
+    public BulkLoadReport importRDFDataToVirtuoso(String repFolder, String format, String graph, boolean update, int loaders, boolean logging) throws SQLException {
+        VirtuosoBulkLoader loader = new VirtuosoBulkLoader(this).setLoaders(loaders);
+        if (logging) {
+            loader.setListener(new BulkLoadListener() {
+                @Override
+                public void progress(BulkLoadReport report) {
+                    System.out.println(report);
+                }
+            });
+        }
+        return loader.load(repFolder, format, graph, update);
+    }
+
+    /**
+     * Imports the RDF files of a folder into a named graph incrementally: only
+     * the files which are new, changed or removed since the last import are
+     * applied, see {@link IncrementalImporter}. The folder must have the same
+     * path on the client and on the Virtuoso host.
+     *
+     * @param repFolder The folder which contains the files.
+     * @param format The file name pattern of the files, e.g. *.nt or *.rdf.
+     * @param graph The graph which will receive the data.
+     * @param stateDir The directory which keeps the state of the imports of
+     * the graph.
+     * @param loaders The number of concurrent rdf_loader_run() sessions for
+     * the new files.
+     * @param logging A boolean variable which denotes whether the progress of
+     * the import will be printed or not.
+     * @return The final report of the import.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public IncrementalImportReport importRDFDataIncrementally(String repFolder, String format, String graph, File stateDir, int loaders, boolean logging) throws SQLException, IOException {
+        IncrementalImporter importer = new IncrementalImporter(this, stateDir).setLoaders(loaders);
+        if (logging) {
+            importer.setListener(new BulkLoadListener() {
+                @Override
+                public void progress(BulkLoadReport report) {
+                    System.out.println(report);
+                }
+            });
+        }
+        IncrementalImportReport report = importer.importFolder(new File(repFolder), format, graph);
+        if (logging) {
+            System.out.println(report);
+        }
+        return report;
+    }
+
+    /**
+     * Opens a spooler which stages triples into N-Triples files for the bulk
+     * loader instead of inserting them with SPARQL, see {@link TripleSpooler}.
+     * The directory must have the same path on the client and on the Virtuoso
+     * host, and be listed in its DirsAllowed.
+     *
+     * @param directory The spool directory.
+     * @param graph The graph which will receive the triples.
+     * @return The spooler, to be finished once all triples are added.
+     */
+    public TripleSpooler openSpool(String directory, String graph) {
+        return new TripleSpooler(this, new File(directory), graph);
+    }
+
+    /**
+     * Copies the contents of a named graph into another. The quads are copied
+     * in chunks, see {@link GraphCopier}.
      *
      * @param source The source named graph.
      * @param destination The destination named graph.
      */
     public void copyGraph(String source, String destination) {
-        String query = "sparql "
-                + "INSERT INTO <" + destination + "> {"
-                + "?s ?p ?o "
-                + "}\n"
-                + "WHERE {"
-                + "graph <" + source + "> { ?s ?p ?o }"
-                + "}";
-        executeUpdateQuery(query, false);
+        try {
+            printFailures(new GraphCopier(this).copy(source, destination), source);
+        } catch (SQLException | IOException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the copy of graph: " + source);
+        }
     }
 
     /**
-     * Renames a named graph.
+     * Copies the contents of a named graph into another in chunks with several
+     * concurrent workers, see {@link GraphCopier}.
+     *
+     * @param source The source named graph.
+     * @param destination The destination named graph.
+     * @param workers The number of chunks which are copied concurrently.
+     * @param checkpoint The file which records the completed chunks, so that a
+     * rerun resumes the unfinished ones, or null.
+     * @param logging A boolean variable which denotes whether the progress of
+     * the copy will be printed or not.
+     * @return The final report of the copy.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public GraphCopyReport copyGraph(String source, String destination, int workers, File checkpoint, boolean logging) throws SQLException, IOException {
+        return copier(workers, logging).setCheckpointFile(checkpoint).copy(source, destination);
+    }
+
+    /**
+     * Renames a named graph. The quads are moved in chunks, see
+     * {@link GraphCopier}.
      *
      * @param oldName The old name of the named graph.
      * @param newName The new name of the named graph.
      */
     public void renameGraph(String oldName, String newName) {
-        String query = "UPDATE DB.DBA.RDF_QUAD TABLE OPTION (index RDF_QUAD_GS) "
-                + "SET g = iri_to_id ('" + newName + "') "
-                + "WHERE g = iri_to_id ('" + oldName + "', 0)";
-        executeUpdateQuery(query, true);
+        try {
+            printFailures(new GraphCopier(this).rename(oldName, newName), oldName);
+        } catch (SQLException | IOException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the rename of graph: " + oldName);
+        }
+    }
+
+    /**
+     * Renames a named graph in chunks with several concurrent workers, see
+     * {@link GraphCopier}. A rename which did not complete is resumed by
+     * running it again.
+     *
+     * @param oldName The old name of the named graph.
+     * @param newName The new name of the named graph.
+     * @param workers The number of chunks which are moved concurrently.
+     * @param logging A boolean variable which denotes whether the progress of
+     * the rename will be printed or not.
+     * @return The final report of the rename.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public GraphCopyReport renameGraph(String oldName, String newName, int workers, boolean logging) throws SQLException, IOException {
+        return copier(workers, logging).rename(oldName, newName);
+    }
+
+    private GraphCopier copier(int workers, boolean logging) {
+        GraphCopier copier = new GraphCopier(this).setWorkers(workers);
+        if (logging) {
+            copier.setListener(new GraphCopyListener() {
+                @Override
+                public void progress(GraphCopyReport report) {
+                    System.out.println(report);
+                }
+            });
+        }
+        return copier;
+    }
+
+    private void printFailures(GraphCopyReport report, String graph) {
+        for (String[] error : report.getErrors()) {
+            System.out.println("Exception: " + error[1]);
+            System.out.println("During the chunk " + error[0] + " of graph: " + graph);
+        }
     }
 
     /**
@@ -327,10 +1402,7 @@ public class JDBCVirtuosoRep {
      * @param graph The named graph into which the triple will be inserted.
      */
     public void addTriple(String s, String p, String o, String graph) {
-        String update = "INSERT INTO <" + graph + "> {\n"
-                + "<" + s + "> <" + p + "> <" + o + ">.\n"
-                + "}\n";
-        executeUpdateQuery("sparql " + update, false);
+        addTriple(new TripleString(s, p, o, Triple_Type.URI), graph);
     }
 
     /**
@@ -342,41 +1414,104 @@ public class JDBCVirtuosoRep {
      * @param graph The named graph into which the triple will be inserted.
      */
     public void addLitTriple(String s, String p, String o, String graph) {
-        String update = "INSERT INTO <" + graph + "> {\n"
-                + "<" + s + "> <" + p + "> \"" + o + "\".\n"
-                + "}\n";
-        executeUpdateQuery("sparql " + update, false);
+        addTriple(new TripleString(s, p, o, Triple_Type.LITERAL), graph);
     }
 
     /**
-     * Inserts a list of triples within the given namedgraph.
+     * Inserts a triple into a named graph. Literals are escaped and may carry
+     * a language tag or a datatype, see {@link TermSerializer}.
+     *
+     * @param triple The triple.
+     * @param graph The named graph into which the triple will be inserted.
+     */
+    public void addTriple(TripleString triple, String graph) {
+        StringBuilder update = new StringBuilder(triple.length() + graph.length() + 32);
+        update.append("sparql INSERT INTO ");
+        TermSerializer.appendIri(update, graph).append(" {\n");
+        triple.appendTo(update).append(" .\n}\n");
+        update(update.toString(), false, graph);
+    }
+
+    /**
+     * Inserts a list of triples within the given namedgraph. The triples are
+     * sent in bounded chunks by a {@link BatchInserter}, so that a failing
+     * chunk does not drop the rest of the list.
      *
      * @param triples A list of {@link TripleString} instances which represents
      * the triples to be inserted.
      * @param graph The named graph into which the triple will be inserted.
      */
     public void addMultipleTriples(List<TripleString> triples, String graph) {
-        StringBuilder update = new StringBuilder();
-        update.append("INSERT INTO <" + graph + "> {\n");
-        for (TripleString triple : triples) {
-            update.append(triple.getTripleString() + ".\n");
+        printFailures(new BatchInserter(this).insert(triples, graph), graph);
+    }
+
+    /**
+     * Inserts a buffer of dictionary encoded triples within the given named
+     * graph. The text of the triples is rendered chunk by chunk while they are
+     * sent, see {@link BatchInserter}.
+     *
+     * @param triples The triples to be inserted.
+     * @param graph The named graph into which the triple will be inserted.
+     */
+    public void addMultipleTriples(CompactTripleBuffer triples, String graph) {
+        printFailures(new BatchInserter(this).insert(triples, graph), graph);
+    }
+
+    private void printFailures(BatchInsertResult result, String graph) {
+        for (BatchInsertResult.ChunkFailure failure : result.getFailures()) {
+            System.out.println("Exception: " + failure.getCause().getMessage());
+            System.out.println("During the insertion of triples " + failure.getOffset() + " to "
+                    + (failure.getOffset() + failure.getSize() - 1) + " into graph: " + graph);
         }
-        update.append("}\n");
-        executeUpdateQuery("sparql " + update.toString(), false);
     }
 
+    /**
+     * Dereifies the DIACHRON records of a named graph into another named
+     * graph. The records are processed in partitions, see
+     * {@link DiachronDereifier}.
+     *
+     * @param reifiedSrc The named graph which contains the records.
+     * @param dereifiedDst The named graph which will receive the triples.
+     */
     public void dereifyDiachronData(String reifiedSrc, String dereifiedDst) {
-        String query = "sparql insert into <" + dereifiedDst + "> {\n "
-                + "?s ?p ?o. \n"
-                + "} where { \n "
-                + "graph <" + reifiedSrc + "> {\n"
-                + "?record diachron:subject ?s ;\n"
-                + "        diachron:hasRecordAttribute ?ratt.\n"
-                + "?ratt diachron:predicate ?p ; \n"
-                + "      diachron:object ?o.\n"
-                + "}\n"
-                + "}";
-        executeUpdateQuery(query, false);
+        try {
+            DereificationReport report = new DiachronDereifier(this).dereify(reifiedSrc, dereifiedDst);
+            for (String[] error : report.getErrors()) {
+                System.out.println("Exception: " + error[1]);
+                System.out.println("During the dereification of partition " + error[0] + " of graph: " + reifiedSrc);
+            }
+        } catch (SQLException | IOException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the dereification of graph: " + reifiedSrc);
+        }
+    }
+
+    /**
+     * Dereifies the DIACHRON records of a named graph into another named graph
+     * with several concurrent workers, see {@link DiachronDereifier}.
+     *
+     * @param reifiedSrc The named graph which contains the records.
+     * @param dereifiedDst The named graph which will receive the triples.
+     * @param workers The number of partitions which are processed
+     * concurrently.
+     * @param checkpoint The file which records the completed partitions, so
+     * that a rerun resumes the unfinished ones, or null.
+     * @param logging A boolean variable which denotes whether the progress of
+     * the dereification will be printed or not.
+     * @return The final report of the dereification.
+     * @throws SQLException
+     * @throws IOException
+     */
+    public DereificationReport dereifyDiachronData(String reifiedSrc, String dereifiedDst, int workers, File checkpoint, boolean logging) throws SQLException, IOException {
+        DiachronDereifier dereifier = new DiachronDereifier(this).setWorkers(workers).setCheckpointFile(checkpoint);
+        if (logging) {
+            dereifier.setListener(new DereificationListener() {
+                @Override
+                public void progress(DereificationReport report) {
+                    System.out.println(report);
+                }
+            });
+        }
+        return dereifier.dereify(reifiedSrc, dereifiedDst);
     }
 
     public void addSchemaClass(String className, String graph) {
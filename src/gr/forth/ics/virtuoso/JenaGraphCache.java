@@ -0,0 +1,240 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+import virtuoso.jdbc3.VirtuosoDataSource;
+import virtuoso.jena.driver.VirtGraph;
+
+/**
+ * Hands out {@link VirtGraph} handles for many named graphs over a small,
+ * fixed set of JDBC connections. A VirtGraph binds to one connection when it
+ * is created; here every named graph is bound to one of the shared
+ * connections, chosen by the hash of its name, so switching between graphs
+ * neither opens nor closes connections. The most recently used handles are
+ * cached and evicted in LRU order.
+ * <p>
+ * Handles which share a connection must not be used concurrently, so threads
+ * which write in parallel should use a cache of their own. A connection which
+ * was found closed is reopened and the handles bound to it are recreated.
+ *
+ * @author rousakis
+ */
+public class JenaGraphCache {
+
+    private final VirtuosoDataSource source;
+    private final Connection[] connections;
+    private final Map<String, VirtGraph> graphs;
+
+    /**
+     * Creates a new cache. Connections are opened on first use.
+     *
+     * @param virt_instance The IP of the machine which hosts Virtuoso.
+     * @param port The port.
+     * @param usr The username of the certified user.
+     * @param pwd The password of the certified user.
+     * @param connections The number of shared connections.
+     * @param maxGraphs The number of graph handles which are cached.
+     */
+    @SuppressWarnings("serial")
+    public JenaGraphCache(String virt_instance, int port, String usr, String pwd, int connections, final int maxGraphs) {
+        if (connections < 1 || maxGraphs < 1) {
+            throw new IllegalArgumentException("The number of connections and graphs must be positive.");
+        }
+        this.source = new VirtuosoDataSource();
+        source.setServerName(virt_instance);
+        source.setPortNumber(port);
+        source.setUser(usr);
+        source.setPassword(pwd);
+        source.setCharset("UTF-8");
+        this.connections = new Connection[connections];
+        this.graphs = new LinkedHashMap<String, VirtGraph>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, VirtGraph> eldest) {
+                if (size() > maxGraphs) {
+                    eldest.getValue().close();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the handle of a named graph, creating it if it is not cached.
+     *
+     * @param graph The named graph.
+     * @return
+     * @throws SQLException If the shared connection could not be opened.
+     */
+    public synchronized VirtGraph graph(String graph) throws SQLException {
+        int index = (graph.hashCode() & Integer.MAX_VALUE) % connections.length;
+        VirtGraph handle = graphs.get(graph);
+        if (handle != null && isOpen(connections[index])) {
+            return handle;
+        }
+        Connection conn = connection(index);
+        handle = new VirtGraph(graph, new SharedConnectionSource(conn));
+        graphs.put(graph, handle);
+        return handle;
+    }
+
+    private Connection connection(int index) throws SQLException {
+        Connection conn = connections[index];
+        if (isOpen(conn)) {
+            return conn;
+        }
+        if (conn != null) {
+            evict(conn);
+        }
+        conn = source.getConnection();
+        connections[index] = conn;
+        return conn;
+    }
+
+    private static boolean isOpen(Connection conn) {
+        try {
+            return conn != null && !conn.isClosed();
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void evict(Connection conn) {
+        Iterator<VirtGraph> it = graphs.values().iterator();
+        while (it.hasNext()) {
+            VirtGraph handle = it.next();
+            if (unwrap(handle.getConnection()) == conn) {
+                it.remove();
+            }
+        }
+    }
+
+    private static Connection unwrap(Connection conn) {
+        if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof Unclosable) {
+            return ((Unclosable) Proxy.getInvocationHandler(conn)).target;
+        }
+        return conn;
+    }
+
+    /**
+     * Returns the number of cached graph handles.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return graphs.size();
+    }
+
+    /**
+     * Drops all graph handles and closes the shared connections.
+     */
+    public synchronized void close() {
+        for (VirtGraph handle : graphs.values()) {
+            handle.close();
+        }
+        graphs.clear();
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                try {
+                    connections[i].close();
+                } catch (SQLException ex) {
+                    System.out.println("Exception: " + ex.getMessage() + " occured during the close of a shared connection.");
+                }
+                connections[i] = null;
+            }
+        }
+    }
+
+    /**
+     * Passes all calls to a shared connection, except close() which is
+     * ignored.
+     */
+    private static class Unclosable implements InvocationHandler {
+
+        private final Connection target;
+
+        Unclosable(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("close") && method.getParameterTypes().length == 0) {
+                return null;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    /**
+     * A data source which always returns the same shared connection, used to
+     * bind a {@link VirtGraph} to it.
+     */
+    private static class SharedConnectionSource implements DataSource {
+
+        private final Connection conn;
+
+        SharedConnectionSource(Connection conn) {
+            this.conn = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Unclosable(conn));
+        }
+
+        @Override
+        public Connection getConnection() {
+            return conn;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return conn;
+        }
+
+        @Override
+        public PrintWriter getLogWriter() {
+            return null;
+        }
+
+        @Override
+        public void setLogWriter(PrintWriter out) {
+        }
+
+        @Override
+        public void setLoginTimeout(int seconds) {
+        }
+
+        @Override
+        public int getLoginTimeout() {
+            return 0;
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            throw new SQLFeatureNotSupportedException();
+        }
+
+        @Override
+        public <T> T unwrap(Class<T> iface) throws SQLException {
+            throw new SQLException("Not a wrapper of " + iface.getName());
+        }
+
+        @Override
+        public boolean isWrapperFor(Class<?> iface) {
+            return false;
+        }
+    }
+}
@@ -11,6 +11,9 @@ import java.io.BufferedReader;
 import java.io.FileInputStream;
 
 import java.io.InputStreamReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import virtuoso.jena.driver.*;
 
@@ -25,6 +28,13 @@ public class JenaVirtuosoRep {
     String conn_str;
     String username, password;
     VirtGraph graph;
+    private String host;
+    private int port;
+    private JenaGraphCache cache;
+    private boolean cached;
+    private int batchSize;
+    private final List<Triple> pending = new ArrayList<>();
+    private volatile VirtuosoMetrics metrics = VirtuosoMetrics.global();
 
     /**
      * Creates a new Virtuoso connection using a Jena RepositoryConnection.
@@ -34,26 +44,124 @@ public class JenaVirtuosoRep {
      * @param pwd The password of the certified user.
      */
     public JenaVirtuosoRep(String virt_instance, String usr, String pwd) {
-        conn_str = "jdbc:virtuoso://" + virt_instance + ":1111";
-        username = usr;
-        password = pwd;
+        this(virt_instance, 1111, usr, pwd);
+    }
+
+    /**
+     * Creates a new Virtuoso connection using a Jena RepositoryConnection.
+     *
+     * @param virt_instance The IP of the machine which hosts Virtuoso.
+     * @param port The port.
+     * @param usr The username of the certified user.
+     * @param pwd The password of the certified user.
+     */
+    public JenaVirtuosoRep(String virt_instance, int port, String usr, String pwd) {
+        init(virt_instance, port, usr, pwd);
         this.graph = new VirtGraph(conn_str, username, password);
     }
 
     public JenaVirtuosoRep(String graph, String virt_instance, String usr, String pwd) throws Exception {
-        conn_str = "jdbc:virtuoso://" + virt_instance + ":1111";
+        this(graph, virt_instance, 1111, usr, pwd);
+    }
+
+    /**
+     * Creates a new Virtuoso connection using a Jena RepositoryConnection
+     * which considers a named graph.
+     *
+     * @param graph The graph which is considered.
+     * @param virt_instance The IP of the machine which hosts Virtuoso.
+     * @param port The port.
+     * @param usr The username of the certified user.
+     * @param pwd The password of the certified user.
+     */
+    public JenaVirtuosoRep(String graph, String virt_instance, int port, String usr, String pwd) {
+        init(virt_instance, port, usr, pwd);
+        this.graph = new VirtGraph(graph, conn_str, username, password);
+    }
+
+    private void init(String virt_instance, int port, String usr, String pwd) {
+        this.host = virt_instance;
+        this.port = port;
+        conn_str = "jdbc:virtuoso://" + virt_instance + ":" + port;
         username = usr;
         password = pwd;
-        this.graph = new VirtGraph(graph, conn_str, username, password);
     }
 
     /**
-     * Sets the graph which will be considered.
+     * Sets the graph which will be considered. Triples pending in bulk mode
+     * are written to the previous graph first. If the graph cache is enabled,
+     * the handle of the graph is reused and no connection is opened.
      *
      * @param graph The graph which is set
      */
     public void setGraph(String graph) {
-        this.graph = new VirtGraph(graph, conn_str, username, password);
+        flush();
+        if (cache == null) {
+            this.graph = new VirtGraph(graph, conn_str, username, password);
+            this.cached = false;
+            return;
+        }
+        try {
+            this.graph = cache.graph(graph);
+            this.cached = true;
+        } catch (SQLException ex) {
+            throw new IllegalStateException("Could not open a connection for the graph " + graph, ex);
+        }
+    }
+
+    /**
+     * Enables the graph cache, which multiplexes the graphs set with
+     * {@link #setGraph(String)} over a few shared connections instead of
+     * opening a new connection on every switch.
+     *
+     * @param connections The number of shared connections.
+     * @param maxGraphs The number of graph handles which are cached.
+     * @return This instance.
+     */
+    public JenaVirtuosoRep enableGraphCache(int connections, int maxGraphs) {
+        if (cache != null) {
+            cache.close();
+        }
+        cache = new JenaGraphCache(host, port, username, password, connections, maxGraphs);
+        return this;
+    }
+
+    /**
+     * Returns the graph cache, or null if it is not enabled.
+     *
+     * @return
+     */
+    public JenaGraphCache getGraphCache() {
+        return cache;
+    }
+
+    /**
+     * Sets the bulk mode. In bulk mode added triples are buffered and written
+     * in batches through the bulk update handler of the graph, whenever the
+     * batch is full, on {@link #flush()}, before a query and before the graph
+     * is switched.
+     *
+     * @param batchSize The number of triples per batch, or 0 to write every
+     * triple immediately.
+     * @return This instance.
+     */
+    public JenaVirtuosoRep setBulkMode(int batchSize) {
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("The batch size must not be negative: " + batchSize);
+        }
+        flush();
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Returns the number of triples per batch in bulk mode, or 0 if the bulk
+     * mode is disabled.
+     *
+     * @return
+     */
+    public int getBatchSize() {
+        return batchSize;
     }
 
     /**
@@ -73,7 +181,7 @@ public class JenaVirtuosoRep {
      * @param o The object of the triple which is a URI.
      */
     public void addTriple(Node s, Node p, Node o) {
-        this.graph.add(new Triple(s, p, o));
+        add(new Triple(s, p, o));
     }
 
     /**
@@ -84,7 +192,78 @@ public class JenaVirtuosoRep {
      * @param o The object of the triple which is a string literal.
      */
     public void addTriple(Node s, Node p, String o) {
-        this.graph.add(new Triple(s, p, Node.createLiteral(o)));
+        add(new Triple(s, p, Node.createLiteral(o)));
+    }
+
+    /**
+     * Inserts a collection of triples into the considered graph through the
+     * bulk update handler of the graph. In bulk mode the triples are buffered
+     * like single triples.
+     *
+     * @param triples The triples.
+     */
+    public void addTriples(Collection<Triple> triples) {
+        if (batchSize > 0) {
+            for (Triple triple : triples) {
+                add(triple);
+            }
+        } else {
+            write(triples.toArray(new Triple[triples.size()]));
+        }
+    }
+
+    private void add(Triple triple) {
+        if (batchSize > 0) {
+            pending.add(triple);
+            if (pending.size() >= batchSize) {
+                flush();
+            }
+            return;
+        }
+        long start = metrics.start();
+        try {
+            this.graph.add(triple);
+        } catch (RuntimeException ex) {
+            metrics.failure("jena.add", start);
+            throw ex;
+        }
+        metrics.success("jena.add", start, 1);
+    }
+
+    /**
+     * Writes the triples which are pending in bulk mode.
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Triple[] batch = pending.toArray(new Triple[pending.size()]);
+        pending.clear();
+        write(batch);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void write(Triple[] batch) {
+        if (batch.length == 0) {
+            return;
+        }
+        long start = metrics.start();
+        try {
+            this.graph.getBulkUpdateHandler().add(batch);
+        } catch (RuntimeException ex) {
+            metrics.failure("jena.bulkAdd", start);
+            throw ex;
+        }
+        metrics.success("jena.bulkAdd", start, batch.length);
+    }
+
+    /**
+     * Returns the number of triples which are pending in bulk mode.
+     *
+     * @return
+     */
+    public int getPendingCount() {
+        return pending.size();
     }
 
     /**
@@ -93,16 +272,64 @@ public class JenaVirtuosoRep {
      * @param query The SPARQL select query.
      */
     public void executeSPARQL(String query) {
+        flush();
         Query sparql = QueryFactory.create(query);
-        VirtuosoQueryExecution vqe = VirtuosoQueryExecutionFactory.create(query, this.graph);
-        ResultSet results = vqe.execSelect();
-        while (results.hasNext()) {
-            QuerySolution result = results.nextSolution();
-//		    RDFNode graph = result.get("graph");
-            RDFNode s = result.get("s");
-            RDFNode p = result.get("p");
-            RDFNode o = result.get("o");
-            System.out.println(" { " + s + " " + p + " " + o + " . }");
+        long start = metrics.start();
+        long rows = 0;
+        try {
+            VirtuosoQueryExecution vqe = VirtuosoQueryExecutionFactory.create(query, this.graph);
+            ResultSet results = vqe.execSelect();
+            while (results.hasNext()) {
+                QuerySolution result = results.nextSolution();
+//		        RDFNode graph = result.get("graph");
+                RDFNode s = result.get("s");
+                RDFNode p = result.get("p");
+                RDFNode o = result.get("o");
+                System.out.println(" { " + s + " " + p + " " + o + " . }");
+                rows++;
+            }
+        } catch (RuntimeException ex) {
+            metrics.failure("jena.select", start);
+            throw ex;
+        }
+        metrics.success("jena.select", start, rows);
+    }
+
+    /**
+     * Writes the pending triples and closes the considered graph and the graph
+     * cache.
+     */
+    public void terminate() {
+        try {
+            flush();
+        } finally {
+            if (!cached) {
+                graph.close();
+            }
+            if (cache != null) {
+                cache.close();
+                cache = null;
+            }
         }
     }
+
+    /**
+     * Sets the registry which records the metrics of the operations of this
+     * instance. By default the global registry is used.
+     *
+     * @param metrics The registry.
+     */
+    public void setMetrics(VirtuosoMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the registry which records the metrics of the operations of this
+     * instance.
+     *
+     * @return
+     */
+    public VirtuosoMetrics getMetrics() {
+        return metrics;
+    }
 }
@@ -0,0 +1,136 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of latencies. Latencies are kept in microsecond
+ * buckets which grow exponentially, with four buckets per power of two, so
+ * percentiles are accurate to within 25% regardless of their magnitude while
+ * recording costs a few atomic increments.
+ *
+ * @author rousakis
+ */
+public class LatencyHistogram {
+
+    private static final int BUCKETS = 160;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong sum;
+    private final AtomicLong max;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(BUCKETS);
+        this.count = new AtomicLong();
+        this.sum = new AtomicLong();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos The latency in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        buckets.incrementAndGet(index(nanos / 1000));
+        count.incrementAndGet();
+        sum.addAndGet(nanos);
+        long current;
+        while (nanos > (current = max.get())) {
+            if (max.compareAndSet(current, nanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     *
+     * @return
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the sum of the recorded latencies in nanoseconds.
+     *
+     * @return
+     */
+    public long getTotalNanos() {
+        return sum.get();
+    }
+
+    /**
+     * Returns the largest recorded latency in nanoseconds.
+     *
+     * @return
+     */
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Returns the latency below which the given fraction of the recorded
+     * latencies fall.
+     *
+     * @param quantile The fraction, between 0 and 1.
+     * @return The latency in nanoseconds, or zero if nothing was recorded.
+     */
+    public long getPercentileNanos(double quantile) {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                return Math.min(upperBound(i) * 1000, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears the histogram.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    private static int index(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) ((micros >>> (exp - 2)) & 3);
+        return Math.min((exp - 1) * 4 + sub, BUCKETS - 1);
+    }
+
+    private static long upperBound(int index) {
+        if (index < 4) {
+            return index + 1;
+        }
+        int exp = index / 4 + 1;
+        int sub = index % 4;
+        return (5L + sub) << (exp - 2);
+    }
+}
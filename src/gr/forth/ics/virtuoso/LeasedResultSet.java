@@ -0,0 +1,46 @@
+package gr.forth.ics.virtuoso;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+/**
+ * Wraps a {@link ResultSet} so that the connection lease it was read from is
+ * released as soon as the result set is closed or fully consumed.
+ *
+ * @author rousakis
+ */
+class LeasedResultSet implements InvocationHandler {
+
+    private final ResultSet result;
+    private final ConnectionLease lease;
+
+    private LeasedResultSet(ResultSet result, ConnectionLease lease) {
+        this.result = result;
+        this.lease = lease;
+    }
+
+    static ResultSet wrap(ResultSet result, ConnectionLease lease) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new LeasedResultSet(result, lease));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        try {
+            Object value = method.invoke(result, args);
+            if (name.equals("close") || (name.equals("next") && Boolean.FALSE.equals(value))) {
+                lease.close();
+            }
+            return value;
+        } catch (InvocationTargetException ex) {
+            if (name.equals("close")) {
+                lease.close();
+            }
+            throw ex.getCause();
+        }
+    }
+}
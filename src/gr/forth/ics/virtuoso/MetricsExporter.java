@@ -0,0 +1,17 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Receives periodic snapshots of {@link VirtuosoMetrics}, e.g. in order to
+ * forward them to a monitoring system.
+ *
+ * @author rousakis
+ */
+public interface MetricsExporter {
+
+    /**
+     * Called with the latest snapshot of the metrics.
+     *
+     * @param snapshot The snapshot.
+     */
+    void export(MetricsSnapshot snapshot);
+}
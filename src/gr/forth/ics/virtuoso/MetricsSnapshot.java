@@ -0,0 +1,135 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable copy of the metrics of all operations taken at a point in
+ * time.
+ *
+ * @author rousakis
+ */
+public class MetricsSnapshot {
+
+    private final long timestamp;
+    private final Map<String, Operation> operations;
+
+    MetricsSnapshot(Iterable<OperationMetrics> metrics) {
+        this.timestamp = System.currentTimeMillis();
+        Map<String, Operation> copy = new TreeMap<>();
+        for (OperationMetrics m : metrics) {
+            copy.put(m.getName(), new Operation(m));
+        }
+        this.operations = Collections.unmodifiableMap(copy);
+    }
+
+    /**
+     * Returns when the snapshot was taken.
+     *
+     * @return The time in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the metrics of each operation by name.
+     *
+     * @return
+     */
+    public Map<String, Operation> getOperations() {
+        return operations;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Operation op : operations.values()) {
+            sb.append(op).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The metrics of one operation.
+     */
+    public static class Operation {
+
+        private final String name;
+        private final long count;
+        private final long errors;
+        private final long items;
+        private final long bytes;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p95Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+        private final double itemsPerSecond;
+
+        Operation(OperationMetrics m) {
+            this.name = m.getName();
+            this.count = m.getCount();
+            this.errors = m.getErrorCount();
+            this.items = m.getItems();
+            this.bytes = m.getBytes();
+            this.meanMillis = m.getMeanMillis();
+            this.p50Millis = m.getP50Millis();
+            this.p95Millis = m.getP95Millis();
+            this.p99Millis = m.getP99Millis();
+            this.maxMillis = m.getMaxMillis();
+            this.itemsPerSecond = m.getItemsPerSecond();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getErrorCount() {
+            return errors;
+        }
+
+        public long getItems() {
+            return items;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP95Millis() {
+            return p95Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        public double getItemsPerSecond() {
+            return itemsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: count=%d errors=%d mean=%.2fms p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms items=%d (%.0f/s) bytes=%d",
+                    name, count, errors, meanMillis, p50Millis, p95Millis, p99Millis, maxMillis, items, itemsPerSecond, bytes);
+        }
+    }
+}
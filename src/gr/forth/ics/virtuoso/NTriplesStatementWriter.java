@@ -0,0 +1,103 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.IOException;
+import java.io.Writer;
+import org.openrdf.model.BNode;
+import org.openrdf.model.Literal;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * A lean N-Triples writer which serializes statements into a reusable buffer
+ * and hands whole lines to the underlying writer, without the pretty printing,
+ * namespace and configuration machinery of the generic Rio writers. Output is
+ * UTF-8 N-Triples; only the characters which N-Triples requires are escaped.
+ *
+ * @author rousakis
+ */
+public class NTriplesStatementWriter extends RDFHandlerBase {
+
+    private final Writer out;
+    private final StringBuilder line;
+    private long statements;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param out The writer which receives the lines. It should be buffered.
+     */
+    public NTriplesStatementWriter(Writer out) {
+        this.out = out;
+        this.line = new StringBuilder(256);
+    }
+
+    @Override
+    public void handleStatement(Statement st) throws RDFHandlerException {
+        write(st.getSubject(), st.getPredicate(), st.getObject());
+    }
+
+    /**
+     * Writes one triple as an N-Triples line.
+     *
+     * @param s The subject.
+     * @param p The predicate.
+     * @param o The object.
+     * @throws RDFHandlerException If the underlying writer failed.
+     */
+    public void write(Value s, Value p, Value o) throws RDFHandlerException {
+        line.setLength(0);
+        appendValue(line, s);
+        line.append(' ');
+        appendValue(line, p);
+        line.append(' ');
+        appendValue(line, o);
+        line.append(" .\n");
+        try {
+            out.append(line);
+        } catch (IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+        statements++;
+    }
+
+    @Override
+    public void endRDF() throws RDFHandlerException {
+        try {
+            out.flush();
+        } catch (IOException ex) {
+            throw new RDFHandlerException(ex);
+        }
+    }
+
+    /**
+     * Returns the number of statements written so far.
+     *
+     * @return
+     */
+    public long getStatementCount() {
+        return statements;
+    }
+
+    /**
+     * Appends the N-Triples form of a value, see {@link TermSerializer}.
+     *
+     * @param sb The buffer.
+     * @param value The value.
+     */
+    static void appendValue(StringBuilder sb, Value value) {
+        if (value instanceof URI) {
+            TermSerializer.appendNTriplesIri(sb, value.stringValue());
+        } else if (value instanceof BNode) {
+            TermSerializer.appendBlankNode(sb, ((BNode) value).getID());
+        } else {
+            Literal literal = (Literal) value;
+            TermSerializer.appendLiteral(sb, literal.getLabel(), literal.getLanguage(), null);
+            if (literal.getLanguage() == null && literal.getDatatype() != null) {
+                TermSerializer.appendNTriplesIri(sb.append("^^"), literal.getDatatype().stringValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The metrics of one type of operation: the latency histogram of its
+ * executions, the number of failed executions and the number of items (rows
+ * or triples) and bytes it processed.
+ *
+ * @author rousakis
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final String name;
+    private final LatencyHistogram latencies;
+    private final AtomicLong errors;
+    private final AtomicLong items;
+    private final AtomicLong bytes;
+
+    OperationMetrics(String name) {
+        this.name = name;
+        this.latencies = new LatencyHistogram();
+        this.errors = new AtomicLong();
+        this.items = new AtomicLong();
+        this.bytes = new AtomicLong();
+    }
+
+    void success(long nanos, long processed) {
+        latencies.record(nanos);
+        if (processed > 0) {
+            items.addAndGet(processed);
+        }
+    }
+
+    void failure(long nanos) {
+        latencies.record(nanos);
+        errors.incrementAndGet();
+    }
+
+    void bytes(long processed) {
+        bytes.addAndGet(processed);
+    }
+
+    /**
+     * Returns the name of the operation.
+     *
+     * @return
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the latency histogram of the operation.
+     *
+     * @return
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public long getCount() {
+        return latencies.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    @Override
+    public long getItems() {
+        return items.get();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        long count = latencies.getCount();
+        return count == 0 ? 0 : latencies.getTotalNanos() / 1e6 / count;
+    }
+
+    @Override
+    public double getP50Millis() {
+        return latencies.getPercentileNanos(0.50) / 1e6;
+    }
+
+    @Override
+    public double getP95Millis() {
+        return latencies.getPercentileNanos(0.95) / 1e6;
+    }
+
+    @Override
+    public double getP99Millis() {
+        return latencies.getPercentileNanos(0.99) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return latencies.getMaxNanos() / 1e6;
+    }
+
+    /**
+     * Returns the number of items processed per second spent in the
+     * operation.
+     *
+     * @return
+     */
+    @Override
+    public double getItemsPerSecond() {
+        long nanos = latencies.getTotalNanos();
+        return nanos == 0 ? 0 : items.get() * 1e9 / nanos;
+    }
+
+    @Override
+    public void reset() {
+        latencies.reset();
+        errors.set(0);
+        items.set(0);
+        bytes.set(0);
+    }
+}
@@ -0,0 +1,31 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * The JMX view of the metrics of one type of operation.
+ *
+ * @author rousakis
+ */
+public interface OperationMetricsMBean {
+
+    long getCount();
+
+    long getErrorCount();
+
+    long getItems();
+
+    long getBytes();
+
+    double getMeanMillis();
+
+    double getP50Millis();
+
+    double getP95Millis();
+
+    double getP99Millis();
+
+    double getMaxMillis();
+
+    double getItemsPerSecond();
+
+    void reset();
+}
@@ -0,0 +1,101 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a {@link SesameParallelImporter} run.
+ *
+ * @author rousakis
+ */
+public class ParallelImportReport {
+
+    private final List<String[]> errors = new ArrayList<>();
+    private int files;
+    private long statements;
+    private long dropped;
+    private long elapsed;
+
+    synchronized void fileParsed() {
+        files++;
+    }
+
+    synchronized void statementsCommitted(int count) {
+        statements += count;
+    }
+
+    synchronized void statementsDropped(int count) {
+        dropped += count;
+    }
+
+    synchronized void error(String source, String message) {
+        errors.add(new String[]{source, message});
+    }
+
+    void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of files which were parsed completely.
+     *
+     * @return
+     */
+    public synchronized int getParsedFiles() {
+        return files;
+    }
+
+    /**
+     * Returns the number of statements which were committed.
+     *
+     * @return
+     */
+    public synchronized long getCommittedStatements() {
+        return statements;
+    }
+
+    /**
+     * Returns the number of statements which were parsed but not committed,
+     * because their commit failed or no writer was left to commit them.
+     *
+     * @return
+     */
+    public synchronized long getDroppedStatements() {
+        return dropped;
+    }
+
+    /**
+     * Returns the failures of the run as pairs of the failing file, or writer,
+     * and the error message.
+     *
+     * @return
+     */
+    public synchronized List<String[]> getErrors() {
+        return Collections.unmodifiableList(new ArrayList<>(errors));
+    }
+
+    /**
+     * Returns the wall clock time of the run in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    /**
+     * Returns the import throughput of the run.
+     *
+     * @return The committed statements per second.
+     */
+    public synchronized double getStatementsPerSecond() {
+        return elapsed == 0 ? 0 : statements * 1000.0 / elapsed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return files + " files, " + statements + " statements, " + dropped + " dropped (" + errors.size() + " errors) in "
+                + elapsed + "ms, " + String.format("%.1f", getStatementsPerSecond()) + " statements/sec";
+    }
+}
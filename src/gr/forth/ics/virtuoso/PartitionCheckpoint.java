@@ -0,0 +1,106 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records the partitions of a long running job which have completed, one per
+ * line of a text file, so that a rerun of the same job skips them. The first
+ * line of the file identifies the job; a file written by a different job is
+ * rejected rather than silently reused. Without a file the checkpoint only
+ * lives in memory.
+ *
+ * @author rousakis
+ */
+class PartitionCheckpoint {
+
+    private final File file;
+    private final Set<String> completed = new HashSet<>();
+    private final int resumed;
+    private Writer out;
+
+    /**
+     * Opens a checkpoint, reading the partitions completed by earlier runs.
+     *
+     * @param file The checkpoint file, or null.
+     * @param job The description of the job, e.g. its kind and graphs.
+     * @throws IOException If the file cannot be read or belongs to another job.
+     */
+    PartitionCheckpoint(File file, String job) throws IOException {
+        this.file = file;
+        String header = "# " + job.replace('\n', ' ');
+        if (file != null && file.exists() && file.length() > 0) {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line = in.readLine();
+                if (!header.equals(line)) {
+                    throw new IOException("The checkpoint " + file + " belongs to another job: " + line);
+                }
+                while ((line = in.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        completed.add(line);
+                    }
+                }
+            }
+            out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8);
+        } else if (file != null) {
+            out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+            out.write(header + "\n");
+            out.flush();
+        }
+        this.resumed = completed.size();
+    }
+
+    synchronized boolean isCompleted(String partition) {
+        return completed.contains(partition);
+    }
+
+    /**
+     * Records a completed partition and flushes the file.
+     *
+     * @param partition The partition.
+     * @throws IOException
+     */
+    synchronized void complete(String partition) throws IOException {
+        if (completed.add(partition) && out != null) {
+            out.write(partition + "\n");
+            out.flush();
+        }
+    }
+
+    synchronized int getCompletedCount() {
+        return completed.size();
+    }
+
+    /**
+     * Returns the number of partitions which were read from the file.
+     *
+     * @return
+     */
+    int getResumedCount() {
+        return resumed;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized void close() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ex) {
+                System.out.println("Exception: " + ex.getMessage() + " occured during the close of the checkpoint " + file);
+            }
+            out = null;
+        }
+    }
+}
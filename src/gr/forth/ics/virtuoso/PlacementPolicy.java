@@ -0,0 +1,72 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Decides which of several Virtuoso instances holds a named graph, see
+ * {@link GraphRouter}. A policy must be deterministic: the same graph must
+ * always be placed on the same instance, otherwise its triples end up spread
+ * over several instances.
+ *
+ * @author rousakis
+ */
+public abstract class PlacementPolicy {
+
+    /**
+     * Returns the instance which holds a named graph.
+     *
+     * @param graph The named graph.
+     * @param instances The number of instances.
+     * @return The index of the instance, between 0 and instances - 1.
+     */
+    public abstract int place(String graph, int instances);
+
+    /**
+     * Returns a policy which spreads the graphs by the hash of their IRI.
+     * Adding an instance moves most graphs, so the number of instances of a
+     * deployment should not change once data has been placed.
+     *
+     * @return
+     */
+    public static PlacementPolicy hash() {
+        return new PlacementPolicy() {
+            @Override
+            public int place(String graph, int instances) {
+                return (graph.hashCode() & Integer.MAX_VALUE) % instances;
+            }
+        };
+    }
+
+    /**
+     * Returns a policy which places the graphs by the longest prefix of their
+     * IRI, e.g. each dataset version on an instance of its own, and the rest of
+     * the graphs by another policy.
+     *
+     * @param prefixes The instance of each IRI prefix.
+     * @param fallback The policy for the graphs which match no prefix.
+     * @return
+     */
+    public static PlacementPolicy byPrefix(Map<String, Integer> prefixes, final PlacementPolicy fallback) {
+        final Map<String, Integer> placements = new LinkedHashMap<>(prefixes);
+        return new PlacementPolicy() {
+            @Override
+            public int place(String graph, int instances) {
+                String best = null;
+                for (String prefix : placements.keySet()) {
+                    if (graph.startsWith(prefix) && (best == null || prefix.length() > best.length())) {
+                        best = prefix;
+                    }
+                }
+                if (best == null) {
+                    return fallback.place(graph, instances);
+                }
+                int instance = placements.get(best);
+                if (instance < 0 || instance >= instances) {
+                    throw new IllegalArgumentException("The prefix " + best + " is placed on the missing instance " + instance);
+                }
+                return instance;
+            }
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An immutable set of namespace prefixes which is declared at the start of
+ * SPARQL queries. The prologue is built once, when the set is created, so
+ * adding it to a query costs a single concatenation.
+ *
+ * @author rousakis
+ */
+public final class PrefixSet {
+
+    private static final PrefixSet EMPTY = new PrefixSet(new LinkedHashMap<String, String>());
+    private static final PrefixSet DIACHRON = EMPTY
+            .with("diachron", "http://www.diachron-fp7.eu/resource/")
+            .with("efo", "http://www.ebi.ac.uk/efo/")
+            .with("co", "http://www.diachron-fp7.eu/changes/");
+    private final Map<String, String> namespaces;
+    private final String prologue;
+
+    private PrefixSet(Map<String, String> namespaces) {
+        this.namespaces = Collections.unmodifiableMap(namespaces);
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+            sb.append("PREFIX ").append(entry.getKey()).append(':');
+            TermSerializer.appendIri(sb, entry.getValue()).append('\n');
+        }
+        this.prologue = sb.toString();
+    }
+
+    /**
+     * Returns the set without prefixes.
+     *
+     * @return
+     */
+    public static PrefixSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the prefixes of the DIACHRON data model: diachron, efo and co.
+     * This is the default set of the repositories.
+     *
+     * @return
+     */
+    public static PrefixSet diachron() {
+        return DIACHRON;
+    }
+
+    /**
+     * Returns a set which also declares a prefix, or redeclares it.
+     *
+     * @param prefix The prefix, without the colon.
+     * @param namespace The namespace IRI.
+     * @return
+     */
+    public PrefixSet with(String prefix, String namespace) {
+        Map<String, String> copy = new LinkedHashMap<>(namespaces);
+        copy.put(prefix, namespace);
+        return new PrefixSet(copy);
+    }
+
+    /**
+     * Returns the namespaces by prefix.
+     *
+     * @return
+     */
+    public Map<String, String> getNamespaces() {
+        return namespaces;
+    }
+
+    /**
+     * Returns the PREFIX declarations, one per line.
+     *
+     * @return
+     */
+    public String getPrologue() {
+        return prologue;
+    }
+
+    /**
+     * Adds the prologue to a query which is sent through the SQL interface,
+     * i.e. starts with the sparql keyword, unless the query starts with a
+     * prologue or pragmas of its own. Only the start of the query is
+     * inspected.
+     *
+     * @param query The query.
+     * @return
+     */
+    String declareIn(String query) {
+        if (prologue.isEmpty() || !query.regionMatches(true, 0, "sparql", 0, 6)) {
+            return query;
+        }
+        int i = 6;
+        while (i < query.length() && Character.isWhitespace(query.charAt(i))) {
+            i++;
+        }
+        if (i == 6 && i < query.length()) {
+            return query;
+        }
+        if (query.regionMatches(true, i, "prefix", 0, 6) || query.regionMatches(true, i, "base", 0, 4)
+                || query.regionMatches(true, i, "define", 0, 6)) {
+            return query;
+        }
+        return "sparql " + prologue + query.substring(i);
+    }
+
+    @Override
+    public String toString() {
+        return prologue;
+    }
+}
@@ -0,0 +1,72 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The prepared statements of one connection, keyed by their text and evicted
+ * in LRU order. The cache is used by whoever holds the connection, so it is
+ * not thread safe; evicted statements are closed. The cache does not refer to
+ * its connection, which is passed to each {@link #prepare(Connection, String)}
+ * call, and is cleared by its owner when the connection is closed.
+ *
+ * @author rousakis
+ */
+class PreparedStatementCache {
+
+    private final LinkedHashMap<String, PreparedStatement> statements;
+
+    @SuppressWarnings("serial")
+    PreparedStatementCache(final int maxSize) {
+        this.statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() > maxSize) {
+                    close(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the prepared statement of a text, preparing it on a miss.
+     *
+     * @param connection The connection of this cache.
+     * @param text The text of the statement.
+     * @return
+     * @throws SQLException
+     */
+    PreparedStatement prepare(Connection connection, String text) throws SQLException {
+        PreparedStatement statement = statements.get(text);
+        if (statement != null && !statement.isClosed()) {
+            return statement;
+        }
+        statement = connection.prepareStatement(text, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        statements.put(text, statement);
+        return statement;
+    }
+
+    /**
+     * Closes all statements.
+     */
+    void clear() {
+        for (PreparedStatement statement : statements.values()) {
+            close(statement);
+        }
+        statements.clear();
+    }
+
+    private static void close(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the close of a prepared statement.");
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Caches the results of SELECT queries on the client, bounded by the number
+ * of entries and an estimate of their memory, with LRU eviction and an
+ * optional time to live. Entries are keyed by the query text with its
+ * whitespace normalized and remember the graphs the query refers to; a write
+ * through the rep classes to one of these graphs invalidates them. Queries
+ * which name no graph, e.g. over the default graph, are invalidated by every
+ * write. Writes made by other clients are only picked up when entries expire.
+ * <p>
+ * A result which was computed while a write invalidated the cache is returned
+ * to its caller but not cached, and a result larger than the entry limit is
+ * streamed without being cached.
+ *
+ * @author rousakis
+ */
+public class QueryResultCache implements GraphChangeListener {
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttl;
+    private long maxEntryBytes;
+    private final LinkedHashMap<String, Entry> entries;
+    private long bytes;
+    private long generation;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a new cache. A single entry may use up to a quarter of the
+     * memory limit.
+     *
+     * @param maxEntries The maximum number of cached results.
+     * @param maxBytes The maximum estimated memory of all cached results.
+     * @param ttl The time in milliseconds after which cached results expire,
+     * or zero to keep them until they are invalidated or evicted.
+     */
+    public QueryResultCache(int maxEntries, long maxBytes, long ttl) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("The cache limits must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.maxEntryBytes = Math.max(1, maxBytes / 4);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Sets the maximum estimated memory of a single cached result.
+     *
+     * @param maxEntryBytes
+     * @return This cache.
+     */
+    public synchronized QueryResultCache setMaxEntryBytes(long maxEntryBytes) {
+        this.maxEntryBytes = Math.max(1, Math.min(maxBytes, maxEntryBytes));
+        return this;
+    }
+
+    synchronized long getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * Returns the key of a query: its text with runs of whitespace outside
+     * IRIs and literals collapsed to a single space.
+     *
+     * @param query The query text.
+     * @return
+     */
+    static String key(String query) {
+        StringBuilder sb = new StringBuilder(query.length());
+        char quote = 0;
+        boolean space = false;
+        for (int i = 0; i < query.length(); i++) {
+            char c = query.charAt(i);
+            if (quote != 0) {
+                sb.append(c);
+                if (c == '\\' && quote != '>' && i + 1 < query.length()) {
+                    sb.append(query.charAt(++i));
+                } else if (c == quote) {
+                    quote = 0;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                space = sb.length() > 0;
+                continue;
+            }
+            if (space) {
+                sb.append(' ');
+                space = false;
+            }
+            if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '<' && i + 1 < query.length() && !Character.isWhitespace(query.charAt(i + 1)) && query.charAt(i + 1) != '=') {
+                quote = '>';
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the current generation of the cache, which changes on every
+     * invalidation. It must be taken before the query is executed.
+     *
+     * @return
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * Returns a cached result.
+     *
+     * @param key The key of the query.
+     * @return The result, or null if it is not cached or has expired.
+     */
+    synchronized CachedResult get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && ttl > 0 && System.currentTimeMillis() - entry.result.getCreatedAt() > ttl) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.result;
+    }
+
+    /**
+     * Caches a result unless an invalidation happened since the query was
+     * executed.
+     *
+     * @param key The key of the query.
+     * @param graphs The graphs the query refers to.
+     * @param result The result.
+     * @param since The generation taken before the query was executed.
+     */
+    synchronized void put(String key, Set<String> graphs, CachedResult result, long since) {
+        if (since != generation || result.getEstimatedBytes() > maxEntryBytes) {
+            return;
+        }
+        remove(key);
+        entries.put(key, new Entry(result, graphs));
+        bytes += result.getEstimatedBytes();
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && it.hasNext()) {
+            bytes -= it.next().getValue().result.getEstimatedBytes();
+            it.remove();
+        }
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            bytes -= entry.result.getEstimatedBytes();
+        }
+    }
+
+    /**
+     * Drops the results of the queries which refer to a graph or to no named
+     * graph at all.
+     *
+     * @param graph The named graph.
+     */
+    public synchronized void invalidate(String graph) {
+        generation++;
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.graphs.isEmpty() || entry.graphs.contains(graph)) {
+                bytes -= entry.result.getEstimatedBytes();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all cached results.
+     */
+    public synchronized void invalidateAll() {
+        generation++;
+        entries.clear();
+        bytes = 0;
+    }
+
+    @Override
+    public void graphChanged(String graph) {
+        invalidate(graph);
+    }
+
+    @Override
+    public void allGraphsChanged() {
+        invalidateAll();
+    }
+
+    /**
+     * Returns the number of cached results.
+     *
+     * @return
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the estimated memory of the cached results in bytes.
+     *
+     * @return
+     */
+    public synchronized long getEstimatedBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the number of lookups which found a result.
+     *
+     * @return
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of lookups which found no result.
+     *
+     * @return
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private static class Entry {
+
+        final CachedResult result;
+        final Set<String> graphs;
+
+        Entry(CachedResult result, Set<String> graphs) {
+            this.result = result;
+            this.graphs = Collections.unmodifiableSet(graphs);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A set of read replicas of a Virtuoso primary, e.g. the connection pools of
+ * the replicas for a {@link JDBCVirtuosoRep} or their repositories for a
+ * {@link SesameVirtRep}. Every read acquires a replica, which is picked
+ * according to a {@link ReplicaSelection}, and releases it when its result has
+ * been consumed, so the set knows how many reads are in progress on each
+ * replica.
+ *
+ * @param <T> The type of the handles of the replicas.
+ * @author rousakis
+ */
+public class ReadReplicas<T> {
+
+    private final List<T> replicas;
+    private final ReplicaSelection selection;
+    private final AtomicInteger turn = new AtomicInteger();
+    private final AtomicIntegerArray inFlight;
+
+    /**
+     * Creates a new replica set.
+     *
+     * @param replicas The handles of the replicas.
+     * @param selection The way the replica of a read is picked.
+     */
+    public ReadReplicas(List<T> replicas, ReplicaSelection selection) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required.");
+        }
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.selection = selection;
+        this.inFlight = new AtomicIntegerArray(replicas.size());
+    }
+
+    /**
+     * Returns the handles of the replicas.
+     *
+     * @return
+     */
+    public List<T> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Returns the way the replica of a read is picked.
+     *
+     * @return
+     */
+    public ReplicaSelection getSelection() {
+        return selection;
+    }
+
+    /**
+     * Returns the number of reads in progress on a replica.
+     *
+     * @param index The index of the replica.
+     * @return
+     */
+    public int getInFlight(int index) {
+        return inFlight.get(index);
+    }
+
+    /**
+     * Picks the replica of a read. It must be released with
+     * {@link #release(int)} once the read completes.
+     *
+     * @return The index of the replica.
+     */
+    int acquire() {
+        int n = replicas.size();
+        int first = (turn.getAndIncrement() & Integer.MAX_VALUE) % n;
+        int index = first;
+        if (selection == ReplicaSelection.LEAST_LOADED) {
+            int load = inFlight.get(first);
+            for (int i = 1; i < n && load > 0; i++) {
+                int candidate = (first + i) % n;
+                int candidateLoad = inFlight.get(candidate);
+                if (candidateLoad < load) {
+                    index = candidate;
+                    load = candidateLoad;
+                }
+            }
+        }
+        inFlight.incrementAndGet(index);
+        return index;
+    }
+
+    /**
+     * Returns the handle of a replica.
+     *
+     * @param index The index of the replica.
+     * @return
+     */
+    T get(int index) {
+        return replicas.get(index);
+    }
+
+    /**
+     * Ends a read on a replica.
+     *
+     * @param index The index of the replica.
+     */
+    void release(int index) {
+        inFlight.decrementAndGet(index);
+    }
+}
@@ -0,0 +1,113 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A session of a thread which must see its own writes although the reads of
+ * its rep class go to read replicas, opened with
+ * {@link JDBCVirtuosoRep#openReadYourWrites()} or
+ * {@link SesameVirtRep#openReadYourWrites()}. The scope records the graphs
+ * written by its thread, and the reads which refer to one of them, or to no
+ * named graph at all, go to the primary until the scope is closed. Writes made
+ * by the workers of an engine, e.g. a {@link GraphCopier}, run on other
+ * threads and are not recorded. Scopes are meant for try-with-resources
+ * blocks and must be closed in the reverse order of their opening.
+ *
+ * @author rousakis
+ */
+public class ReadYourWritesScope implements AutoCloseable {
+
+    private final ThreadLocal<ReadYourWritesScope> current;
+    private final ReadYourWritesScope previous;
+    private final Set<String> graphs = new HashSet<>();
+    private boolean all;
+    private boolean closed;
+
+    ReadYourWritesScope(ThreadLocal<ReadYourWritesScope> current) {
+        this.current = current;
+        this.previous = current.get();
+        current.set(this);
+    }
+
+    /**
+     * Returns a listener which records the writes of a thread into its open
+     * scope, if any.
+     *
+     * @param current The scopes of the threads.
+     * @return
+     */
+    static GraphChangeListener recorder(final ThreadLocal<ReadYourWritesScope> current) {
+        return new GraphChangeListener() {
+            @Override
+            public void graphChanged(String graph) {
+                ReadYourWritesScope scope = current.get();
+                if (scope != null) {
+                    scope.written(graph);
+                }
+            }
+
+            @Override
+            public void allGraphsChanged() {
+                ReadYourWritesScope scope = current.get();
+                if (scope != null) {
+                    scope.allWritten();
+                }
+            }
+        };
+    }
+
+    private void written(String graph) {
+        graphs.add(graph);
+        if (previous != null) {
+            previous.written(graph);
+        }
+    }
+
+    private void allWritten() {
+        all = true;
+        if (previous != null) {
+            previous.allWritten();
+        }
+    }
+
+    /**
+     * Returns whether a read must go to the primary to see the writes of this
+     * scope.
+     *
+     * @param read The graphs the read refers to.
+     * @return
+     */
+    boolean requiresPrimary(Set<String> read) {
+        if (all) {
+            return true;
+        }
+        if (graphs.isEmpty()) {
+            return false;
+        }
+        return read.isEmpty() || !Collections.disjoint(graphs, read);
+    }
+
+    /**
+     * Returns the graphs written in this scope so far.
+     *
+     * @return
+     */
+    public Set<String> getWrittenGraphs() {
+        return Collections.unmodifiableSet(graphs);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+}
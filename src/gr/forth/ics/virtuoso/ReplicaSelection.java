@@ -0,0 +1,19 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * The ways a {@link ReadReplicas} set picks the replica of a read.
+ *
+ * @author rousakis
+ */
+public enum ReplicaSelection {
+
+    /**
+     * The replicas take turns, whatever their load.
+     */
+    ROUND_ROBIN,
+    /**
+     * The replica with the fewest reads in progress is picked; ties are
+     * broken in turns. Long exports then do not pile up on one replica.
+     */
+    LEAST_LOADED
+}
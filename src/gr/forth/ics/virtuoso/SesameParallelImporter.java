@@ -0,0 +1,336 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+import org.openrdf.rio.RDFHandlerException;
+import org.openrdf.rio.RDFParseException;
+import org.openrdf.rio.RDFParser;
+import org.openrdf.rio.Rio;
+import org.openrdf.rio.helpers.RDFHandlerBase;
+
+/**
+ * Imports many RDF files from the client machine into a named graph. This is
+ * meant for files which are not on the Virtuoso host, where the server side
+ * loader cannot be used. Files are parsed with Rio on parser threads, which
+ * hand batches of statements through a bounded queue to writer threads. Each
+ * writer owns a connection and commits every given number of statements. A
+ * writer whose connection fails leaves the queue to the others; only when no
+ * writer is left are the remaining statements dropped, and counted as such.
+ * Files whose name ends with .gz are decompressed on the fly.
+ *
+ * @author rousakis
+ */
+public class SesameParallelImporter {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final List<Statement> END = Collections.emptyList();
+    private final Repository repository;
+    private int parsers;
+    private int writers;
+    private int commitSize;
+    private int queueCapacity;
+
+    /**
+     * Creates a new importer with two parsers, four writers which commit every
+     * 10000 statements and room for 100 batches of statements in the queue.
+     *
+     * @param repository The repository which receives the statements.
+     */
+    public SesameParallelImporter(Repository repository) {
+        this.repository = repository;
+        this.parsers = 2;
+        this.writers = 4;
+        this.commitSize = 10000;
+        this.queueCapacity = 100;
+    }
+
+    /**
+     * Sets the number of parser threads.
+     *
+     * @param parsers
+     * @return This importer.
+     */
+    public SesameParallelImporter setParsers(int parsers) {
+        this.parsers = Math.max(1, parsers);
+        return this;
+    }
+
+    /**
+     * Sets the number of writer threads, each of which opens a connection.
+     *
+     * @param writers
+     * @return This importer.
+     */
+    public SesameParallelImporter setWriters(int writers) {
+        this.writers = Math.max(1, writers);
+        return this;
+    }
+
+    /**
+     * Sets the number of statements after which a writer commits.
+     *
+     * @param commitSize
+     * @return This importer.
+     */
+    public SesameParallelImporter setCommitSize(int commitSize) {
+        this.commitSize = Math.max(1, commitSize);
+        return this;
+    }
+
+    /**
+     * Sets the number of statement batches which may wait in the queue between
+     * the parsers and the writers.
+     *
+     * @param queueCapacity
+     * @return This importer.
+     */
+    public SesameParallelImporter setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        return this;
+    }
+
+    /**
+     * Imports all files of a directory.
+     *
+     * @param dir The directory.
+     * @param format The format of the files, or null to guess it from the name
+     * of each file.
+     * @param graph The named graph destination.
+     * @return
+     * @throws IOException If the directory cannot be listed.
+     */
+    public ParallelImportReport importDirectory(File dir, RDFFormat format, String graph) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list the directory: " + dir);
+        }
+        List<File> regular = new ArrayList<>();
+        for (File file : files) {
+            if (file.isFile()) {
+                regular.add(file);
+            }
+        }
+        Collections.sort(regular);
+        return importFiles(regular, format, graph);
+    }
+
+    /**
+     * Imports a list of files.
+     *
+     * @param files The files.
+     * @param format The format of the files, or null to guess it from the name
+     * of each file.
+     * @param graph The named graph destination.
+     * @return
+     */
+    public ParallelImportReport importFiles(List<File> files, final RDFFormat format, String graph) {
+        long start = System.currentTimeMillis();
+        final ParallelImportReport report = new ParallelImportReport();
+        final BlockingQueue<List<Statement>> queue = new ArrayBlockingQueue<>(queueCapacity);
+        final URI context = repository.getValueFactory().createURI(graph);
+        final AtomicInteger live = new AtomicInteger(writers);
+        final AtomicBoolean parsed = new AtomicBoolean();
+        ExecutorService writerPool = Executors.newFixedThreadPool(writers);
+        for (int i = 0; i < writers; i++) {
+            final String name = "writer-" + i;
+            writerPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    write(name, queue, context, report, live, parsed);
+                }
+            });
+        }
+        writerPool.shutdown();
+        ExecutorService parserPool = Executors.newFixedThreadPool(parsers);
+        for (final File file : files) {
+            parserPool.submit(new Runnable() {
+                @Override
+                public void run() {
+                    parse(file, format, queue, report);
+                }
+            });
+        }
+        parserPool.shutdown();
+        try {
+            parserPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            parsed.set(true);
+            for (int i = 0; i < writers; i++) {
+                while (live.get() > 0 && !queue.offer(END, 100, TimeUnit.MILLISECONDS)) {
+                    // wait for a live writer to make room
+                }
+            }
+            writerPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            parserPool.shutdownNow();
+            writerPool.shutdownNow();
+            report.error("import", "Interrupted");
+        }
+        report.setElapsed(System.currentTimeMillis() - start);
+        return report;
+    }
+
+    private void parse(File file, RDFFormat format, final BlockingQueue<List<Statement>> queue, ParallelImportReport report) {
+        String name = file.getName();
+        boolean gzip = name.endsWith(".gz");
+        if (gzip) {
+            name = name.substring(0, name.length() - 3);
+        }
+        RDFFormat fileFormat = format != null ? format : Rio.getParserFormatForFileName(name);
+        if (fileFormat == null) {
+            report.error(file.getPath(), "Unknown RDF format");
+            return;
+        }
+        RDFParser parser = Rio.createParser(fileFormat, repository.getValueFactory());
+        final List<List<Statement>> batch = new ArrayList<>(1);
+        batch.add(new ArrayList<Statement>(BATCH_SIZE));
+        parser.setRDFHandler(new RDFHandlerBase() {
+            @Override
+            public void handleStatement(Statement st) throws RDFHandlerException {
+                List<Statement> current = batch.get(0);
+                current.add(st);
+                if (current.size() == BATCH_SIZE) {
+                    put(queue, current);
+                    batch.set(0, new ArrayList<Statement>(BATCH_SIZE));
+                }
+            }
+        });
+        try (InputStream in = open(file, gzip)) {
+            parser.parse(in, file.toURI().toString());
+            if (!batch.get(0).isEmpty()) {
+                put(queue, batch.get(0));
+            }
+            report.fileParsed();
+        } catch (IOException | RDFParseException | RDFHandlerException ex) {
+            report.error(file.getPath(), ex.getMessage());
+        }
+    }
+
+    private static InputStream open(File file, boolean gzip) throws IOException {
+        InputStream in = new FileInputStream(file);
+        try {
+            return gzip ? new GZIPInputStream(in, 65536) : new BufferedInputStream(in, 65536);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    private static void put(BlockingQueue<List<Statement>> queue, List<Statement> statements) throws RDFHandlerException {
+        try {
+            queue.put(statements);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RDFHandlerException("Interrupted while queueing statements.", ex);
+        }
+    }
+
+    private void write(String name, BlockingQueue<List<Statement>> queue, URI context, ParallelImportReport report,
+            AtomicInteger live, AtomicBoolean parsed) {
+        RepositoryConnection con = null;
+        List<Statement> pending = new ArrayList<>(commitSize + BATCH_SIZE);
+        try {
+            con = repository.getConnection();
+            con.setAutoCommit(false);
+            while (true) {
+                List<Statement> statements = queue.take();
+                if (statements == END) {
+                    break;
+                }
+                pending.addAll(statements);
+                if (pending.size() >= commitSize) {
+                    commit(con, pending, context, name, report);
+                }
+            }
+            commit(con, pending, context, name, report);
+            live.decrementAndGet();
+        } catch (RepositoryException ex) {
+            report.error(name, ex.getMessage());
+            report.statementsDropped(pending.size());
+            if (live.decrementAndGet() == 0) {
+                drain(queue, parsed, report);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            live.decrementAndGet();
+        } finally {
+            if (con != null) {
+                try {
+                    con.close();
+                } catch (RepositoryException ex) {
+                    System.out.println("Exception: " + ex.getMessage() + " occured .");
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits the pending statements. A failed commit drops them; if the
+     * rollback fails as well, the connection is considered broken and the
+     * failure is thrown, so that the writer leaves the queue to the others.
+     */
+    private static void commit(RepositoryConnection con, List<Statement> pending, URI context, String name, ParallelImportReport report)
+            throws RepositoryException {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            con.add(pending, context);
+            con.commit();
+            report.statementsCommitted(pending.size());
+        } catch (RepositoryException ex) {
+            report.error(name, ex.getMessage() + " (" + pending.size() + " statements dropped)");
+            report.statementsDropped(pending.size());
+            try {
+                con.rollback();
+            } catch (RepositoryException rex) {
+                rex.addSuppressed(ex);
+                throw rex;
+            }
+        } finally {
+            pending.clear();
+        }
+    }
+
+    /**
+     * Keeps consuming the queue after the connections of all writers failed,
+     * so that the parsers never block on a queue nobody reads, until the
+     * parsing is over and the queue is empty.
+     */
+    private static void drain(BlockingQueue<List<Statement>> queue, AtomicBoolean parsed, ParallelImportReport report) {
+        try {
+            while (true) {
+                List<Statement> statements = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (statements == null) {
+                    if (parsed.get()) {
+                        return;
+                    }
+                } else if (statements != END) {
+                    report.statementsDropped(statements.size());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
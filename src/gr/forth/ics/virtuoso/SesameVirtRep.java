@@ -6,27 +6,30 @@ package gr.forth.ics.virtuoso;
  * To change this template, choose Tools | Templates
  * and open the template in the editor.
  */
+import info.aduna.iteration.CloseableIteration;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import org.openrdf.model.Literal;
-import org.openrdf.model.URI;
+import java.util.Set;
 import org.openrdf.model.impl.URIImpl;
+import org.openrdf.query.BindingSet;
 import org.openrdf.query.MalformedQueryException;
 import org.openrdf.query.QueryEvaluationException;
 import org.openrdf.query.QueryLanguage;
 import org.openrdf.query.TupleQuery;
 import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.TupleQueryResultImpl;
 import org.openrdf.repository.Repository;
 import org.openrdf.repository.RepositoryConnection;
 import org.openrdf.repository.RepositoryException;
 import org.openrdf.rio.RDFFormat;
-import org.openrdf.rio.RDFWriter;
-import org.openrdf.rio.Rio;
 
 import virtuoso.sesame2.driver.VirtuosoRepository;
 
@@ -40,6 +43,16 @@ public class SesameVirtRep {
 
     private Repository repository;
     private RepositoryConnection con;
+    private SesameWriteBuffer writer;
+    private int writeBufferSize = 10000;
+    private long writeBufferDelay = 1000;
+    private final GraphChangeNotifier changes = new GraphChangeNotifier();
+    private GraphStatsCache statsCache;
+    private volatile QueryResultCache resultCache;
+    private volatile VirtuosoMetrics metrics = VirtuosoMetrics.global();
+    private volatile ReadReplicas<Repository> replicas;
+    private final ThreadLocal<ReadYourWritesScope> readYourWrites = new ThreadLocal<>();
+    private final GraphChangeListener sessionWrites = ReadYourWritesScope.recorder(readYourWrites);
 
     /**
      * Creates a new Virtuoso connection using a Sesame RepositoryConnection.
@@ -73,6 +86,19 @@ public class SesameVirtRep {
         con.setAutoCommit(false);
     }
 
+    /**
+     * Creates a new instance on top of an initialized repository, e.g. a local
+     * Sesame MemoryStore or NativeStore used in place of Virtuoso.
+     *
+     * @param repository The repository.
+     * @throws RepositoryException
+     */
+    public SesameVirtRep(Repository repository) throws RepositoryException {
+        this.repository = repository;
+        con = repository.getConnection();
+        con.setAutoCommit(false);
+    }
+
     /**
      * Returns the instance of the current RepositoryConnection.
      *
@@ -86,9 +112,30 @@ public class SesameVirtRep {
      * Terminates the RepositoryConnection connection.
      */
     public void terminate() {
+        SesameWriteBuffer buffer;
+        synchronized (this) {
+            buffer = writer;
+        }
+        if (buffer != null) {
+            try {
+                buffer.close();
+            } catch (RepositoryException ex) {
+                System.out.println("Exception: " + ex.getMessage() + " occured during the flush of the write buffer.");
+            } finally {
+                synchronized (this) {
+                    writer = null;
+                }
+            }
+        }
         try {
             con.close();
             repository.shutDown();
+            ReadReplicas<Repository> set = replicas;
+            if (set != null) {
+                for (Repository replica : set.getReplicas()) {
+                    replica.shutDown();
+                }
+            }
         } catch (RepositoryException ex) {
             System.out.println("Exception: " + ex.getMessage() + " occured .");
         }
@@ -102,7 +149,9 @@ public class SesameVirtRep {
      */
     public void clearGraphContents(String graph) throws Exception {
         System.out.println("Deleting contents of: " + graph);
+        flush();
         con.clear(new URIImpl(graph));
+        changes.graphChanged(graph);
     }
 
     /**
@@ -115,9 +164,151 @@ public class SesameVirtRep {
      * @throws QueryEvaluationException
      */
     public TupleQueryResult queryExec(String sparql) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
-        TupleQuery tupleQuery = con.prepareTupleQuery(QueryLanguage.SPARQL, sparql);
-        TupleQueryResult result = tupleQuery.evaluate();
-        return result;
+        return queryExec(sparql, false);
+    }
+
+    /**
+     * Executes a SPARQL select query on a read replica, unless it must go to
+     * the primary. The misses of the result cache always go to the primary, so
+     * a result read from a lagging replica is never cached as fresh.
+     */
+    private TupleQueryResult queryExec(String sparql, boolean primary) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        long start = metrics.start();
+        QueryResultCache cache = resultCache;
+        String key = null;
+        long since = 0;
+        if (cache != null) {
+            key = QueryResultCache.key(sparql);
+            CachedResult cached = cache.get(key);
+            if (cached != null) {
+                metrics.success("sesame.selectCached", start, cached.getRowCount());
+                return cached.asTupleQueryResult(null, null);
+            }
+            since = cache.generation();
+        }
+        try {
+            TupleQueryResult result = evaluate(sparql, primary || cache != null);
+            metrics.success("sesame.select", start, 0);
+            if (cache != null) {
+                result = materialize(cache, key, sparql, result, since);
+            }
+            return result;
+        } catch (RepositoryException | MalformedQueryException | QueryEvaluationException ex) {
+            metrics.failure("sesame.select", start);
+            throw ex;
+        }
+    }
+
+    /**
+     * Evaluates a query on a read replica, or on the primary if asked to, if
+     * there are no replicas or if the query must see the writes of the open
+     * {@link ReadYourWritesScope} of the calling thread. A replica is released
+     * when its result is closed or fully consumed.
+     */
+    private TupleQueryResult evaluate(String sparql, boolean primary) throws RepositoryException, MalformedQueryException, QueryEvaluationException {
+        final ReadReplicas<Repository> set = primary ? null : replicas;
+        final int index = readReplica(set, GraphReferences.read(sparql));
+        if (index < 0) {
+            flush();
+            TupleQuery tupleQuery = con.prepareTupleQuery(QueryLanguage.SPARQL, sparql);
+            return tupleQuery.evaluate();
+        }
+        final RepositoryConnection replica;
+        final TupleQueryResult result;
+        try {
+            replica = set.get(index).getConnection();
+        } catch (RepositoryException ex) {
+            set.release(index);
+            System.out.println("Exception: " + ex.getMessage() + " occured during the connection to read replica " + index + ", reading from the primary.");
+            flush();
+            return con.prepareTupleQuery(QueryLanguage.SPARQL, sparql).evaluate();
+        }
+        try {
+            result = replica.prepareTupleQuery(QueryLanguage.SPARQL, sparql).evaluate();
+        } catch (RepositoryException | MalformedQueryException | QueryEvaluationException ex) {
+            replica.close();
+            set.release(index);
+            throw ex;
+        }
+        return new TupleQueryResultImpl(result.getBindingNames(), new CloseableIteration<BindingSet, QueryEvaluationException>() {
+            private boolean closed;
+
+            @Override
+            public boolean hasNext() throws QueryEvaluationException {
+                if (closed) {
+                    return false;
+                }
+                boolean more = result.hasNext();
+                if (!more) {
+                    close();
+                }
+                return more;
+            }
+
+            @Override
+            public BindingSet next() throws QueryEvaluationException {
+                return result.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public void close() throws QueryEvaluationException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    result.close();
+                    replica.close();
+                } catch (RepositoryException ex) {
+                    throw new QueryEvaluationException(ex);
+                } finally {
+                    set.release(index);
+                }
+            }
+        });
+    }
+
+    /**
+     * Picks the read replica of a read.
+     *
+     * @return The index of the replica, which must be released, or -1 if the
+     * read goes to the primary.
+     */
+    private int readReplica(ReadReplicas<Repository> set, Set<String> graphs) {
+        if (set == null) {
+            return -1;
+        }
+        ReadYourWritesScope scope = readYourWrites.get();
+        return scope != null && scope.requiresPrimary(graphs) ? -1 : set.acquire();
+    }
+
+    private static TupleQueryResult materialize(QueryResultCache cache, String key, String sparql, TupleQueryResult result, long since) throws QueryEvaluationException {
+        try {
+            List<String> names = result.getBindingNames();
+            CachedResult.Builder rows = new CachedResult.Builder(new ArrayList<>(names), cache.getMaxEntryBytes());
+            while (result.hasNext()) {
+                BindingSet bindings = result.next();
+                Object[] row = new Object[names.size()];
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = bindings.getValue(names.get(c));
+                }
+                if (!rows.add(row)) {
+                    return rows.build().asTupleQueryResult(bindings, result);
+                }
+            }
+            result.close();
+            CachedResult cached = rows.build();
+            cache.put(key, GraphReferences.read(sparql), cached, since);
+            return cached.asTupleQueryResult(null, null);
+        } catch (QueryEvaluationException ex) {
+            result.close();
+            throw ex;
+        }
     }
 
     /**
@@ -130,20 +321,182 @@ public class SesameVirtRep {
      * @throws Exception
      */
     public long triplesNum(String graph) throws Exception {
+        if (graph != null && statsCache != null) {
+            return statsCache.get(graph).getTriples();
+        }
+        String query;
         if (graph == null) {
-            TupleQueryResult res = this.queryExec(""
-                    + "select count(*)  "
-                    + "where { ?s ?p ?o }");
-            return Long.parseLong(res.next().getValue("callret-0").stringValue());
+            query = "select (count(*) as ?n) "
+                    + "where { ?s ?p ?o }";
         } else {
-            TupleQueryResult res = this.queryExec(""
-                    + "select count(*)  "
+            query = "select (count(*) as ?n) "
                     + "from <" + graph.toString() + ">"
-                    + "where { ?s ?p ?o }");
-            return Long.parseLong(res.next().getValue("callret-0").stringValue());
+                    + "where { ?s ?p ?o }";
+        }
+        TupleQueryResult res = this.queryExec(query);
+        try {
+            return Long.parseLong(res.next().getValue("n").stringValue());
+        } finally {
+            res.close();
         }
     }
 
+    /**
+     * Registers a listener which is notified of the graphs changed by writes
+     * made through this instance.
+     *
+     * @param listener
+     */
+    public void addGraphChangeListener(GraphChangeListener listener) {
+        changes.add(listener);
+    }
+
+    /**
+     * Removes a listener registered with
+     * {@link #addGraphChangeListener(GraphChangeListener)}.
+     *
+     * @param listener
+     */
+    public void removeGraphChangeListener(GraphChangeListener listener) {
+        changes.remove(listener);
+    }
+
+    /**
+     * Sends the reads of this instance to a set of read replicas: the queries
+     * of {@link #queryExec(String)}, which also serve the counts and
+     * statistics of graphs, and the exports. Writes and imports stay on the
+     * primary. Replicas lag behind the primary, so a session which reads its
+     * own writes should open a {@link #openReadYourWrites()} scope.
+     *
+     * @param replicas The repositories of the replicas, or null to read from
+     * the primary.
+     */
+    public void setReadReplicas(ReadReplicas<Repository> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Returns the read replicas of this instance, or null if it reads from the
+     * primary.
+     *
+     * @return
+     */
+    public ReadReplicas<Repository> getReadReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Opens a read-your-writes session for the calling thread: until the
+     * scope is closed, the reads which refer to graphs the thread has written
+     * go to the primary instead of the replicas, and see the buffered writes.
+     *
+     * @return The scope, to be closed at the end of the session.
+     */
+    public ReadYourWritesScope openReadYourWrites() {
+        changes.add(sessionWrites);
+        return new ReadYourWritesScope(readYourWrites);
+    }
+
+    /**
+     * Turns on the cache of SELECT results, which then serves
+     * {@link #queryExec(String)}, see {@link QueryResultCache}. Writes made
+     * through this instance invalidate the results of the queries over the
+     * graphs they change. Queries which miss the cache are read from the
+     * primary, not from read replicas, which may lag behind.
+     *
+     * @param maxEntries The maximum number of cached results.
+     * @param maxBytes The maximum estimated memory of the cached results.
+     * @param ttl The time in milliseconds after which results expire, or zero
+     * to keep them until they are invalidated.
+     */
+    public synchronized void enableResultCache(int maxEntries, long maxBytes, long ttl) {
+        disableResultCache();
+        resultCache = new QueryResultCache(maxEntries, maxBytes, ttl);
+        changes.add(resultCache);
+    }
+
+    /**
+     * Turns off the cache of SELECT results.
+     */
+    public synchronized void disableResultCache() {
+        if (resultCache != null) {
+            changes.remove(resultCache);
+            resultCache = null;
+        }
+    }
+
+    /**
+     * Returns the cache of SELECT results, or null if it is turned off.
+     *
+     * @return
+     */
+    public QueryResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Turns on the cache of graph statistics, which then also serves
+     * {@link #triplesNum(String)} for named graphs. Writes made through this
+     * instance invalidate the statistics of the graphs they change; writes
+     * made by other clients are only picked up when the statistics expire.
+     *
+     * @param ttl The time in milliseconds after which statistics are
+     * recomputed, or zero to keep them until they are invalidated.
+     */
+    public synchronized void enableStatsCache(long ttl) {
+        disableStatsCache();
+        statsCache = new GraphStatsCache(new GraphStatsCache.Loader() {
+            @Override
+            public GraphStats load(String graph) throws Exception {
+                return computeGraphStats(graph, true);
+            }
+        }, ttl);
+        changes.add(statsCache);
+    }
+
+    /**
+     * Turns off the cache of graph statistics.
+     */
+    public synchronized void disableStatsCache() {
+        if (statsCache != null) {
+            changes.remove(statsCache);
+            statsCache = null;
+        }
+    }
+
+    /**
+     * Returns the statistics of a named graph: its triples, distinct subjects
+     * and predicates, and the triples per predicate. They are computed in one
+     * round trip, or taken from the cache if it is turned on.
+     *
+     * @param graph The named graph.
+     * @return
+     * @throws Exception
+     */
+    public GraphStats getGraphStats(String graph) throws Exception {
+        GraphStatsCache cache = statsCache;
+        return cache == null ? computeGraphStats(graph, false) : cache.get(graph);
+    }
+
+    private GraphStats computeGraphStats(String graph, boolean primary) throws Exception {
+        TupleQueryResult res = queryExec(GraphStats.query(graph), primary);
+        Map<String, Long> predicates = new HashMap<>();
+        long triples = 0;
+        long subjects = 0;
+        try {
+            while (res.hasNext()) {
+                BindingSet row = res.next();
+                long n = Long.parseLong(row.getValue("n").stringValue());
+                predicates.put(row.getValue("p").stringValue(), n);
+                triples += n;
+                subjects = Long.parseLong(row.getValue("subjects").stringValue());
+            }
+        } finally {
+            res.close();
+        }
+        return new GraphStats(graph, triples, subjects, predicates);
+    }
+
     /**
      * Exports the contents of a named graph into a file in various formats.
      *
@@ -155,9 +508,81 @@ public class SesameVirtRep {
      * @throws Exception
      */
     public void exportToFile(String filename, RDFFormat format, String graphSource) throws Exception {
+        exportToFile(filename, format, graphSource, false);
+    }
+
+    /**
+     * Exports the contents of a named graph into a file in various formats,
+     * optionally gzip compressed, see {@link GraphExporter}.
+     *
+     * @param filename The filename in which the export data will be stored.
+     * @param format The format of the exported data e.g., RDF/XML, N3,
+     * N-Triples etc.
+     * @param graphSource The named graph whose data will be exported.
+     * @param gzip Whether the file will be gzip compressed.
+     * @return The report of the export.
+     * @throws Exception
+     */
+    public ExportReport exportToFile(String filename, RDFFormat format, String graphSource, boolean gzip) throws Exception {
         System.out.println("Exporting graph: " + graphSource.toString());
-        RDFWriter writer = Rio.createWriter(format, new OutputStreamWriter(new FileOutputStream(new File(filename))));
-        con.export(writer, new URIImpl(graphSource));
+        ReadReplicas<Repository> set = replicas;
+        int index = readReplica(set, Collections.singleton(graphSource));
+        if (index < 0) {
+            flush();
+        }
+        long start = metrics.start();
+        try {
+            ExportReport report = new GraphExporter(index < 0 ? repository : set.get(index)).setGzip(gzip).export(graphSource, new File(filename), format);
+            exported(start, report);
+            return report;
+        } catch (Exception ex) {
+            metrics.failure("sesame.export", start);
+            throw ex;
+        } finally {
+            if (index >= 0) {
+                set.release(index);
+            }
+        }
+    }
+
+    /**
+     * Exports the contents of a named graph as N-Triples into several part
+     * files in parallel, see {@link GraphExporter}.
+     *
+     * @param dirname The directory of the part files.
+     * @param baseName The common prefix of the part file names.
+     * @param graphSource The named graph whose data will be exported.
+     * @param parts The number of part files.
+     * @param gzip Whether the part files will be gzip compressed.
+     * @return The report of the export.
+     * @throws Exception
+     */
+    public ExportReport exportPartitioned(String dirname, String baseName, String graphSource, int parts, boolean gzip) throws Exception {
+        System.out.println("Exporting graph: " + graphSource + " into " + parts + " parts");
+        ReadReplicas<Repository> set = replicas;
+        int index = readReplica(set, Collections.singleton(graphSource));
+        if (index < 0) {
+            flush();
+        }
+        long start = metrics.start();
+        try {
+            ExportReport report = new GraphExporter(index < 0 ? repository : set.get(index)).setGzip(gzip).exportPartitioned(graphSource,
+                    new File(dirname), baseName, parts, GraphExporter.Partitioning.SUBJECT_HASH);
+            exported(start, report);
+            return report;
+        } catch (Exception ex) {
+            metrics.failure("sesame.export", start);
+            throw ex;
+        } finally {
+            if (index >= 0) {
+                set.release(index);
+            }
+        }
+    }
+
+    private void exported(long start, ExportReport report) {
+        metrics.success("sesame.export", start, report.getStatements());
+        metrics.bytes("sesame.export", report.getBytes());
     }
 
     /**
@@ -172,12 +597,174 @@ public class SesameVirtRep {
      */
     public void importFile(String filename, RDFFormat format, String graphDest) throws Exception {
         System.out.println("Importing file: " + filename + " into graph: " + graphDest);
-        con.add(new File(filename), graphDest, format, new URIImpl(graphDest));
-//        con.commit();
+        long start = metrics.start();
+        try {
+            con.add(new File(filename), graphDest, format, new URIImpl(graphDest));
+//            con.commit();
+            metrics.success("sesame.import", start, 0);
+            metrics.bytes("sesame.import", new File(filename).length());
+        } catch (Exception ex) {
+            metrics.failure("sesame.import", start);
+            throw ex;
+        }
+        changes.graphChanged(graphDest);
+    }
+
+    /**
+     * Imports all RDF files of a directory on the client machine into the named
+     * graph given as parameter, parsing and writing them in parallel, see
+     * {@link SesameParallelImporter}. Files whose name ends with .gz are
+     * decompressed on the fly.
+     *
+     * @param dirname The directory which contains the files.
+     * @param format The format of the files, or null to guess it from the name
+     * of each file.
+     * @param graphDest The named graph destination.
+     * @param writers The number of writer connections.
+     * @return The report of the import.
+     * @throws IOException
+     */
+    public ParallelImportReport importDirectory(String dirname, RDFFormat format, String graphDest, int writers) throws IOException {
+        System.out.println("Importing directory: " + dirname + " into graph: " + graphDest);
+        long start = metrics.start();
+        try {
+            ParallelImportReport report = new SesameParallelImporter(repository).setWriters(writers).importDirectory(new File(dirname), format, graphDest);
+            metrics.success("sesame.import", start, report.getCommittedStatements());
+            return report;
+        } catch (IOException | RuntimeException ex) {
+            metrics.failure("sesame.import", start);
+            throw ex;
+        } finally {
+            changes.graphChanged(graphDest);
+        }
+    }
+
+    /**
+     * Computes the triples added and deleted between two versions of a dataset
+     * stored as named graphs, and stores them into two other named graphs. See
+     * {@link GraphDiff} for the merge-based algorithm.
+     *
+     * @param oldGraph The named graph of the old version.
+     * @param newGraph The named graph of the new version.
+     * @param addedGraph The named graph which receives the added triples.
+     * @param deletedGraph The named graph which receives the deleted triples.
+     * @return The report of the diff.
+     * @throws Exception
+     */
+    public DiffReport diffGraphs(String oldGraph, String newGraph, String addedGraph, String deletedGraph) throws Exception {
+        System.out.println("Comparing graph: " + oldGraph + " with graph: " + newGraph);
+        flush();
+        try {
+            return new GraphDiff().diff(GraphDiff.graph(repository, oldGraph), GraphDiff.graph(repository, newGraph),
+                    GraphDiffSink.sesame(repository, addedGraph, deletedGraph, 10000));
+        } finally {
+            changes.graphChanged(addedGraph);
+            changes.graphChanged(deletedGraph);
+        }
+    }
+
+    /**
+     * Computes the triples added and deleted between two versions of a dataset
+     * stored as named graphs, and writes them into two N-Triples files.
+     *
+     * @param oldGraph The named graph of the old version.
+     * @param newGraph The named graph of the new version.
+     * @param addedFile The file which receives the added triples.
+     * @param deletedFile The file which receives the deleted triples.
+     * @param gzip Whether the files will be gzip compressed.
+     * @return The report of the diff.
+     * @throws Exception
+     */
+    public DiffReport diffGraphsToFiles(String oldGraph, String newGraph, String addedFile, String deletedFile, boolean gzip) throws Exception {
+        System.out.println("Comparing graph: " + oldGraph + " with graph: " + newGraph);
+        flush();
+        return new GraphDiff().diff(GraphDiff.graph(repository, oldGraph), GraphDiff.graph(repository, newGraph),
+                new FileDiffSink(new File(addedFile), new File(deletedFile), gzip));
+    }
+
+    /**
+     * Returns the repository of this instance.
+     *
+     * @return
+     */
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * Sets the registry which records the metrics of the operations of this
+     * instance. By default the global registry is used.
+     *
+     * @param metrics The registry.
+     */
+    public synchronized void setMetrics(VirtuosoMetrics metrics) {
+        this.metrics = metrics;
+        if (writer != null) {
+            writer.setMetrics(metrics);
+        }
+    }
+
+    /**
+     * Returns the registry which records the metrics of the operations of this
+     * instance.
+     *
+     * @return
+     */
+    public VirtuosoMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the write-behind buffer used by the add methods, opening it on
+     * first use. The change listeners are told about a graph once per batch,
+     * when the batch is committed; only the read-your-writes session of the
+     * adding thread records the graph as soon as a triple is buffered.
+     *
+     * @return
+     */
+    public synchronized SesameWriteBuffer getWriteBuffer() {
+        if (writer == null) {
+            writer = new SesameWriteBuffer(repository, writeBufferSize, writeBufferDelay);
+            writer.setMetrics(metrics);
+            writer.setListener(changes);
+        }
+        return writer;
+    }
+
+    /**
+     * Sets the thresholds of the write-behind buffer. It must be called before
+     * the first triple is added.
+     *
+     * @param maxStatements The number of buffered statements which triggers a
+     * flush.
+     * @param maxDelay The time in milliseconds after which buffered statements
+     * are flushed, or zero to flush only on size.
+     */
+    public synchronized void setWriteBuffer(int maxStatements, long maxDelay) {
+        this.writeBufferSize = maxStatements;
+        this.writeBufferDelay = maxDelay;
+    }
+
+    /**
+     * Adds and commits the triples which are buffered by the add methods. The
+     * buffer is also flushed before queries and exports of this instance and
+     * when it is terminated.
+     *
+     * @throws RepositoryException
+     */
+    public void flush() throws RepositoryException {
+        SesameWriteBuffer buffer;
+        synchronized (this) {
+            buffer = writer;
+        }
+        if (buffer != null) {
+            buffer.flush();
+        }
     }
 
     /**
-     * Inserts a (URI) triple into a named graph.
+     * Inserts a (URI) triple into a named graph. The triple is buffered and
+     * committed together with other triples, see {@link #flush()}.
      *
      * @param s The subject URI of the triple.
      * @param p The predicate URI of the triple.
@@ -185,19 +772,18 @@ public class SesameVirtRep {
      * @param graph The named graph into which the triple will be inserted.
      */
     public void addTriple(String s, String p, String o, String graph) {
-        URI sub = repository.getValueFactory().createURI(s);
-        URI pred = repository.getValueFactory().createURI(p);
-        URI obj = repository.getValueFactory().createURI(o);
-        URI g = repository.getValueFactory().createURI(graph);
         try {
-            con.add(sub, pred, obj, g);
+            SesameWriteBuffer buffer = getWriteBuffer();
+            buffer.add(s, p, buffer.getValueFactory().createURI(o), graph);
+            sessionWrites.graphChanged(graph);
         } catch (RepositoryException ex) {
             System.out.println("Exception: " + ex.getMessage() + " occured .");
         }
     }
 
     /**
-     * Inserts a (Literal) triple into a named graph.
+     * Inserts a (Literal) triple into a named graph. The triple is buffered and
+     * committed together with other triples, see {@link #flush()}.
      *
      * @param s The subject URI of the triple.
      * @param p The predicate URI of the triple.
@@ -205,19 +791,18 @@ public class SesameVirtRep {
      * @param graph The named graph into which the triple will be inserted.
      */
     public void addLitTriple(String s, String p, String o, String graph) {
-        URI sub = repository.getValueFactory().createURI(s);
-        URI pred = repository.getValueFactory().createURI(p);
-        Literal obj = repository.getValueFactory().createLiteral(o);
-        URI g = repository.getValueFactory().createURI(graph);
         try {
-            con.add(sub, pred, obj, g);
+            SesameWriteBuffer buffer = getWriteBuffer();
+            buffer.add(s, p, buffer.getValueFactory().createLiteral(o), graph);
+            sessionWrites.graphChanged(graph);
         } catch (RepositoryException ex) {
             System.out.println("Exception: " + ex.getMessage() + " occured .");
         }
     }
 
     /**
-     * Inserts a (Literal) triple into a named graph.
+     * Inserts a (Literal) triple into a named graph. The triple is buffered and
+     * committed together with other triples, see {@link #flush()}.
      *
      * @param s The subject URI of the triple.
      * @param p The predicate URI of the triple.
@@ -225,12 +810,10 @@ public class SesameVirtRep {
      * @param graph The named graph into which the triple will be inserted.
      */
     public void addLitTriple(String s, String p, double o, String graph) {
-        URI sub = repository.getValueFactory().createURI(s);
-        URI pred = repository.getValueFactory().createURI(p);
-        Literal obj = repository.getValueFactory().createLiteral(o);
-        URI g = repository.getValueFactory().createURI(graph);
         try {
-            con.add(sub, pred, obj, g);
+            SesameWriteBuffer buffer = getWriteBuffer();
+            buffer.add(s, p, buffer.getValueFactory().createLiteral(o), graph);
+            sessionWrites.graphChanged(graph);
         } catch (RepositoryException ex) {
             System.out.println("Exception: " + ex.getMessage() + " occured .");
         }
@@ -0,0 +1,306 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.openrdf.model.Resource;
+import org.openrdf.model.Statement;
+import org.openrdf.model.URI;
+import org.openrdf.model.Value;
+import org.openrdf.model.ValueFactory;
+import org.openrdf.repository.Repository;
+import org.openrdf.repository.RepositoryConnection;
+import org.openrdf.repository.RepositoryException;
+
+/**
+ * A write-behind buffer of statements on a dedicated Sesame connection.
+ * Statements are accumulated in memory and added and committed in one batch
+ * once the buffer holds a given number of statements or its oldest statement
+ * has waited for a given time. URIs of graphs and predicates, which repeat for
+ * most statements, are created once and reused. A batch whose commit fails is
+ * rolled back and dropped, so that one bad statement does not block the
+ * writes which follow it; the failure names the number of dropped statements
+ * and the drops are counted, see {@link #getDroppedCount()}. A timed flush
+ * which fails is reported by the next call of add, flush or close. All
+ * methods are thread safe. An optional {@link GraphChangeListener} is told
+ * once per graph of a batch after the batch is committed.
+ *
+ * @author rousakis
+ */
+public class SesameWriteBuffer {
+
+    private static final int URI_CACHE_SIZE = 4096;
+    private final Repository repository;
+    private final ValueFactory factory;
+    private final Map<String, URI> uris;
+    private final int maxStatements;
+    private final long maxDelay;
+    private List<Statement> statements;
+    private RepositoryConnection con;
+    private ScheduledExecutorService flusher;
+    private long oldest;
+    private long flushed;
+    private long dropped;
+    private RepositoryException timedFailure;
+    private VirtuosoMetrics metrics = VirtuosoMetrics.global();
+    private GraphChangeListener listener;
+
+    /**
+     * Creates a new write buffer.
+     *
+     * @param repository The repository which receives the statements.
+     * @param maxStatements The number of buffered statements which triggers a
+     * flush.
+     * @param maxDelay The time in milliseconds after which buffered statements
+     * are flushed, or zero to flush only on size.
+     */
+    @SuppressWarnings("serial")
+    public SesameWriteBuffer(Repository repository, int maxStatements, long maxDelay) {
+        this.repository = repository;
+        this.factory = repository.getValueFactory();
+        this.uris = new LinkedHashMap<String, URI>(URI_CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, URI> eldest) {
+                return size() > URI_CACHE_SIZE;
+            }
+        };
+        this.maxStatements = Math.max(1, maxStatements);
+        this.maxDelay = maxDelay;
+        this.statements = new ArrayList<>();
+        if (maxDelay > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "sesame-write-buffer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            flusher.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    flushIfDue();
+                }
+            }, maxDelay, maxDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Buffers a statement.
+     *
+     * @param s The subject URI of the triple.
+     * @param p The predicate URI of the triple.
+     * @param o The object of the triple.
+     * @param graph The named graph into which the triple will be inserted.
+     * @throws RepositoryException If the buffer was full and its flush failed,
+     * in which case the buffered statements are dropped.
+     */
+    public synchronized void add(String s, String p, Value o, String graph) throws RepositoryException {
+        add(factory.createURI(s), uri(p), o, uri(graph));
+    }
+
+    /**
+     * Buffers a statement.
+     *
+     * @param s The subject of the triple.
+     * @param p The predicate of the triple.
+     * @param o The object of the triple.
+     * @param graph The named graph into which the triple will be inserted.
+     * @throws RepositoryException If the buffer was full and its flush failed,
+     * in which case the buffered statements are dropped, or a timed flush
+     * failed since the last call.
+     */
+    public synchronized void add(Resource s, URI p, Value o, Resource graph) throws RepositoryException {
+        rethrowTimedFailure();
+        if (statements.isEmpty()) {
+            oldest = System.currentTimeMillis();
+        }
+        statements.add(factory.createStatement(s, p, o, graph));
+        if (statements.size() >= maxStatements
+                || (maxDelay > 0 && System.currentTimeMillis() - oldest >= maxDelay)) {
+            commit();
+        }
+    }
+
+    /**
+     * Returns a URI for a graph or predicate IRI, reusing the instance created
+     * for a previous occurrence of the same IRI.
+     *
+     * @param iri The IRI.
+     * @return
+     */
+    public synchronized URI uri(String iri) {
+        URI uri = uris.get(iri);
+        if (uri == null) {
+            uri = factory.createURI(iri);
+            uris.put(iri, uri);
+        }
+        return uri;
+    }
+
+    /**
+     * Returns the value factory of the repository.
+     *
+     * @return
+     */
+    public ValueFactory getValueFactory() {
+        return factory;
+    }
+
+    /**
+     * Adds and commits all buffered statements. If the commit fails the
+     * transaction is rolled back and the statements are dropped.
+     *
+     * @throws RepositoryException If the commit failed, or a timed flush
+     * failed since the last call.
+     */
+    public synchronized void flush() throws RepositoryException {
+        rethrowTimedFailure();
+        commit();
+    }
+
+    private void commit() throws RepositoryException {
+        if (statements.isEmpty()) {
+            return;
+        }
+        if (con == null) {
+            con = repository.getConnection();
+            con.setAutoCommit(false);
+        }
+        List<Statement> batch = statements;
+        statements = new ArrayList<>();
+        long start = metrics.start();
+        try {
+            con.add(batch);
+            con.commit();
+        } catch (RepositoryException ex) {
+            metrics.failure("sesame.flush", start);
+            dropped += batch.size();
+            RepositoryException failure = new RepositoryException("The commit of " + batch.size()
+                    + " buffered statements failed, they were dropped: " + ex.getMessage(), ex);
+            try {
+                con.rollback();
+            } catch (RepositoryException rollback) {
+                failure.addSuppressed(rollback);
+            }
+            throw failure;
+        }
+        flushed += batch.size();
+        metrics.success("sesame.flush", start, batch.size());
+        if (listener != null) {
+            Set<Resource> graphs = new LinkedHashSet<>();
+            for (Statement statement : batch) {
+                graphs.add(statement.getContext());
+            }
+            for (Resource graph : graphs) {
+                if (graph == null) {
+                    listener.allGraphsChanged();
+                } else {
+                    listener.graphChanged(graph.stringValue());
+                }
+            }
+        }
+    }
+
+    private void rethrowTimedFailure() throws RepositoryException {
+        RepositoryException failure = timedFailure;
+        if (failure != null) {
+            timedFailure = null;
+            throw failure;
+        }
+    }
+
+    /**
+     * Sets the registry which records the metrics of the flushes.
+     *
+     * @param metrics The registry.
+     */
+    public synchronized void setMetrics(VirtuosoMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Sets the listener which is told about the graphs of the committed
+     * batches.
+     *
+     * @param listener The listener, or null.
+     */
+    public synchronized void setListener(GraphChangeListener listener) {
+        this.listener = listener;
+    }
+
+    private synchronized void flushIfDue() {
+        if (!statements.isEmpty() && System.currentTimeMillis() - oldest >= maxDelay) {
+            try {
+                commit();
+            } catch (RepositoryException ex) {
+                timedFailure = ex;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of statements which are waiting to be flushed.
+     *
+     * @return
+     */
+    public synchronized int getPendingCount() {
+        return statements.size();
+    }
+
+    /**
+     * Returns the number of statements committed by this buffer.
+     *
+     * @return
+     */
+    public synchronized long getFlushedCount() {
+        return flushed;
+    }
+
+    /**
+     * Returns the number of statements dropped because their commit failed.
+     *
+     * @return
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /**
+     * Flushes the buffered statements and closes the dedicated connection.
+     *
+     * @throws RepositoryException If the final flush failed, in which case the
+     * buffered statements are dropped, or a timed flush failed since the last
+     * call.
+     */
+    public synchronized void close() throws RepositoryException {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        RepositoryException failure = timedFailure;
+        timedFailure = null;
+        try {
+            commit();
+        } catch (RepositoryException ex) {
+            if (failure != null) {
+                ex.addSuppressed(failure);
+            }
+            throw ex;
+        } finally {
+            if (con != null) {
+                con.close();
+                con = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
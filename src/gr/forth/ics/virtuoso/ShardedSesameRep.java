@@ -0,0 +1,244 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import org.openrdf.query.BindingSet;
+import org.openrdf.query.TupleQueryResult;
+import org.openrdf.query.impl.TupleQueryResultImpl;
+import org.openrdf.repository.RepositoryException;
+import org.openrdf.rio.RDFFormat;
+
+/**
+ * Spreads the named graphs of a deployment, e.g. the versions of a dataset,
+ * over several Virtuoso instances, each reached through a
+ * {@link SesameVirtRep}, see {@link GraphRouter}. Writes, imports and exports
+ * of a graph go to the instance which holds it. Counts over several graphs
+ * are fanned out and summed, and a SELECT query runs on the instances which
+ * hold the graphs it names, or on all instances if it names none, and their
+ * rows are concatenated.
+ * <p>
+ * Each instance evaluates the query over its own graphs, so a query which
+ * joins graphs held by different instances, or which aggregates, orders or
+ * limits its rows, is only correct if all of its graphs are placed on the same
+ * instance; a prefix policy, see
+ * {@link PlacementPolicy#byPrefix(java.util.Map, PlacementPolicy)}, can keep
+ * the graphs which are queried together on one instance.
+ *
+ * @author rousakis
+ */
+public class ShardedSesameRep {
+
+    private final GraphRouter<SesameVirtRep> router;
+
+    /**
+     * Creates a new sharded rep.
+     *
+     * @param instances The reps of the instances.
+     * @param policy The placement policy of the graphs.
+     */
+    public ShardedSesameRep(List<SesameVirtRep> instances, PlacementPolicy policy) {
+        this.router = new GraphRouter<>(instances, policy);
+    }
+
+    /**
+     * Returns the router of the graphs.
+     *
+     * @return
+     */
+    public GraphRouter<SesameVirtRep> getRouter() {
+        return router;
+    }
+
+    /**
+     * Returns the rep of the instance which holds a named graph.
+     *
+     * @param graph The named graph.
+     * @return
+     */
+    public SesameVirtRep route(String graph) {
+        return router.route(graph);
+    }
+
+    /**
+     * Executes a SELECT query on the instances which hold the graphs its
+     * dataset is pinned to, or on all instances if it may read any graph, and
+     * concatenates their rows.
+     *
+     * @param sparql The query.
+     * @return The merged result.
+     * @throws Exception
+     */
+    public TupleQueryResult queryExec(final String sparql) throws Exception {
+        List<List<BindingSet>> parts = router.forInstancesOf(GraphReferences.read(sparql),
+                new GraphRouter.InstanceTask<SesameVirtRep, List<BindingSet>>() {
+                    @Override
+                    public List<BindingSet> run(SesameVirtRep instance, int index) throws Exception {
+                        List<BindingSet> rows = new ArrayList<>();
+                        TupleQueryResult result = instance.queryExec(sparql);
+                        try {
+                            while (result.hasNext()) {
+                                rows.add(result.next());
+                            }
+                        } finally {
+                            result.close();
+                        }
+                        return rows;
+                    }
+                });
+        List<String> names = new ArrayList<>();
+        List<BindingSet> rows = new ArrayList<>();
+        for (List<BindingSet> part : parts) {
+            for (BindingSet row : part) {
+                for (String name : row.getBindingNames()) {
+                    if (!names.contains(name)) {
+                        names.add(name);
+                    }
+                }
+            }
+            rows.addAll(part);
+        }
+        return new TupleQueryResultImpl(names, rows);
+    }
+
+    /**
+     * Returns the number of the triples contained in a named graph.
+     *
+     * @param graph The named graph.
+     * @return
+     * @throws Exception
+     */
+    public long triplesNum(String graph) throws Exception {
+        return route(graph).triplesNum(graph);
+    }
+
+    /**
+     * Counts the triples of several named graphs in parallel.
+     *
+     * @param graphs The named graphs.
+     * @return The number of triples of each graph.
+     * @throws Exception
+     */
+    public Map<String, Long> triplesNum(Collection<String> graphs) throws Exception {
+        return router.forEachGraph(graphs, new GraphRouter.GraphTask<SesameVirtRep, Long>() {
+            @Override
+            public Long run(SesameVirtRep instance, String graph) throws Exception {
+                return instance.triplesNum(graph);
+            }
+        });
+    }
+
+    /**
+     * Returns the total number of the triples of several named graphs.
+     *
+     * @param graphs The named graphs.
+     * @return
+     * @throws Exception
+     */
+    public long totalTriplesNum(Collection<String> graphs) throws Exception {
+        long total = 0;
+        for (Long triples : triplesNum(graphs).values()) {
+            total += triples;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of the triples of all instances.
+     *
+     * @return
+     * @throws Exception
+     */
+    public long triplesNum() throws Exception {
+        long total = 0;
+        for (Long triples : router.forEachInstance(new GraphRouter.InstanceTask<SesameVirtRep, Long>() {
+            @Override
+            public Long run(SesameVirtRep instance, int index) throws Exception {
+                return instance.triplesNum(null);
+            }
+        })) {
+            total += triples;
+        }
+        return total;
+    }
+
+    /**
+     * Clears the contents of a named graph.
+     *
+     * @param graph The named graph.
+     * @throws Exception
+     */
+    public void clearGraphContents(String graph) throws Exception {
+        route(graph).clearGraphContents(graph);
+    }
+
+    /**
+     * Exports the contents of a named graph into a file.
+     *
+     * @param filename The file.
+     * @param format The format of the exported data.
+     * @param graphSource The named graph.
+     * @throws Exception
+     */
+    public void exportToFile(String filename, RDFFormat format, String graphSource) throws Exception {
+        route(graphSource).exportToFile(filename, format, graphSource);
+    }
+
+    /**
+     * Imports a file into a named graph.
+     *
+     * @param filename The file.
+     * @param format The format of the file.
+     * @param graphDest The named graph.
+     * @throws Exception
+     */
+    public void importFile(String filename, RDFFormat format, String graphDest) throws Exception {
+        route(graphDest).importFile(filename, format, graphDest);
+    }
+
+    /**
+     * Inserts a (URI) triple into a named graph.
+     *
+     * @param s The subject URI of the triple.
+     * @param p The predicate URI of the triple.
+     * @param o The object URI triple.
+     * @param graph The named graph.
+     */
+    public void addTriple(String s, String p, String o, String graph) {
+        route(graph).addTriple(s, p, o, graph);
+    }
+
+    /**
+     * Inserts a (Literal) triple into a named graph.
+     *
+     * @param s The subject URI of the triple.
+     * @param p The predicate URI of the triple.
+     * @param o The string literal object of the triple.
+     * @param graph The named graph.
+     */
+    public void addLitTriple(String s, String p, String o, String graph) {
+        route(graph).addLitTriple(s, p, o, graph);
+    }
+
+    /**
+     * Commits the buffered writes of all instances.
+     *
+     * @throws RepositoryException
+     */
+    public void flush() throws RepositoryException {
+        for (SesameVirtRep instance : router.getInstances()) {
+            instance.flush();
+        }
+    }
+
+    /**
+     * Terminates the reps of all instances.
+     */
+    public void terminate() {
+        router.close();
+        for (SesameVirtRep instance : router.getInstances()) {
+            instance.terminate();
+        }
+    }
+}
@@ -0,0 +1,424 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the queries of a {@link JDBCVirtuosoRep} which keep the server busy
+ * for longer than a threshold, see {@link SlowQueryRecord}. The latest records
+ * are kept in a bounded ring buffer and can also be appended to a log file,
+ * which is rolled over when it exceeds a size. Optionally the execution plan
+ * of a slow query is fetched with explain() on a separate connection of the
+ * pool of the rep class, so the plan is captured while the data that made the
+ * query slow is still there; in single connection mode no plans are fetched.
+ * Plans and file writes are handled by a background thread, off the path of
+ * the query.
+ *
+ * @author rousakis
+ */
+public class SlowQueryLog {
+
+    private final long thresholdNanos;
+    private final SlowQueryRecord[] ring;
+    private int next;
+    private long recorded;
+    private boolean explain;
+    private File file;
+    private long maxFileBytes;
+    private int maxFiles;
+    private OutputStream out;
+    private long fileBytes;
+    private ExecutorService writer;
+
+    /**
+     * Creates a new slow query log which is kept in memory only.
+     *
+     * @param thresholdMillis The time a query must keep the server busy to be
+     * recorded.
+     * @param capacity The number of latest records which are kept.
+     */
+    public SlowQueryLog(long thresholdMillis, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, thresholdMillis));
+        this.ring = new SlowQueryRecord[capacity];
+    }
+
+    /**
+     * Appends the records to a file as well. When the file would exceed its
+     * maximum size it is renamed to file.1, the older files are shifted up to
+     * file.(maxFiles - 1) and a new file is started.
+     *
+     * @param file The log file.
+     * @param maxFileBytes The maximum size of a file.
+     * @param maxFiles The number of files which are kept, the current one
+     * included.
+     * @return This log.
+     */
+    public synchronized SlowQueryLog setFile(File file, long maxFileBytes, int maxFiles) {
+        this.file = file;
+        this.maxFileBytes = Math.max(1, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+        return this;
+    }
+
+    /**
+     * Sets whether the execution plans of the slow queries are fetched.
+     *
+     * @param explain
+     * @return This log.
+     */
+    public synchronized SlowQueryLog setExplain(boolean explain) {
+        this.explain = explain;
+        return this;
+    }
+
+    /**
+     * Returns the time a query must keep the server busy to be recorded.
+     *
+     * @return
+     */
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /**
+     * Returns whether the execution plans of the slow queries are fetched.
+     *
+     * @return
+     */
+    public synchronized boolean isExplain() {
+        return explain;
+    }
+
+    /**
+     * Returns the records in the ring buffer, oldest first.
+     *
+     * @return
+     */
+    public synchronized List<SlowQueryRecord> getRecords() {
+        List<SlowQueryRecord> records = new ArrayList<>(ring.length);
+        for (int i = 0; i < ring.length; i++) {
+            SlowQueryRecord record = ring[(next + i) % ring.length];
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Returns the number of slow queries recorded since the log was created,
+     * including those which have left the ring buffer.
+     *
+     * @return
+     */
+    public synchronized long getRecordedCount() {
+        return recorded;
+    }
+
+    /**
+     * Empties the ring buffer. The log file is kept.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = null;
+        }
+        next = 0;
+    }
+
+    /**
+     * Returns whether a query which kept the server busy for the given time
+     * must be recorded.
+     *
+     * @param serverNanos The time.
+     * @return
+     */
+    boolean isSlow(long serverNanos) {
+        return serverNanos >= thresholdNanos;
+    }
+
+    /**
+     * Records a slow query. If plans are fetched and a pool is given, the
+     * record is completed with the plan and added by the background thread.
+     *
+     * @param record The record.
+     * @param explainPool The pool of the connection for explain(), or null.
+     * @param text The statement given to explain().
+     */
+    synchronized void record(final SlowQueryRecord record, final VirtuosoConnectionPool explainPool, final String text) {
+        if (explain && explainPool != null) {
+            writer().submit(new Runnable() {
+                @Override
+                public void run() {
+                    add(record.withPlan(explain(explainPool, text)));
+                }
+            });
+        } else {
+            add(record);
+        }
+    }
+
+    private synchronized void add(final SlowQueryRecord record) {
+        ring[next] = record;
+        next = (next + 1) % ring.length;
+        recorded++;
+        if (file != null) {
+            writer().submit(new Runnable() {
+                @Override
+                public void run() {
+                    write(record);
+                }
+            });
+        }
+    }
+
+    private ExecutorService writer() {
+        if (writer == null) {
+            writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "virtuoso-slow-queries");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return writer;
+    }
+
+    private static String explain(VirtuosoConnectionPool pool, String text) {
+        Connection connection = null;
+        try {
+            connection = pool.borrow();
+            try (Statement statement = connection.createStatement();
+                    ResultSet result = statement.executeQuery("explain('" + text.replace("'", "''") + "')")) {
+                StringBuilder sb = new StringBuilder();
+                while (result.next()) {
+                    sb.append(result.getString(1)).append('\n');
+                }
+                return sb.toString();
+            }
+        } catch (SQLException ex) {
+            return "Exception: " + ex.getMessage() + " occured during the explain of the query.";
+        } finally {
+            if (connection != null) {
+                pool.release(connection);
+            }
+        }
+    }
+
+    /**
+     * Appends a record to the log file. Only called by the background thread.
+     */
+    private void write(SlowQueryRecord record) {
+        File target;
+        long maxBytes;
+        int files;
+        synchronized (this) {
+            target = file;
+            maxBytes = maxFileBytes;
+            files = maxFiles;
+        }
+        if (target == null) {
+            return;
+        }
+        byte[] entry = (record.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (ring) {
+            try {
+                if (out == null) {
+                    out = Files.newOutputStream(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+                    fileBytes = target.length();
+                }
+                if (fileBytes > 0 && fileBytes + entry.length > maxBytes) {
+                    out.close();
+                    out = null;
+                    roll(target, files);
+                    out = Files.newOutputStream(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+                    fileBytes = 0;
+                }
+                out.write(entry);
+                out.flush();
+                fileBytes += entry.length;
+            } catch (IOException ex) {
+                System.out.println("Exception: " + ex.getMessage() + " occured during the write of the slow query log " + target);
+            }
+        }
+    }
+
+    private static void roll(File target, int files) throws IOException {
+        for (int i = files - 1; i >= 1; i--) {
+            File from = i == 1 ? target : new File(target.getPath() + "." + (i - 1));
+            if (from.exists()) {
+                Files.move(from.toPath(), new File(target.getPath() + "." + i).toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    /**
+     * Waits for the pending plans and writes and closes the log file. Later
+     * records are kept in the ring buffer and open the file again.
+     */
+    public void close() {
+        ExecutorService pending;
+        synchronized (this) {
+            pending = writer;
+            writer = null;
+        }
+        if (pending == null) {
+            return;
+        }
+        pending.shutdown();
+        try {
+            pending.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (ring) {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException ex) {
+                System.out.println("Exception: " + ex.getMessage() + " occured during the close of the slow query log " + file);
+            }
+            out = null;
+        }
+    }
+
+    /**
+     * Normalizes a query: whitespace and comments are collapsed into single
+     * spaces and every string or numeric literal is replaced by ?, so that
+     * executions which differ only in their constants look the same. IRIs,
+     * variables and names are kept.
+     *
+     * @param query The query.
+     * @param literals The list which receives the replaced literals, in
+     * order.
+     * @return
+     */
+    static String normalize(String query, List<String> literals) {
+        StringBuilder sb = new StringBuilder(query.length());
+        int n = query.length();
+        int i = 0;
+        boolean space = false;
+        while (i < n) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+                i++;
+                continue;
+            }
+            if (c == '#') {
+                while (i < n && query.charAt(i) != '\n') {
+                    i++;
+                }
+                space = true;
+                continue;
+            }
+            if (space && sb.length() > 0) {
+                sb.append(' ');
+            }
+            space = false;
+            int end;
+            if (c == '"' || c == '\'') {
+                end = stringEnd(query, i);
+                literals.add(query.substring(i, end));
+                sb.append('?');
+            } else if (Character.isDigit(c)) {
+                end = numberEnd(query, i);
+                literals.add(query.substring(i, end));
+                sb.append('?');
+            } else if (c == '<') {
+                end = i + 1;
+                while (end < n && "<>\"{}|^`\\".indexOf(query.charAt(end)) < 0 && !Character.isWhitespace(query.charAt(end))) {
+                    end++;
+                }
+                end = end < n && query.charAt(end) == '>' ? end + 1 : i + 1;
+                sb.append(query, i, end);
+            } else if (Character.isLetter(c) || c == '_' || c == '?' || c == '$' || c == ':') {
+                end = i + 1;
+                while (end < n && (Character.isLetterOrDigit(query.charAt(end)) || "_:.-".indexOf(query.charAt(end)) >= 0)) {
+                    end++;
+                }
+                while (query.charAt(end - 1) == '.') {
+                    end--;
+                }
+                sb.append(query, i, end);
+            } else {
+                end = i + 1;
+                sb.append(c);
+            }
+            i = end;
+        }
+        return sb.toString();
+    }
+
+    private static int stringEnd(String query, int start) {
+        int n = query.length();
+        char quote = query.charAt(start);
+        if (query.startsWith("" + quote + quote + quote, start)) {
+            int end = query.indexOf("" + quote + quote + quote, start + 3);
+            return end < 0 ? n : end + 3;
+        }
+        int i = start + 1;
+        while (i < n) {
+            char c = query.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (quote == '\'' && i + 1 < n && query.charAt(i + 1) == '\'') {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return n;
+    }
+
+    private static int numberEnd(String query, int start) {
+        int n = query.length();
+        int i = start;
+        while (i < n && Character.isDigit(query.charAt(i))) {
+            i++;
+        }
+        if (i + 1 < n && query.charAt(i) == '.' && Character.isDigit(query.charAt(i + 1))) {
+            i++;
+            while (i < n && Character.isDigit(query.charAt(i))) {
+                i++;
+            }
+        }
+        if (i < n && (query.charAt(i) == 'e' || query.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < n && (query.charAt(j) == '+' || query.charAt(j) == '-')) {
+                j++;
+            }
+            if (j < n && Character.isDigit(query.charAt(j))) {
+                i = j;
+                while (i < n && Character.isDigit(query.charAt(i))) {
+                    i++;
+                }
+            }
+        }
+        return i;
+    }
+}
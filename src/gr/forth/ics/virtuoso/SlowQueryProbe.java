@@ -0,0 +1,146 @@
+package gr.forth.ics.virtuoso;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one execution of a query for a {@link SlowQueryLog}. The probe is
+ * started before the query is submitted and told when the server accepted
+ * it; the result set is then wrapped so that the time spent in next() is
+ * measured until the result is drained or closed, at which point the query
+ * is recorded if it was slow.
+ *
+ * @author rousakis
+ */
+class SlowQueryProbe implements InvocationHandler {
+
+    private final SlowQueryLog log;
+    private final VirtuosoConnectionPool explainPool;
+    private final String kind;
+    private final String query;
+    private final Map<String, ?> values;
+    private final String text;
+    private final long timestamp;
+    private final long start;
+    private long prepared;
+    private long firstRow = -1;
+    private long fetch;
+    private long rows;
+    private boolean finished;
+    private ResultSet result;
+
+    /**
+     * Starts timing a query.
+     *
+     * @param log The slow query log.
+     * @param explainPool The pool of the connection for explain(), or null.
+     * @param kind The kind of the query.
+     * @param query The query, or the template of a template execution.
+     * @param values The values of the parameters of a template, or null.
+     * @param text The statement given to explain().
+     */
+    SlowQueryProbe(SlowQueryLog log, VirtuosoConnectionPool explainPool, String kind, String query, Map<String, ?> values, String text) {
+        this.log = log;
+        this.explainPool = explainPool;
+        this.kind = kind;
+        this.query = query;
+        this.values = values;
+        this.text = text;
+        this.timestamp = System.currentTimeMillis();
+        this.start = System.nanoTime();
+    }
+
+    /**
+     * Marks that the server accepted the query.
+     */
+    void prepared() {
+        prepared = System.nanoTime() - start;
+    }
+
+    /**
+     * Ends the timing of an update.
+     *
+     * @param count The update count.
+     */
+    void updated(int count) {
+        prepared();
+        rows = count;
+        finish();
+    }
+
+    /**
+     * Marks that the server accepted the query and wraps its result.
+     *
+     * @param result The result.
+     * @return A result set which times the fetches.
+     */
+    ResultSet wrap(ResultSet result) {
+        prepared();
+        this.result = result;
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, this);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        boolean next = name.equals("next");
+        long before = next ? System.nanoTime() : 0;
+        try {
+            Object value = method.invoke(result, args);
+            if (next) {
+                long after = System.nanoTime();
+                fetch += after - before;
+                if (Boolean.TRUE.equals(value)) {
+                    if (rows++ == 0) {
+                        firstRow = after - start;
+                    }
+                } else {
+                    finish();
+                }
+            } else if (name.equals("close")) {
+                finish();
+            }
+            return value;
+        } catch (InvocationTargetException ex) {
+            if (next || name.equals("close")) {
+                finish();
+            }
+            throw ex.getCause();
+        }
+    }
+
+    private void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        long elapsed = System.nanoTime() - start;
+        if (!log.isSlow(prepared + fetch)) {
+            return;
+        }
+        List<String> parameters = new ArrayList<>();
+        String normalized;
+        if (values == null) {
+            normalized = SlowQueryLog.normalize(query, parameters);
+        } else {
+            normalized = SlowQueryLog.normalize(query, new ArrayList<String>());
+            for (Map.Entry<String, ?> value : values.entrySet()) {
+                parameters.add(value.getKey() + "=" + value.getValue());
+            }
+        }
+        log.record(new SlowQueryRecord(timestamp, kind, normalized, parameters, rows, millis(prepared),
+                firstRow < 0 ? -1 : millis(firstRow), millis(fetch), millis(elapsed), null), explainPool, text);
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,185 @@
+package gr.forth.ics.virtuoso;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A query which took longer than the threshold of a {@link SlowQueryLog}. The
+ * query is kept normalized, i.e. with its literals replaced by ? and listed as
+ * parameters, so that executions which differ only in their constants can be
+ * grouped. The timings are measured from the submission of the query: the
+ * prepare time until the server accepted it, the first row time until the
+ * first row was fetched, and the fetch time spent waiting for rows, which
+ * excludes the time the caller spent on the rows in between.
+ *
+ * @author rousakis
+ */
+public class SlowQueryRecord {
+
+    private final long timestamp;
+    private final String kind;
+    private final String query;
+    private final List<String> parameters;
+    private final long rows;
+    private final long prepareMillis;
+    private final long firstRowMillis;
+    private final long fetchMillis;
+    private final long elapsedMillis;
+    private final String plan;
+
+    SlowQueryRecord(long timestamp, String kind, String query, List<String> parameters, long rows,
+            long prepareMillis, long firstRowMillis, long fetchMillis, long elapsedMillis, String plan) {
+        this.timestamp = timestamp;
+        this.kind = kind;
+        this.query = query;
+        this.parameters = Collections.unmodifiableList(new ArrayList<>(parameters));
+        this.rows = rows;
+        this.prepareMillis = prepareMillis;
+        this.firstRowMillis = firstRowMillis;
+        this.fetchMillis = fetchMillis;
+        this.elapsedMillis = elapsedMillis;
+        this.plan = plan;
+    }
+
+    /**
+     * Returns a copy of this record with the execution plan of its query.
+     *
+     * @param plan The plan.
+     * @return
+     */
+    SlowQueryRecord withPlan(String plan) {
+        return new SlowQueryRecord(timestamp, kind, query, parameters, rows, prepareMillis, firstRowMillis, fetchMillis, elapsedMillis, plan);
+    }
+
+    /**
+     * Returns the time the query was submitted in milliseconds since the
+     * epoch.
+     *
+     * @return
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the kind of the query, i.e. select, cursor or update.
+     *
+     * @return
+     */
+    public String getKind() {
+        return kind;
+    }
+
+    /**
+     * Returns the normalized query.
+     *
+     * @return
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Returns the literals taken out of the query, or the values of the
+     * parameters of a template as name=value pairs, in order.
+     *
+     * @return
+     */
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Returns the number of rows fetched, or the update count of an update.
+     *
+     * @return
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the time until the server accepted the query.
+     *
+     * @return
+     */
+    public long getPrepareMillis() {
+        return prepareMillis;
+    }
+
+    /**
+     * Returns the time until the first row was fetched, or -1 if no row was
+     * fetched.
+     *
+     * @return
+     */
+    public long getFirstRowMillis() {
+        return firstRowMillis;
+    }
+
+    /**
+     * Returns the time spent waiting for rows.
+     *
+     * @return
+     */
+    public long getFetchMillis() {
+        return fetchMillis;
+    }
+
+    /**
+     * Returns the time until the result was drained or closed, including the
+     * time the caller spent on the rows.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Returns the time the query kept the server busy, i.e. the prepare time
+     * plus the fetch time. This is the time compared to the threshold.
+     *
+     * @return
+     */
+    public long getServerMillis() {
+        return prepareMillis + fetchMillis;
+    }
+
+    /**
+     * Returns the execution plan of the query as reported by explain(), or
+     * null if it was not fetched.
+     *
+     * @return
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(query.length() + 256);
+        sb.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp)))
+                .append(' ').append(kind)
+                .append(" server=").append(getServerMillis()).append("ms")
+                .append(" prepare=").append(prepareMillis).append("ms")
+                .append(" firstRow=").append(firstRowMillis).append("ms")
+                .append(" fetch=").append(fetchMillis).append("ms")
+                .append(" elapsed=").append(elapsedMillis).append("ms")
+                .append(" rows=").append(rows).append('\n');
+        sb.append("QUERY: ").append(query).append('\n');
+        if (!parameters.isEmpty()) {
+            sb.append("PARAMETERS: ").append(parameters).append('\n');
+        }
+        if (plan != null) {
+            sb.append("PLAN:\n").append(plan);
+            if (!plan.endsWith("\n")) {
+                sb.append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,142 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A forward-only cursor over the rows of a SPARQL select query. Rows are
+ * fetched from the server in pages of the configured fetch size, so the memory
+ * used by the cursor does not depend on the size of the result. The cursor
+ * owns its statement, hence it is not invalidated by other queries, and it is
+ * closed automatically when it is exhausted. Cursors are not thread safe.
+ *
+ * @author rousakis
+ */
+public class SparqlCursor implements Iterator<SparqlRow>, Iterable<SparqlRow>, Closeable {
+
+    private final ConnectionLease lease;
+    private final ResultSet result;
+    private final SparqlRow row;
+    private boolean fetched;
+    private boolean hasRow;
+    private boolean closed;
+    private long rows;
+    private final VirtuosoMetrics metrics;
+    private final long start;
+    private boolean failed;
+
+    SparqlCursor(ConnectionLease lease, ResultSet result) {
+        this(lease, result, null, 0);
+    }
+
+    /**
+     * Creates a cursor which records its lifetime and the number of rows it
+     * returned as a "jdbc.cursor" operation when it is closed.
+     */
+    SparqlCursor(ConnectionLease lease, ResultSet result, VirtuosoMetrics metrics, long start) {
+        this.lease = lease;
+        this.result = result;
+        this.row = new SparqlRow(result);
+        this.metrics = metrics;
+        this.start = start;
+    }
+
+    /**
+     * Returns whether there is another row. Failures of the underlying result
+     * are rethrown as {@link IllegalStateException}.
+     *
+     * @return
+     */
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (!fetched) {
+            try {
+                hasRow = result.next();
+            } catch (SQLException ex) {
+                failed = true;
+                close();
+                throw new IllegalStateException("Exception: " + ex.getMessage() + " occured during the fetch of a row.", ex);
+            }
+            fetched = true;
+            if (!hasRow) {
+                close();
+            }
+        }
+        return hasRow;
+    }
+
+    /**
+     * Advances to the next row. The returned row is only valid until the next
+     * call of this method.
+     *
+     * @return
+     */
+    @Override
+    public SparqlRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        fetched = false;
+        rows++;
+        return row;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("The cursor is read only.");
+    }
+
+    @Override
+    public Iterator<SparqlRow> iterator() {
+        return this;
+    }
+
+    /**
+     * Returns the number of rows consumed so far.
+     *
+     * @return
+     */
+    public long getRowCount() {
+        return rows;
+    }
+
+    /**
+     * Returns whether the cursor has been closed.
+     *
+     * @return
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the cursor and releases its statement and connection.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        hasRow = false;
+        try {
+            result.close();
+        } catch (SQLException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the close of a cursor.");
+        }
+        lease.close();
+        if (metrics != null) {
+            if (failed) {
+                metrics.failure("jdbc.cursor", start);
+            } else {
+                metrics.success("jdbc.cursor", start, rows);
+            }
+        }
+    }
+}
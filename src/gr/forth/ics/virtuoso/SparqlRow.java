@@ -0,0 +1,115 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The current row of a {@link SparqlCursor}. Column values are decoded from
+ * the underlying result only when they are requested, and a row is only valid
+ * until its cursor advances to the next one.
+ *
+ * @author rousakis
+ */
+public class SparqlRow {
+
+    private final ResultSet result;
+    private String[] columnNames;
+    private Map<String, Integer> columnIndexes;
+
+    SparqlRow(ResultSet result) {
+        this.result = result;
+    }
+
+    /**
+     * Returns the number of columns of the row.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public int getColumnCount() throws SQLException {
+        return columnNames().length;
+    }
+
+    /**
+     * Returns the name of a column.
+     *
+     * @param column The 1-based index of the column.
+     * @return
+     * @throws SQLException
+     */
+    public String getColumnName(int column) throws SQLException {
+        return columnNames()[column - 1];
+    }
+
+    /**
+     * Returns the value of a column as string.
+     *
+     * @param column The 1-based index of the column.
+     * @return
+     * @throws SQLException
+     */
+    public String getString(int column) throws SQLException {
+        return result.getString(column);
+    }
+
+    /**
+     * Returns the value of a column as string.
+     *
+     * @param column The name of the column, i.e. the SPARQL variable without
+     * the question mark.
+     * @return
+     * @throws SQLException
+     */
+    public String getString(String column) throws SQLException {
+        return result.getString(columnIndex(column));
+    }
+
+    /**
+     * Returns the value of a column as it is decoded by the Virtuoso driver.
+     *
+     * @param column The 1-based index of the column.
+     * @return
+     * @throws SQLException
+     */
+    public Object getObject(int column) throws SQLException {
+        return result.getObject(column);
+    }
+
+    /**
+     * Returns the value of a column as it is decoded by the Virtuoso driver.
+     *
+     * @param column The name of the column.
+     * @return
+     * @throws SQLException
+     */
+    public Object getObject(String column) throws SQLException {
+        return result.getObject(columnIndex(column));
+    }
+
+    private int columnIndex(String column) throws SQLException {
+        columnNames();
+        Integer index = columnIndexes.get(column);
+        if (index == null) {
+            throw new SQLException("Unknown column: " + column);
+        }
+        return index;
+    }
+
+    private String[] columnNames() throws SQLException {
+        if (columnNames == null) {
+            ResultSetMetaData meta = result.getMetaData();
+            String[] names = new String[meta.getColumnCount()];
+            Map<String, Integer> indexes = new HashMap<>();
+            for (int c = 1; c <= names.length; c++) {
+                names[c - 1] = meta.getColumnLabel(c);
+                indexes.put(names[c - 1], c);
+            }
+            columnIndexes = indexes;
+            columnNames = names;
+        }
+        return columnNames;
+    }
+}
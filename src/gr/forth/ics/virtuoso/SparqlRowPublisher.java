@@ -0,0 +1,152 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.SQLException;
+
+/**
+ * Publishes the rows of a SPARQL select query to a {@link SparqlRowSubscriber}
+ * with backpressure. The query is executed when a subscriber subscribes, and
+ * rows are fetched from the cursor only as far as the subscriber has requested
+ * them. Rows are delivered on the thread which calls
+ * {@link SparqlRowSubscriber.Subscription#request(long)}; a request made from
+ * within {@code onNext} only adds to the demand of the delivery loop. Each
+ * publisher supports a single subscriber.
+ *
+ * @author rousakis
+ */
+public class SparqlRowPublisher {
+
+    private final JDBCVirtuosoRep rep;
+    private final String query;
+    private final int fetchSize;
+    private boolean subscribed;
+
+    SparqlRowPublisher(JDBCVirtuosoRep rep, String query, int fetchSize) {
+        this.rep = rep;
+        this.query = query;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Executes the query and starts delivering its rows to the subscriber as
+     * they are requested.
+     *
+     * @param subscriber The subscriber of the rows.
+     */
+    public synchronized void subscribe(SparqlRowSubscriber subscriber) {
+        if (subscribed) {
+            subscriber.onSubscribe(new RowSubscription(subscriber, null));
+            subscriber.onError(new IllegalStateException("The publisher supports a single subscriber."));
+            return;
+        }
+        subscribed = true;
+        SparqlCursor cursor;
+        try {
+            cursor = rep.openSparqlCursor(query, fetchSize);
+        } catch (SQLException ex) {
+            subscriber.onSubscribe(new RowSubscription(subscriber, null));
+            subscriber.onError(ex);
+            return;
+        }
+        subscriber.onSubscribe(new RowSubscription(subscriber, cursor));
+    }
+
+    private static class RowSubscription implements SparqlRowSubscriber.Subscription {
+
+        private final SparqlRowSubscriber subscriber;
+        private final SparqlCursor cursor;
+        private long demand;
+        private boolean emitting;
+        private boolean done;
+
+        RowSubscription(SparqlRowSubscriber subscriber, SparqlCursor cursor) {
+            this.subscriber = subscriber;
+            this.cursor = cursor;
+            this.done = cursor == null;
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                if (n <= 0) {
+                    done = true;
+                    if (!emitting) {
+                        cursor.close();
+                    }
+                    subscriber.onError(new IllegalArgumentException("The number of requested rows must be positive: " + n));
+                    return;
+                }
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                if (emitting) {
+                    return;
+                }
+                emitting = true;
+            }
+            emit();
+        }
+
+        private void emit() {
+            while (true) {
+                synchronized (this) {
+                    if (done) {
+                        emitting = false;
+                        cursor.close();
+                        return;
+                    }
+                    if (demand == 0) {
+                        emitting = false;
+                        return;
+                    }
+                    demand--;
+                }
+                boolean hasNext;
+                try {
+                    hasNext = cursor.hasNext();
+                } catch (IllegalStateException ex) {
+                    if (finish()) {
+                        subscriber.onError(ex.getCause() != null ? ex.getCause() : ex);
+                    }
+                    return;
+                }
+                if (!hasNext) {
+                    if (finish()) {
+                        subscriber.onComplete();
+                    }
+                    return;
+                }
+                try {
+                    subscriber.onNext(cursor.next());
+                } catch (RuntimeException ex) {
+                    if (finish()) {
+                        subscriber.onError(ex);
+                    }
+                    return;
+                }
+            }
+        }
+
+        private synchronized boolean finish() {
+            boolean wasDone = done;
+            done = true;
+            emitting = false;
+            cursor.close();
+            return !wasDone;
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                if (emitting) {
+                    return;
+                }
+            }
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Receives the rows of a {@link SparqlRowPublisher}. It follows the contract of
+ * a reactive streams subscriber: no rows are delivered before they are
+ * requested through the {@link Subscription} given to
+ * {@link #onSubscribe(Subscription)}.
+ *
+ * @author rousakis
+ */
+public interface SparqlRowSubscriber {
+
+    /**
+     * Called once before any other method.
+     *
+     * @param subscription The subscription used to request rows or cancel.
+     */
+    void onSubscribe(Subscription subscription);
+
+    /**
+     * Called for each requested row. The row is only valid during the call.
+     *
+     * @param row The current row.
+     */
+    void onNext(SparqlRow row);
+
+    /**
+     * Called once if the query or the fetch of a row failed.
+     *
+     * @param error The failure.
+     */
+    void onError(Throwable error);
+
+    /**
+     * Called once after the last row has been delivered.
+     */
+    void onComplete();
+
+    /**
+     * The link between a publisher and a subscriber.
+     */
+    interface Subscription {
+
+        /**
+         * Requests up to n more rows.
+         *
+         * @param n The number of rows, which must be positive.
+         */
+        void request(long n);
+
+        /**
+         * Stops the delivery of rows and releases the cursor.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,189 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A SPARQL query or update with named parameters, compiled once into the text
+ * of a JDBC prepared statement. A parameter is written as %{name}; enclosed in
+ * angle brackets, as in &lt;%{name}&gt;, it stands for an IRI, otherwise for a
+ * literal. Virtuoso binds IRI parameters through `iri(??)` and literal
+ * parameters through ??, so the values are never spliced into the text, need
+ * no escaping and every execution reuses the plan which the server compiled
+ * for the statement. Numbers and booleans are bound as typed literals, any
+ * other value by its string form.
+ * <p>
+ * Placeholders are recognized anywhere in the text, including string
+ * literals. IRI parameters belong in triple patterns and GRAPH clauses, since
+ * FROM clauses take fixed IRIs. Templates are immutable and can be shared
+ * between threads.
+ *
+ * @author rousakis
+ */
+public final class SparqlTemplate {
+
+    private final String template;
+    private final String text;
+    private final List<String> parameters;
+    private final boolean[] iris;
+
+    private SparqlTemplate(String template, String text, List<String> parameters, boolean[] iris) {
+        this.template = template;
+        this.text = text;
+        this.parameters = Collections.unmodifiableList(parameters);
+        this.iris = iris;
+    }
+
+    /**
+     * Compiles a template.
+     *
+     * @param template The SPARQL text with %{name} placeholders, without the
+     * sparql keyword.
+     * @param prefixes The prefixes which are declared before the text.
+     * @return
+     */
+    public static SparqlTemplate compile(String template, PrefixSet prefixes) {
+        StringBuilder sb = new StringBuilder(template.length() + prefixes.getPrologue().length() + 16);
+        sb.append("sparql ").append(prefixes.getPrologue());
+        List<String> parameters = new ArrayList<>();
+        List<Boolean> kinds = new ArrayList<>();
+        int i = 0;
+        while (i < template.length()) {
+            int open = template.indexOf("%{", i);
+            if (open < 0) {
+                sb.append(template, i, template.length());
+                break;
+            }
+            int close = template.indexOf('}', open + 2);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unterminated parameter at offset " + open + " of: " + template);
+            }
+            String name = template.substring(open + 2, close);
+            if (!isName(name)) {
+                throw new IllegalArgumentException("Invalid parameter name '" + name + "' at offset " + open + " of: " + template);
+            }
+            boolean iri = open > i && template.charAt(open - 1) == '<' && close + 1 < template.length() && template.charAt(close + 1) == '>';
+            if (iri) {
+                sb.append(template, i, open - 1).append("`iri(??)`");
+                i = close + 2;
+            } else {
+                sb.append(template, i, open).append("??");
+                i = close + 1;
+            }
+            parameters.add(name);
+            kinds.add(iri);
+        }
+        boolean[] iris = new boolean[kinds.size()];
+        for (int k = 0; k < iris.length; k++) {
+            iris[k] = kinds.get(k);
+        }
+        return new SparqlTemplate(template, sb.toString(), parameters, iris);
+    }
+
+    private static boolean isName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the template as it was given.
+     *
+     * @return
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the text of the prepared statement.
+     *
+     * @return
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Returns the names of the parameters in the order of the statement
+     * parameters. A name which is used more than once is repeated.
+     *
+     * @return
+     */
+    public List<String> getParameterNames() {
+        return parameters;
+    }
+
+    /**
+     * Binds the values of the parameters to a statement prepared from
+     * {@link #getText()}.
+     *
+     * @param statement The statement.
+     * @param values The values by parameter name.
+     * @throws SQLException
+     */
+    void bind(PreparedStatement statement, Map<String, ?> values) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            Object value = value(values, i);
+            if (iris[i] || !(value instanceof Number || value instanceof Boolean)) {
+                statement.setString(i + 1, value.toString());
+            } else {
+                statement.setObject(i + 1, value);
+            }
+        }
+    }
+
+    private Object value(Map<String, ?> values, int i) {
+        Object value = values.get(parameters.get(i));
+        if (value == null) {
+            throw new IllegalArgumentException("No value for the parameter " + parameters.get(i) + " of: " + template);
+        }
+        return value;
+    }
+
+    /**
+     * Returns the text of the statement with the values written in place of
+     * the parameters, e.g. to log it or to find the graphs it refers to.
+     *
+     * @param values The values by parameter name.
+     * @return
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder sb = new StringBuilder(text.length() + 32 * parameters.size());
+        int from = 0;
+        for (int i = 0; i < parameters.size(); i++) {
+            int at = text.indexOf("??", from);
+            Object value = value(values, i);
+            if (iris[i]) {
+                sb.append(text, from, at - 5);
+                TermSerializer.appendIri(sb, value.toString());
+                from = at + 4;
+            } else {
+                sb.append(text, from, at);
+                if (value instanceof Number || value instanceof Boolean) {
+                    sb.append(value);
+                } else {
+                    TermSerializer.appendLiteral(sb, value.toString(), null, null);
+                }
+                from = at + 2;
+            }
+        }
+        return sb.append(text, from, text.length()).toString();
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,101 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a {@link TripleSpooler}: the triples and files it wrote and
+ * the loads of the sealed files.
+ *
+ * @author rousakis
+ */
+public class SpoolReport {
+
+    private final long triples;
+    private final int sealedFiles;
+    private final int loadedFiles;
+    private final long bytes;
+    private final List<String[]> errors;
+    private final long elapsed;
+
+    SpoolReport(long triples, int sealedFiles, int loadedFiles, long bytes, List<String[]> errors, long elapsed) {
+        this.triples = triples;
+        this.sealedFiles = sealedFiles;
+        this.loadedFiles = loadedFiles;
+        this.bytes = bytes;
+        this.errors = Collections.unmodifiableList(new ArrayList<>(errors));
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * Returns the number of triples written into the spool files.
+     *
+     * @return
+     */
+    public long getTriples() {
+        return triples;
+    }
+
+    /**
+     * Returns the number of spool files which were sealed.
+     *
+     * @return
+     */
+    public int getSealedFiles() {
+        return sealedFiles;
+    }
+
+    /**
+     * Returns the number of sealed files which were loaded without errors.
+     *
+     * @return
+     */
+    public int getLoadedFiles() {
+        return loadedFiles;
+    }
+
+    /**
+     * Returns the size of the sealed files on disk in bytes.
+     *
+     * @return
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns the files which failed to load as pairs of file name and error
+     * message. Failed files are kept in the spool directory.
+     *
+     * @return
+     */
+    public List<String[]> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the time since the spooler was opened in milliseconds.
+     *
+     * @return
+     */
+    public long getElapsedMillis() {
+        return elapsed;
+    }
+
+    /**
+     * Returns the write throughput in triples per second.
+     *
+     * @return
+     */
+    public double getTriplesPerSecond() {
+        return elapsed == 0 ? 0 : triples * 1000.0 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return triples + " triples spooled into " + sealedFiles + " files (" + bytes + " bytes), "
+                + loadedFiles + " loaded, " + errors.size() + " failed in " + elapsed + "ms, "
+                + String.format("%.1f", getTriplesPerSecond()) + " triples/sec";
+    }
+}
@@ -0,0 +1,147 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns the URIs and literals of a batch of triples, so that each distinct
+ * term is stored once and triples refer to it by an int id. Terms are stored
+ * in their serialized form, see {@link TermSerializer}, so each distinct term
+ * is escaped once and rendering a triple only copies characters. URIs and
+ * literals with the same text get different ids. Plain literals are keyed by
+ * their lexical form and tagged or typed ones by their serialized form, in
+ * separate maps, so the two never collide. Dictionaries are not thread safe.
+ *
+ * @author rousakis
+ */
+public class TermDictionary {
+
+    private final List<String> terms;
+    private final Map<String, Integer> uris;
+    private final Map<String, Integer> literals;
+    private final Map<String, Integer> qualified;
+    private final BitSet literalIds;
+    private final StringBuilder buffer;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public TermDictionary() {
+        this.terms = new ArrayList<>();
+        this.uris = new HashMap<>();
+        this.literals = new HashMap<>();
+        this.qualified = new HashMap<>();
+        this.literalIds = new BitSet();
+        this.buffer = new StringBuilder(256);
+    }
+
+    /**
+     * Returns the id of a URI, adding it if needed. URIs which start with "_:"
+     * are blank nodes.
+     *
+     * @param uri The URI.
+     * @return
+     */
+    public int uri(String uri) {
+        Integer id = uris.get(uri);
+        if (id == null) {
+            buffer.setLength(0);
+            id = add(TermSerializer.appendResource(buffer, uri).toString(), false);
+            uris.put(uri, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of a plain literal, adding it if needed.
+     *
+     * @param literal The lexical form of the literal.
+     * @return
+     */
+    public int literal(String literal) {
+        Integer id = literals.get(literal);
+        if (id == null) {
+            buffer.setLength(0);
+            id = add(TermSerializer.appendLiteral(buffer, literal, null, null).toString(), true);
+            literals.put(literal, id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of the object of a triple, adding it if needed.
+     *
+     * @param o The object.
+     * @param type The kind of the object.
+     * @param qualifier The language tag or datatype URI of the object.
+     * @return
+     */
+    public int object(String o, Triple_Type type, String qualifier) {
+        if (type == Triple_Type.URI) {
+            return uri(o);
+        }
+        if (type == Triple_Type.LITERAL || qualifier == null) {
+            return literal(o);
+        }
+        buffer.setLength(0);
+        String term = TermSerializer.appendObject(buffer, o, type, qualifier).toString();
+        Integer id = qualified.get(term);
+        if (id == null) {
+            id = add(term, true);
+            qualified.put(term, id);
+        }
+        return id;
+    }
+
+    private int add(String term, boolean literal) {
+        int id = terms.size();
+        terms.add(term);
+        if (literal) {
+            literalIds.set(id);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the serialized form of a term.
+     *
+     * @param id The id of the term.
+     * @return
+     */
+    public String term(int id) {
+        return terms.get(id);
+    }
+
+    /**
+     * Returns whether a term is a literal.
+     *
+     * @param id The id of the term.
+     * @return
+     */
+    public boolean isLiteral(int id) {
+        return literalIds.get(id);
+    }
+
+    /**
+     * Returns the number of distinct terms.
+     *
+     * @return
+     */
+    public int size() {
+        return terms.size();
+    }
+
+    /**
+     * Removes all terms.
+     */
+    public void clear() {
+        terms.clear();
+        uris.clear();
+        literals.clear();
+        qualified.clear();
+        literalIds.clear();
+    }
+}
@@ -0,0 +1,249 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * Appends RDF terms in the syntax shared by N-Triples and SPARQL directly to
+ * a caller supplied buffer, which can be reused across triples and chunks, so
+ * that serializing a triple creates no intermediate strings.
+ * <ul>
+ * <li>Literals escape backslashes, quotes and line breaks with the echar
+ * escapes and other control characters with \\u escapes, and may carry a
+ * language tag or a datatype.</li>
+ * <li>IRIs are written as they are. An IRI with a character which is not
+ * allowed within angle brackets, such as a space, a quote or a brace, can not
+ * be written in the shared syntax and is rejected, since encoding it would
+ * name a different resource; N-Triples output can escape such characters
+ * with \\u escapes instead, see {@link #appendNTriplesIri(StringBuilder, String)}.</li>
+ * <li>Blank node labels keep letters, digits and underscores and encode any
+ * other character, x included, as x followed by its four digit hexadecimal
+ * code, so that distinct labels stay distinct.</li>
+ * </ul>
+ * By convention, a subject or object IRI which starts with "_:" denotes a blank
+ * node.
+ *
+ * @author rousakis
+ */
+public final class TermSerializer {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private TermSerializer() {
+    }
+
+    /**
+     * Appends an IRI, or a blank node if the IRI starts with "_:".
+     *
+     * @param sb The buffer.
+     * @param iri The IRI.
+     * @return The buffer.
+     */
+    public static StringBuilder appendResource(StringBuilder sb, String iri) {
+        if (iri.startsWith("_:")) {
+            return appendBlankNode(sb, iri.substring(2));
+        }
+        return appendIri(sb, iri);
+    }
+
+    /**
+     * Appends an IRI enclosed in angle brackets.
+     *
+     * @param sb The buffer.
+     * @param iri The IRI.
+     * @return The buffer.
+     * @throws IllegalArgumentException If the IRI contains a character which
+     * is not allowed within angle brackets.
+     */
+    public static StringBuilder appendIri(StringBuilder sb, String iri) {
+        for (int i = 0; i < iri.length(); i++) {
+            if (isIriEscaped(iri.charAt(i))) {
+                throw new IllegalArgumentException("The IRI contains a character which SPARQL does not allow: <" + iri + ">");
+            }
+        }
+        return sb.append('<').append(iri).append('>');
+    }
+
+    /**
+     * Appends an IRI enclosed in angle brackets for N-Triples output. The
+     * characters which are not allowed within angle brackets are written as
+     * \\u escapes, which N-Triples parsers read back into the same IRI.
+     *
+     * @param sb The buffer.
+     * @param iri The IRI.
+     * @return The buffer.
+     */
+    public static StringBuilder appendNTriplesIri(StringBuilder sb, String iri) {
+        sb.append('<');
+        for (int i = 0; i < iri.length(); i++) {
+            char c = iri.charAt(i);
+            if (isIriEscaped(c)) {
+                sb.append("\\u").append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                        .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('>');
+    }
+
+    /**
+     * Returns whether an N-Triples line has an IRI with \\u escapes, i.e. an
+     * IRI which SPARQL can not express, see
+     * {@link #appendNTriplesIri(StringBuilder, String)}.
+     *
+     * @param line The line.
+     * @return
+     */
+    static boolean hasEscapedIri(String line) {
+        boolean literal = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (literal) {
+                if (c == '\\') {
+                    i++;
+                } else if (c == '"') {
+                    literal = false;
+                }
+            } else if (c == '"') {
+                literal = true;
+            } else if (c == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIriEscaped(char c) {
+        return c <= 0x20 || c == '<' || c == '>' || c == '"' || c == '{' || c == '}' || c == '|' || c == '^' || c == '`' || c == '\\';
+    }
+
+    /**
+     * Appends a blank node.
+     *
+     * @param sb The buffer.
+     * @param label The label of the blank node, without the "_:" prefix.
+     * @return The buffer.
+     */
+    public static StringBuilder appendBlankNode(StringBuilder sb, String label) {
+        sb.append("_:");
+        if (label.isEmpty()) {
+            return sb.append('x');
+        }
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_') && c != 'x') {
+                sb.append(c);
+            } else {
+                sb.append('x').append(HEX[(c >> 12) & 0xF]).append(HEX[(c >> 8) & 0xF])
+                        .append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Appends a literal.
+     *
+     * @param sb The buffer.
+     * @param label The lexical form of the literal.
+     * @param language The language tag, or null.
+     * @param datatype The datatype IRI, or null. It is ignored if a language
+     * tag is given.
+     * @return The buffer.
+     */
+    public static StringBuilder appendLiteral(StringBuilder sb, String label, String language, String datatype) {
+        sb.append('"');
+        appendEscaped(sb, label);
+        sb.append('"');
+        if (language != null && !language.isEmpty()) {
+            sb.append('@').append(language);
+        } else if (datatype != null) {
+            sb.append("^^");
+            appendIri(sb, datatype);
+        }
+        return sb;
+    }
+
+    /**
+     * Appends the escaped form of the lexical form of a literal, without the
+     * enclosing quotes.
+     *
+     * @param sb The buffer.
+     * @param label The lexical form.
+     * @return The buffer.
+     */
+    public static StringBuilder appendEscaped(StringBuilder sb, String label) {
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            switch (c) {
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\b':
+                    sb.append("\\b");
+                    break;
+                case '\f':
+                    sb.append("\\f");
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x7F) {
+                        sb.append("\\u00").append(HEX[(c >> 4) & 0xF]).append(HEX[c & 0xF]);
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Appends a triple, without the terminating dot.
+     *
+     * @param sb The buffer.
+     * @param s The subject IRI.
+     * @param p The predicate IRI.
+     * @param o The object.
+     * @param type The kind of the object.
+     * @param qualifier The language tag of a {@link Triple_Type#LANG_LITERAL}
+     * or the datatype IRI of a {@link Triple_Type#TYPED_LITERAL}; ignored
+     * otherwise.
+     * @return The buffer.
+     */
+    public static StringBuilder appendTriple(StringBuilder sb, String s, String p, String o, Triple_Type type, String qualifier) {
+        appendResource(sb, s).append(' ');
+        appendIri(sb, p).append(' ');
+        return appendObject(sb, o, type, qualifier);
+    }
+
+    /**
+     * Appends the object of a triple.
+     *
+     * @param sb The buffer.
+     * @param o The object.
+     * @param type The kind of the object.
+     * @param qualifier The language tag or datatype IRI of the object.
+     * @return The buffer.
+     */
+    public static StringBuilder appendObject(StringBuilder sb, String o, Triple_Type type, String qualifier) {
+        switch (type) {
+            case LITERAL:
+                return appendLiteral(sb, o, null, null);
+            case LANG_LITERAL:
+                return appendLiteral(sb, o, qualifier, null);
+            case TYPED_LITERAL:
+                return appendLiteral(sb, o, null, qualifier);
+            default:
+                return appendResource(sb, o);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * An indexed sequence of triples which can be rendered one at a time, used by
+ * {@link BatchInserter} to chunk and write both lists of {@link TripleString}
+ * and {@link CompactTripleBuffer}s.
+ *
+ * @author rousakis
+ */
+interface TripleSequence {
+
+    int size();
+
+    /**
+     * Returns the length of the text of a triple.
+     */
+    int length(int index);
+
+    /**
+     * Appends the text of a triple to a builder.
+     */
+    void appendTo(int index, StringBuilder sb);
+}
@@ -0,0 +1,20 @@
+package gr.forth.ics.virtuoso;
+
+import org.openrdf.rio.RDFHandler;
+
+/**
+ * A source of triples, such as a named graph or an RDF file, which pushes its
+ * statements into a Rio handler.
+ *
+ * @author rousakis
+ */
+public interface TripleSource {
+
+    /**
+     * Streams all triples of the source into the handler.
+     *
+     * @param handler The handler which receives the statements.
+     * @throws Exception
+     */
+    void emit(RDFHandler handler) throws Exception;
+}
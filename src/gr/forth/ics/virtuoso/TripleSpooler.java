@@ -0,0 +1,399 @@
+package gr.forth.ics.virtuoso;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Stages generated triples for the Virtuoso bulk loader instead of inserting
+ * them with SPARQL. The triples are serialized with {@link TermSerializer}
+ * into rolling N-Triples files, optionally gzip compressed, in a directory
+ * which the Virtuoso server can read. A file is written under a .part name
+ * and renamed once it is sealed, i.e. when it reaches the maximum number of
+ * triples or on {@link #seal()}, so the loader never sees a half written
+ * file. Sealed files are handed to a {@link VirtuosoBulkLoader} on a
+ * background thread, registered one by one with ld_add, while the next file is
+ * being written; files sealed during a load are loaded together by the next
+ * one. Loaded files are deleted, failed ones are kept for inspection. The
+ * loads skip the checkpoint; one checkpoint is made by {@link #finish()}.
+ * <p>
+ * A spooler is not thread safe; it is meant to be fed by one producer, e.g. a
+ * change computation job, and closed with {@link #finish()} once the job ends.
+ *
+ * @author rousakis
+ */
+public class TripleSpooler implements AutoCloseable {
+
+    private final JDBCVirtuosoRep rep;
+    private final File directory;
+    private final String graph;
+    private final String prefix;
+    private final long begin;
+    private final long start;
+    private String serverDirectory;
+    private long maxTriplesPerFile;
+    private boolean gzip;
+    private int loaders;
+    private boolean deleteLoaded;
+    private int bufferSize;
+    private BulkLoadListener listener;
+    private final StringBuilder line = new StringBuilder(256);
+    private char[] chars = new char[256];
+    private Writer out;
+    private File part;
+    private long fileTriples;
+    private int sequence;
+    private long triples;
+    private int sealed;
+    private long bytes;
+    private final List<File> pending = new ArrayList<>();
+    private final List<String[]> errors = Collections.synchronizedList(new ArrayList<String[]>());
+    private final AtomicInteger loaded = new AtomicInteger();
+    private ExecutorService handOff;
+    private SpoolReport report;
+
+    /**
+     * Creates a new spooler which writes gzip compressed files of up to
+     * 5000000 triples and loads them with two loaders.
+     *
+     * @param rep The JDBC connection layer.
+     * @param directory The spool directory. It is created if it does not
+     * exist.
+     * @param graph The graph which will receive the triples.
+     */
+    public TripleSpooler(JDBCVirtuosoRep rep, File directory, String graph) {
+        this.rep = rep;
+        this.directory = directory;
+        this.graph = graph;
+        this.prefix = "spool-" + Long.toString(System.currentTimeMillis(), 36) + "-" + Integer.toHexString(System.identityHashCode(this));
+        this.begin = rep.getMetrics().start();
+        this.start = System.currentTimeMillis();
+        this.maxTriplesPerFile = 5000000;
+        this.gzip = true;
+        this.loaders = 2;
+        this.deleteLoaded = true;
+        this.bufferSize = 256 * 1024;
+    }
+
+    /**
+     * Sets the path of the spool directory on the Virtuoso host.
+     *
+     * @param serverDirectory The path, or null if it is the same as on the
+     * client.
+     * @return This spooler.
+     */
+    public TripleSpooler setServerDirectory(String serverDirectory) {
+        this.serverDirectory = serverDirectory;
+        return this;
+    }
+
+    /**
+     * Sets the number of triples after which a file is sealed and handed to
+     * the loader.
+     *
+     * @param maxTriplesPerFile
+     * @return This spooler.
+     */
+    public TripleSpooler setMaxTriplesPerFile(long maxTriplesPerFile) {
+        this.maxTriplesPerFile = Math.max(1, maxTriplesPerFile);
+        return this;
+    }
+
+    /**
+     * Sets whether the files are gzip compressed. It applies from the next
+     * file on.
+     *
+     * @param gzip
+     * @return This spooler.
+     */
+    public TripleSpooler setGzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * Sets the number of concurrent rdf_loader_run() sessions of a load.
+     *
+     * @param loaders
+     * @return This spooler.
+     */
+    public TripleSpooler setLoaders(int loaders) {
+        this.loaders = Math.max(1, loaders);
+        return this;
+    }
+
+    /**
+     * Sets whether the files which were loaded without errors are deleted.
+     *
+     * @param deleteLoaded
+     * @return This spooler.
+     */
+    public TripleSpooler setDeleteLoaded(boolean deleteLoaded) {
+        this.deleteLoaded = deleteLoaded;
+        return this;
+    }
+
+    /**
+     * Sets the size of the write buffers. It applies from the next file on.
+     *
+     * @param bufferSize The size in bytes.
+     * @return This spooler.
+     */
+    public TripleSpooler setBufferSize(int bufferSize) {
+        this.bufferSize = Math.max(8192, bufferSize);
+        return this;
+    }
+
+    /**
+     * Sets the listener which receives the progress reports of the loads.
+     *
+     * @param listener
+     * @return This spooler.
+     */
+    public TripleSpooler setListener(BulkLoadListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Spools a triple.
+     *
+     * @param s The subject IRI.
+     * @param p The predicate IRI.
+     * @param o The object.
+     * @param type The kind of the object.
+     * @param qualifier The language tag or datatype IRI of the object, or
+     * null.
+     * @throws IOException
+     */
+    public void add(String s, String p, String o, Triple_Type type, String qualifier) throws IOException {
+        line.setLength(0);
+        TermSerializer.appendTriple(line, s, p, o, type, qualifier);
+        write();
+    }
+
+    /**
+     * Spools a triple.
+     *
+     * @param triple The triple.
+     * @throws IOException
+     */
+    public void add(TripleString triple) throws IOException {
+        line.setLength(0);
+        triple.appendTo(line);
+        write();
+    }
+
+    /**
+     * Spools a list of triples.
+     *
+     * @param triples The triples.
+     * @throws IOException
+     */
+    public void addAll(List<TripleString> triples) throws IOException {
+        for (TripleString triple : triples) {
+            add(triple);
+        }
+    }
+
+    /**
+     * Spools a buffer of dictionary encoded triples.
+     *
+     * @param triples The triples.
+     * @throws IOException
+     */
+    public void addAll(CompactTripleBuffer triples) throws IOException {
+        for (int i = 0; i < triples.size(); i++) {
+            line.setLength(0);
+            triples.appendTo(i, line);
+            write();
+        }
+    }
+
+    private void write() throws IOException {
+        if (report != null) {
+            throw new IOException("The spooler is finished.");
+        }
+        if (out == null) {
+            open();
+        }
+        line.append(" .\n");
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+        line.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        triples++;
+        if (++fileTriples >= maxTriplesPerFile) {
+            seal();
+        }
+    }
+
+    private void open() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create the spool directory " + directory);
+        }
+        part = new File(directory, prefix + "-" + String.format("%06d", sequence++) + (gzip ? ".nt.gz" : ".nt") + ".part");
+        FileChannel channel = FileChannel.open(part.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(channel), bufferSize);
+        if (gzip) {
+            stream = new GZIPOutputStream(stream, 65536);
+        }
+        out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), bufferSize);
+        fileTriples = 0;
+    }
+
+    /**
+     * Seals the current file, if it holds any triples, and hands the sealed
+     * files to the loader without waiting for the load.
+     *
+     * @throws IOException
+     */
+    public void seal() throws IOException {
+        if (report != null) {
+            throw new IOException("The spooler is finished.");
+        }
+        if (out != null) {
+            out.close();
+            out = null;
+            String name = part.getName();
+            File file = new File(directory, name.substring(0, name.length() - ".part".length()));
+            Files.move(part.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            long length = file.length();
+            bytes += length;
+            sealed++;
+            rep.getMetrics().bytes("jdbc.spool", length);
+            synchronized (pending) {
+                pending.add(file);
+            }
+        }
+        synchronized (this) {
+            if (handOff == null) {
+                handOff = Executors.newSingleThreadExecutor();
+            }
+        }
+        handOff.submit(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    private void load() {
+        List<File> files;
+        synchronized (pending) {
+            files = new ArrayList<>(pending);
+            pending.clear();
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        List<String> paths = new ArrayList<>(files.size());
+        for (File file : files) {
+            paths.add(serverDirectory == null ? file.getAbsolutePath() : serverDirectory + "/" + file.getName());
+        }
+        try {
+            BulkLoadReport load = new VirtuosoBulkLoader(rep).setLoaders(loaders).setCountTriples(false).setCheckpoint(false).setListener(listener).load(paths, graph);
+            Set<String> failed = new HashSet<>();
+            for (String[] error : load.getErrors()) {
+                failed.add(error[0]);
+                errors.add(error);
+            }
+            for (int i = 0; i < files.size(); i++) {
+                if (failed.contains(paths.get(i)) || failed.contains("rdf_loader_run()")) {
+                    continue;
+                }
+                loaded.incrementAndGet();
+                if (deleteLoaded) {
+                    Files.deleteIfExists(files.get(i).toPath());
+                }
+            }
+        } catch (SQLException | IOException ex) {
+            for (File file : files) {
+                errors.add(new String[]{file.getName(), ex.getMessage()});
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the progress of the spooler.
+     *
+     * @return
+     */
+    public SpoolReport getReport() {
+        if (report != null) {
+            return report;
+        }
+        List<String[]> failed;
+        synchronized (errors) {
+            failed = new ArrayList<>(errors);
+        }
+        return new SpoolReport(triples, sealed, loaded.get(), bytes, failed, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Seals the current file, waits until all sealed files are loaded and
+     * makes a checkpoint. The spooler accepts no more triples afterwards.
+     *
+     * @return The final report of the spooler.
+     * @throws IOException If the last file could not be sealed or the wait was
+     * interrupted. Failed loads and a failed checkpoint are reported in the
+     * result.
+     */
+    public SpoolReport finish() throws IOException {
+        if (report != null) {
+            return report;
+        }
+        seal();
+        handOff.shutdown();
+        try {
+            handOff.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the loads.", ex);
+        }
+        if (sealed > 0) {
+            try {
+                rep.executeUpdate("checkpoint");
+            } catch (SQLException ex) {
+                errors.add(new String[]{"checkpoint", ex.getMessage()});
+            }
+        }
+        report = getReport();
+        if (report.getErrors().isEmpty()) {
+            rep.getMetrics().success("jdbc.spool", begin, triples);
+        } else {
+            rep.getMetrics().failure("jdbc.spool", begin);
+        }
+        return report;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+}
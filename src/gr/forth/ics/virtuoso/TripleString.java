@@ -8,22 +8,91 @@ package gr.forth.ics.virtuoso;
 
 
 /**
+ * A triple whose subject and predicate are URIs and whose object is either a
+ * URI or a literal, optionally with a language tag or a datatype. Subjects and
+ * URI objects which start with "_:" are blank nodes. The terms are kept as
+ * given and the text of the triple is rendered, with escaping, only when it is
+ * requested, see {@link TermSerializer}. For large batches see
+ * {@link CompactTripleBuffer}.
  *
  * @author rousakis
  */
 public class TripleString {
 
-    private final String triple;
+    private final String s;
+    private final String p;
+    private final String o;
+    private final Triple_Type type;
+    private final String qualifier;
 
     public TripleString(String s, String p, String o, Triple_Type type) {
-        if (type == Triple_Type.LITERAL) {
-            triple = "<" + s + "> <" + p + "> \"" + o + "\"";
-        } else {
-            triple = "<" + s + "> <" + p + "> <" + o + ">";
-        }
+        this(s, p, o, type, null);
+    }
+
+    /**
+     * Creates a new triple.
+     *
+     * @param s The subject URI.
+     * @param p The predicate URI.
+     * @param o The object.
+     * @param type The kind of the object.
+     * @param qualifier The language tag of a
+     * {@link Triple_Type#LANG_LITERAL} or the datatype URI of a
+     * {@link Triple_Type#TYPED_LITERAL}.
+     */
+    public TripleString(String s, String p, String o, Triple_Type type, String qualifier) {
+        this.s = s;
+        this.p = p;
+        this.o = o;
+        this.type = type;
+        this.qualifier = qualifier;
+    }
+
+    public String getSubject() {
+        return s;
+    }
+
+    public String getPredicate() {
+        return p;
+    }
+
+    public String getObject() {
+        return o;
+    }
+
+    public Triple_Type getType() {
+        return type;
+    }
+
+    public String getQualifier() {
+        return qualifier;
     }
 
     public String getTripleString() {
-        return triple;
+        return appendTo(new StringBuilder(length())).toString();
+    }
+
+    /**
+     * Appends the text of the triple to a builder.
+     *
+     * @param sb The builder.
+     * @return The builder.
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        return TermSerializer.appendTriple(sb, s, p, o, type, qualifier);
+    }
+
+    /**
+     * Returns the length of the text of the triple, not counting escapes.
+     *
+     * @return
+     */
+    public int length() {
+        return s.length() + p.length() + o.length() + 8 + (qualifier == null ? 0 : qualifier.length() + 4);
+    }
+
+    @Override
+    public String toString() {
+        return getTripleString();
     }
 }
@@ -8,10 +8,21 @@ package gr.forth.ics.virtuoso;
 
 
 /**
+ * The kind of the object of a triple. Language tags and datatypes are given
+ * as the qualifier of a {@link TripleString}.
  *
  * @author rousakis
  */
 public enum Triple_Type {
 
-    URI, LITERAL;
+    URI, LITERAL, LANG_LITERAL, TYPED_LITERAL;
+
+    /**
+     * Returns whether objects of this kind are literals.
+     *
+     * @return
+     */
+    public boolean isLiteral() {
+        return this != URI;
+    }
 }
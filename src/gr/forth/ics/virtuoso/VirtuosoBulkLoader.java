@@ -0,0 +1,280 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a folder of RDF files which resides on the machine that hosts
+ * Virtuoso with several concurrent rdf_loader_run() sessions. While the
+ * loaders run, DB.DBA.load_list is polled to report the state of each file,
+ * load errors and the throughput of the load. The checkpoint is made once,
+ * after all loaders have finished.
+ * <p>
+ * A folder load clears DB.DBA.load_list first and reports on the entries of
+ * its graph. A load of a list of files leaves the entries of other jobs alone:
+ * it only removes earlier entries of its own files, so they are loaded again,
+ * and reports on those files only. rdf_loader_run() however takes any pending
+ * entry of the list, so files registered by a concurrent job may be loaded,
+ * into their own graphs, by the sessions of this one.
+ * <p>
+ * Every loader needs a connection of its own and the poller one more, so the
+ * {@link JDBCVirtuosoRep} should be pooled with at least loaders + 1
+ * connections; with a smaller pool the number of loaders is reduced to the
+ * pool size minus one. With a single connection, or a pool of one, the files
+ * are loaded by one loader and no intermediate progress is reported.
+ * <p>
+ * rdf_loader_run() can not be cancelled from the client, so a load always
+ * waits for its loader sessions and makes its checkpoint before it returns.
+ * If the calling thread is interrupted the progress reports stop, and the
+ * interrupt status is set again when the load returns.
+ *
+ * @author rousakis
+ */
+public class VirtuosoBulkLoader {
+
+    private final JDBCVirtuosoRep rep;
+    private int loaders;
+    private long pollInterval;
+    private boolean countTriples;
+    private boolean checkpoint;
+    private BulkLoadListener listener;
+
+    /**
+     * Creates a new bulk loader with two loaders, which polls the load list
+     * every ten seconds and does not count triples.
+     *
+     * @param rep The JDBC connection layer.
+     */
+    public VirtuosoBulkLoader(JDBCVirtuosoRep rep) {
+        this.rep = rep;
+        this.loaders = 2;
+        this.pollInterval = 10000;
+        this.countTriples = false;
+        this.checkpoint = true;
+    }
+
+    /**
+     * Sets the number of concurrent rdf_loader_run() sessions. At most the
+     * pool size minus one sessions run, leaving a connection to the poller.
+     *
+     * @param loaders
+     * @return This loader.
+     */
+    public VirtuosoBulkLoader setLoaders(int loaders) {
+        this.loaders = Math.max(1, loaders);
+        return this;
+    }
+
+    /**
+     * Sets the time between two polls of the load list.
+     *
+     * @param millis The interval in milliseconds.
+     * @return This loader.
+     */
+    public VirtuosoBulkLoader setPollInterval(long millis) {
+        this.pollInterval = Math.max(1, millis);
+        return this;
+    }
+
+    /**
+     * Sets whether the triples of the target graph are counted before the
+     * load and on each poll in order to report the triples per second.
+     * Counting scans the graph, so it is off by default and should stay off
+     * for very large graphs.
+     *
+     * @param countTriples
+     * @return This loader.
+     */
+    public VirtuosoBulkLoader setCountTriples(boolean countTriples) {
+        this.countTriples = countTriples;
+        return this;
+    }
+
+    /**
+     * Sets whether a checkpoint is made after the loaders have finished. It
+     * may be turned off when several loads run one after the other and the
+     * caller makes one checkpoint at the end.
+     *
+     * @param checkpoint
+     * @return This loader.
+     */
+    public VirtuosoBulkLoader setCheckpoint(boolean checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+
+    /**
+     * Sets the listener which receives the progress reports.
+     *
+     * @param listener
+     * @return This loader.
+     */
+    public VirtuosoBulkLoader setListener(BulkLoadListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Loads the files of a folder into a named graph.
+     *
+     * @param folder The folder on the Virtuoso host which contains the files.
+     * @param format The file name pattern of the files, e.g. *.nt or *.rdf.
+     * @param graph The graph which will receive the data.
+     * @param update If false the graph is cleared before the load.
+     * @return The final report of the load.
+     * @throws SQLException If the load list could not be prepared or read, or
+     * the checkpoint failed. Failures of single files are reported in the
+     * result.
+     */
+    public BulkLoadReport load(String folder, String format, String graph, boolean update) throws SQLException {
+        return execute(Collections.singletonList("ld_dir('" + sqlString(folder) + "', '" + sqlString(format) + "', '" + sqlString(graph) + "')"),
+                "delete from DB.DBA.load_list", "ll_graph = '" + sqlString(graph) + "'", graph, update);
+    }
+
+    /**
+     * Loads a list of files into a named graph, keeping its current contents.
+     * Only the entries of these files in the load list are replaced and
+     * reported.
+     *
+     * @param files The paths of the files on the Virtuoso host.
+     * @param graph The graph which will receive the data.
+     * @return The final report of the load.
+     * @throws SQLException If the load list could not be prepared or read, or
+     * the checkpoint failed. Failures of single files are reported in the
+     * result.
+     */
+    public BulkLoadReport load(List<String> files, String graph) throws SQLException {
+        List<String> register = new ArrayList<>(files.size());
+        StringBuilder names = new StringBuilder();
+        for (String file : files) {
+            register.add("ld_add('" + sqlString(file) + "', '" + sqlString(graph) + "')");
+            names.append(names.length() == 0 ? "'" : ", '").append(sqlString(file)).append('\'');
+        }
+        String scope = files.isEmpty() ? "0 = 1" : "ll_file in (" + names + ")";
+        return execute(register, "delete from DB.DBA.load_list where " + scope, scope, graph, true);
+    }
+
+    private BulkLoadReport execute(List<String> register, String cleanup, String scope, String graph, boolean update) throws SQLException {
+        VirtuosoMetrics metrics = rep.getMetrics();
+        long begin = metrics.start();
+        try {
+            BulkLoadReport report = run(register, cleanup, scope, graph, update);
+            metrics.success("jdbc.bulkLoad", begin, report.getTriples());
+            return report;
+        } catch (SQLException ex) {
+            metrics.failure("jdbc.bulkLoad", begin);
+            throw ex;
+        }
+    }
+
+    private BulkLoadReport run(List<String> register, String cleanup, String scope, String graph, boolean update) throws SQLException {
+        long start = System.currentTimeMillis();
+        if (!update) {
+            rep.executeUpdate("SPARQL CLEAR GRAPH <" + graph + ">");
+            rep.graphChanged(graph);
+        }
+        long before = countTriples ? rep.countTriples(graph, true) : 0;
+        rep.executeUpdate(cleanup);
+        for (String statement : register) {
+            rep.executeUpdate(statement);
+        }
+        final List<String[]> loaderErrors = Collections.synchronizedList(new ArrayList<String[]>());
+        VirtuosoConnectionPool pool = rep.getPool();
+        boolean interrupted = false;
+        if (pool == null || pool.getMaxSize() < 2) {
+            runLoader(loaderErrors);
+        } else {
+            int sessions = Math.min(loaders, pool.getMaxSize() - 1);
+            ExecutorService executor = Executors.newFixedThreadPool(sessions);
+            for (int i = 0; i < sessions; i++) {
+                executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        runLoader(loaderErrors);
+                    }
+                });
+            }
+            executor.shutdown();
+            while (!executor.isTerminated()) {
+                try {
+                    if (!executor.awaitTermination(pollInterval, TimeUnit.MILLISECONDS) && !interrupted) {
+                        BulkLoadReport report = poll(scope, graph, before, loaderErrors, start, false);
+                        if (listener != null) {
+                            listener.progress(report);
+                        }
+                    }
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        try {
+            rep.graphChanged(graph);
+            if (checkpoint) {
+                rep.executeUpdate("checkpoint");
+            }
+            BulkLoadReport report = poll(scope, graph, before, loaderErrors, start, true);
+            if (listener != null) {
+                listener.progress(report);
+            }
+            return report;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void runLoader(List<String[]> loaderErrors) {
+        try (ConnectionLease lease = rep.lease()) {
+            rep.executeUpdateQuery(lease, "set isolation='uncommitted'", false);
+            rep.executeUpdateQuery(lease, "rdf_loader_run()", false);
+        } catch (SQLException ex) {
+            loaderErrors.add(new String[]{"rdf_loader_run()", ex.getMessage()});
+        }
+    }
+
+    private BulkLoadReport poll(String scope, String graph, long before, List<String[]> loaderErrors, long start, boolean finished) throws SQLException {
+        int total = 0;
+        int loading = 0;
+        int loaded = 0;
+        List<String[]> errors = new ArrayList<>();
+        synchronized (loaderErrors) {
+            errors.addAll(loaderErrors);
+        }
+        try (ConnectionLease lease = rep.lease()) {
+            ResultSet result = lease.getStatement().executeQuery(
+                    "select ll_file, ll_state, ll_error from DB.DBA.load_list where " + scope);
+            while (result.next()) {
+                total++;
+                int state = result.getInt(2);
+                if (state == 1) {
+                    loading++;
+                } else if (state == 2) {
+                    loaded++;
+                }
+                String error = result.getString(3);
+                if (error != null) {
+                    errors.add(new String[]{result.getString(1), error});
+                }
+            }
+            result.close();
+        }
+        long triples = -1;
+        if (countTriples) {
+            rep.graphChanged(graph);
+            triples = rep.countTriples(graph, true) - before;
+        }
+        return new BulkLoadReport(total, loading, loaded, errors, triples, System.currentTimeMillis() - start, finished);
+    }
+
+    private static String sqlString(String value) {
+        return value.replace("'", "''");
+    }
+}
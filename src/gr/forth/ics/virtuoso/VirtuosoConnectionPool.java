@@ -0,0 +1,289 @@
+package gr.forth.ics.virtuoso;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded pool of Virtuoso JDBC connections. Connections are opened lazily
+ * up to the maximum pool size, leased for the duration of one operation and
+ * validated when they are borrowed. All methods are thread safe.
+ *
+ * @author rousakis
+ */
+public class VirtuosoConnectionPool {
+
+    private final String url;
+    private final String usr;
+    private final String pwd;
+    private final int maxSize;
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<IdleConnection> idle;
+    private final AtomicInteger opened;
+    private final List<DiscardListener> discardListeners = new CopyOnWriteArrayList<>();
+    private long borrowTimeout;
+    private long validationInterval;
+    private int validationTimeout;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new pool of Virtuoso connections.
+     *
+     * @param url The JDBC URL of the Virtuoso instance.
+     * @param usr The username of the certified user.
+     * @param pwd The password of the certified user.
+     * @param maxSize The maximum number of open connections.
+     * @throws ClassNotFoundException
+     */
+    public VirtuosoConnectionPool(String url, String usr, String pwd, int maxSize) throws ClassNotFoundException {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The pool size must be positive: " + maxSize);
+        }
+        Class.forName("virtuoso.jdbc4.Driver");
+        this.url = url;
+        this.usr = usr;
+        this.pwd = pwd;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        this.idle = new LinkedBlockingDeque<>();
+        this.opened = new AtomicInteger();
+        this.borrowTimeout = 60000;
+        this.validationInterval = 5000;
+        this.validationTimeout = 5;
+    }
+
+    /**
+     * Leases a connection from the pool, waiting up to the borrow timeout for
+     * one to become available. Idle connections which have been closed or fail
+     * validation are discarded and replaced by new ones.
+     *
+     * @return A validated connection which must be given back with
+     * {@link #release(Connection)}.
+     * @throws SQLException If the pool is closed, no connection became
+     * available in time or a new connection could not be opened.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("The connection pool is closed.");
+        }
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeout + "ms waiting for a pooled connection.");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection.", ex);
+        }
+        try {
+            IdleConnection entry;
+            while ((entry = idle.pollFirst()) != null) {
+                if (isUsable(entry)) {
+                    return entry.connection;
+                }
+                discard(entry.connection);
+            }
+            Connection conn = DriverManager.getConnection(url, usr, pwd);
+            opened.incrementAndGet();
+            return conn;
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Gives a leased connection back to the pool.
+     *
+     * @param conn The connection previously returned by {@link #borrow()}.
+     */
+    public void release(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        boolean reusable = !closed;
+        if (reusable) {
+            try {
+                reusable = !conn.isClosed();
+                if (reusable && !conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException ex) {
+                reusable = false;
+            }
+        }
+        if (reusable) {
+            idle.offerFirst(new IdleConnection(conn));
+        } else {
+            discard(conn);
+        }
+        permits.release();
+    }
+
+    /**
+     * Closes a leased connection which is known to be broken instead of giving
+     * it back to the pool.
+     *
+     * @param conn The connection previously returned by {@link #borrow()}.
+     */
+    public void invalidate(Connection conn) {
+        if (conn == null) {
+            return;
+        }
+        discard(conn);
+        permits.release();
+    }
+
+    /**
+     * Closes all idle connections. Leased connections are closed when they
+     * are released.
+     */
+    public void close() {
+        closed = true;
+        IdleConnection entry;
+        while ((entry = idle.pollFirst()) != null) {
+            discard(entry.connection);
+        }
+    }
+
+    private boolean isUsable(IdleConnection entry) {
+        try {
+            if (entry.connection.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - entry.since < validationInterval) {
+                return true;
+            }
+            return entry.connection.isValid(validationTimeout);
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Registers a listener which is told about every connection the pool
+     * closes, before it is closed.
+     *
+     * @param listener The listener.
+     */
+    void addDiscardListener(DiscardListener listener) {
+        discardListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with
+     * {@link #addDiscardListener(DiscardListener)}.
+     *
+     * @param listener The listener.
+     */
+    void removeDiscardListener(DiscardListener listener) {
+        discardListeners.remove(listener);
+    }
+
+    private void discard(Connection conn) {
+        opened.decrementAndGet();
+        for (DiscardListener listener : discardListeners) {
+            listener.discarded(conn);
+        }
+        try {
+            conn.close();
+        } catch (SQLException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the close of a pooled connection.");
+        }
+    }
+
+    /**
+     * Returns the maximum number of connections of this pool.
+     *
+     * @return
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the number of connections which are currently leased.
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * Returns the number of open connections which are currently idle.
+     *
+     * @return
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of open connections, both leased and idle.
+     *
+     * @return
+     */
+    public int getOpenCount() {
+        return opened.get();
+    }
+
+    /**
+     * Sets how long {@link #borrow()} waits for a free connection.
+     *
+     * @param millis The timeout in milliseconds.
+     */
+    public void setBorrowTimeout(long millis) {
+        this.borrowTimeout = millis;
+    }
+
+    /**
+     * Sets how long a connection may stay idle before it is validated against
+     * the server on borrow. A value of zero validates on every borrow.
+     *
+     * @param millis The interval in milliseconds.
+     */
+    public void setValidationInterval(long millis) {
+        this.validationInterval = millis;
+    }
+
+    /**
+     * Sets the timeout of the validation round trip.
+     *
+     * @param seconds The timeout in seconds.
+     */
+    public void setValidationTimeout(int seconds) {
+        this.validationTimeout = seconds;
+    }
+
+    /**
+     * Receives the connections which the pool closes, so that state kept per
+     * connection can be released.
+     */
+    interface DiscardListener {
+
+        /**
+         * Called before a connection is closed by the pool.
+         *
+         * @param conn The connection.
+         */
+        void discarded(Connection conn);
+    }
+
+    private static class IdleConnection {
+
+        final Connection connection;
+        final long since;
+
+        IdleConnection(Connection connection) {
+            this.connection = connection;
+            this.since = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package gr.forth.ics.virtuoso;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The pending result of an operation submitted to {@link AsyncVirtuosoOps}.
+ * Besides blocking with {@link #get()}, callers can register callbacks which
+ * run once the operation completes.
+ *
+ * @param <T> The type of the result.
+ * @author rousakis
+ */
+public class VirtuosoFuture<T> extends FutureTask<T> {
+
+    /**
+     * Receives the outcome of a {@link VirtuosoFuture}.
+     *
+     * @param <T> The type of the result.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Called when the operation completed successfully.
+         *
+         * @param result The result of the operation.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called when the operation failed or was cancelled.
+         *
+         * @param error The failure.
+         */
+        void onFailure(Throwable error);
+    }
+
+    private final List<Callback<? super T>> callbacks = new ArrayList<>();
+
+    VirtuosoFuture(Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * Registers a callback. If the operation has already completed, the
+     * callback runs immediately on the calling thread; otherwise it runs on
+     * the thread which completes the operation.
+     *
+     * @param callback
+     * @return This future.
+     */
+    public VirtuosoFuture<T> whenDone(Callback<? super T> callback) {
+        synchronized (callbacks) {
+            if (!isDone()) {
+                callbacks.add(callback);
+                return this;
+            }
+        }
+        notify(callback);
+        return this;
+    }
+
+    @Override
+    protected void done() {
+        List<Callback<? super T>> pending;
+        synchronized (callbacks) {
+            pending = new ArrayList<>(callbacks);
+            callbacks.clear();
+        }
+        for (Callback<? super T> callback : pending) {
+            notify(callback);
+        }
+    }
+
+    private void notify(Callback<? super T> callback) {
+        T result;
+        try {
+            result = get();
+        } catch (ExecutionException ex) {
+            callback.onFailure(ex.getCause());
+            return;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            callback.onFailure(ex);
+            return;
+        } catch (RuntimeException ex) {
+            callback.onFailure(ex);
+            return;
+        }
+        callback.onSuccess(result);
+    }
+}
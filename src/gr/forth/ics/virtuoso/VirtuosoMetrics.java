@@ -0,0 +1,204 @@
+package gr.forth.ics.virtuoso;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Collects the latency, throughput and error metrics of the operations of the
+ * repository classes. Metrics are always recorded; they can be read through
+ * {@link #snapshot()}, published as JMX MBeans with {@link #registerMBeans()}
+ * and pushed periodically to {@link MetricsExporter}s. Each operation type is
+ * published as an MBean named
+ * {@code gr.forth.ics.virtuoso:type=Metrics,name=<registry>,operation=<operation>}.
+ *
+ * @author rousakis
+ */
+public class VirtuosoMetrics {
+
+    private static final VirtuosoMetrics GLOBAL = new VirtuosoMetrics("default");
+    private final String name;
+    private final ConcurrentMap<String, OperationMetrics> operations;
+    private final List<ObjectName> registered;
+    private boolean jmx;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a new, empty registry of metrics.
+     *
+     * @param name The name of the registry, used in the JMX object names.
+     */
+    public VirtuosoMetrics(String name) {
+        this.name = name;
+        this.operations = new ConcurrentHashMap<>();
+        this.registered = new ArrayList<>();
+    }
+
+    /**
+     * Returns the registry used by the repository classes unless another one
+     * is set.
+     *
+     * @return
+     */
+    public static VirtuosoMetrics global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the metrics of an operation type, creating them if needed.
+     *
+     * @param operation The name of the operation type.
+     * @return
+     */
+    public OperationMetrics operation(String operation) {
+        OperationMetrics metrics = operations.get(operation);
+        if (metrics == null) {
+            OperationMetrics created = new OperationMetrics(operation);
+            metrics = operations.putIfAbsent(operation, created);
+            if (metrics == null) {
+                metrics = created;
+                synchronized (this) {
+                    if (jmx) {
+                        register(metrics);
+                    }
+                }
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the start time of an operation, to be given to
+     * {@link #success(String, long, long)} or {@link #failure(String, long)}.
+     *
+     * @return
+     */
+    long start() {
+        return System.nanoTime();
+    }
+
+    void success(String operation, long start, long items) {
+        operation(operation).success(System.nanoTime() - start, items);
+    }
+
+    void failure(String operation, long start) {
+        operation(operation).failure(System.nanoTime() - start);
+    }
+
+    void bytes(String operation, long bytes) {
+        operation(operation).bytes(bytes);
+    }
+
+    /**
+     * Copies the current metrics of all operations.
+     *
+     * @return
+     */
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(operations.values());
+    }
+
+    /**
+     * Clears the metrics of all operations.
+     */
+    public void reset() {
+        for (OperationMetrics metrics : operations.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * Publishes the metrics of all current and future operation types to the
+     * platform MBean server.
+     *
+     * @throws JMException
+     */
+    public synchronized void registerMBeans() throws JMException {
+        if (jmx) {
+            return;
+        }
+        jmx = true;
+        for (OperationMetrics metrics : operations.values()) {
+            register(metrics);
+        }
+    }
+
+    /**
+     * Removes the MBeans of this registry from the platform MBean server.
+     */
+    public synchronized void unregisterMBeans() {
+        jmx = false;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName objectName : registered) {
+            try {
+                server.unregisterMBean(objectName);
+            } catch (JMException ex) {
+                System.out.println("Exception: " + ex.getMessage() + " occured during the unregistration of " + objectName);
+            }
+        }
+        registered.clear();
+    }
+
+    private void register(OperationMetrics metrics) {
+        try {
+            ObjectName objectName = new ObjectName("gr.forth.ics.virtuoso:type=Metrics,name="
+                    + ObjectName.quote(name) + ",operation=" + ObjectName.quote(metrics.getName()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(metrics, objectName);
+                registered.add(objectName);
+            }
+        } catch (JMException ex) {
+            System.out.println("Exception: " + ex.getMessage() + " occured during the registration of the metrics of " + metrics.getName());
+        }
+    }
+
+    /**
+     * Passes a snapshot of the metrics to an exporter periodically, on a
+     * daemon thread shared by all exporters of this registry.
+     *
+     * @param exporter The exporter.
+     * @param period The period in milliseconds.
+     */
+    public synchronized void addExporter(final MetricsExporter exporter, long period) {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "virtuoso-metrics-" + name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    exporter.export(snapshot());
+                } catch (RuntimeException ex) {
+                    System.out.println("Exception: " + ex.getMessage() + " occured during the export of the metrics.");
+                }
+            }
+        }, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops all exporters.
+     */
+    public synchronized void removeExporters() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * The logging and commit modes of Virtuoso for writes, which are set per
+ * connection with log_enable().
+ *
+ * @author rousakis
+ */
+public enum WriteMode {
+
+    /**
+     * Writes are logged and committed with the transaction, which holds its
+     * locks until then. This is the default of Virtuoso.
+     */
+    TRANSACTIONAL(1),
+    /**
+     * Writes are logged and committed row by row, so large updates do not
+     * build up one huge transaction.
+     */
+    AUTOCOMMIT(3),
+    /**
+     * Writes are committed row by row and not logged. This is the fastest mode
+     * for bulk loads, but writes made since the last checkpoint are lost if
+     * the server crashes.
+     */
+    BULK(2);
+
+    private final int logEnable;
+
+    private WriteMode(int logEnable) {
+        this.logEnable = logEnable;
+    }
+
+    /**
+     * Returns the argument of log_enable() which selects this mode.
+     *
+     * @return
+     */
+    public int getLogEnable() {
+        return logEnable;
+    }
+
+    /**
+     * Returns the statement which selects this mode on a connection.
+     *
+     * @return
+     */
+    String statement() {
+        return "log_enable(" + logEnable + ", 1)";
+    }
+}
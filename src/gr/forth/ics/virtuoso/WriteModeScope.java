@@ -0,0 +1,48 @@
+package gr.forth.ics.virtuoso;
+
+/**
+ * A block of code whose writes through a {@link JDBCVirtuosoRep} use a write
+ * mode of their own, opened with
+ * {@link JDBCVirtuosoRep#openWriteScope(WriteMode)}. The scope belongs to the
+ * thread which opened it; closing it restores the mode which was in effect
+ * before. Scopes are meant for try-with-resources blocks and must be closed
+ * in the reverse order of their opening.
+ *
+ * @author rousakis
+ */
+public class WriteModeScope implements AutoCloseable {
+
+    private final ThreadLocal<WriteMode> current;
+    private final WriteMode mode;
+    private final WriteMode previous;
+    private boolean closed;
+
+    WriteModeScope(ThreadLocal<WriteMode> current, WriteMode mode) {
+        this.current = current;
+        this.mode = mode;
+        this.previous = current.get();
+        current.set(mode);
+    }
+
+    /**
+     * Returns the write mode of this scope.
+     *
+     * @return
+     */
+    public WriteMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (previous == null) {
+            current.remove();
+        } else {
+            current.set(previous);
+        }
+    }
+}